@@ -0,0 +1,95 @@
+package ru.skypro.homework.benchmark;
+
+import ru.skypro.homework.dto.ad.AdDto;
+import ru.skypro.homework.dto.ad.AdsDto;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.dto.comment.CommentDto;
+import ru.skypro.homework.dto.comment.CommentsDto;
+import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.model.CommentsDao;
+import ru.skypro.homework.model.UsersDao;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Фикстуры для бенчмарков: сущности и DTO, похожие на реальные данные.
+ * Все значения детерминированы, чтобы результаты были сравнимы между запусками.
+ */
+final class BenchmarkData {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private BenchmarkData() {
+    }
+
+    static UsersDao user(int id) {
+        UsersDao user = new UsersDao();
+        user.setId(id);
+        user.setEmail("user" + id + "@example.com");
+        user.setPassword("$2a$10$dXJ3SW6G7P50lGmMkkmwe.20cQQubK3.HZWzG3YB1tlRy.fqvM/BG");
+        user.setFirstName("Иван");
+        user.setLastName("Иванов");
+        user.setPhone("+7 (999) 123-45-67");
+        user.setRole(Role.USER);
+        user.setImage("/avatars/" + id + ".jpg");
+        return user;
+    }
+
+    static AdsDao ad(int pk, UsersDao author) {
+        AdsDao ad = new AdsDao();
+        ad.setPk(pk);
+        ad.setTitle("Продам ноутбук #" + pk);
+        ad.setDescription("Отличный ноутбук в идеальном состоянии, полный комплект, гарантия ещё год. " + pk);
+        ad.setPrice(10_000 + pk);
+        ad.setImage("/ads-images/" + pk + ".jpg");
+        ad.setAuthor(author);
+        return ad;
+    }
+
+    static CommentsDao comment(int pk, UsersDao author, AdsDao ad) {
+        CommentsDao comment = new CommentsDao();
+        comment.setPk(pk);
+        comment.setText("Очень заинтересовало! 5.000 уступите? " + pk);
+        comment.setCreatedAt(BASE_TIME.plusMinutes(pk));
+        comment.setAuthor(author);
+        comment.setAd(ad);
+        return comment;
+    }
+
+    static AdsDto adsDto(int size) {
+        List<AdDto> results = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            AdDto dto = new AdDto();
+            dto.setPk(i);
+            dto.setAuthor(i % 100 + 1);
+            dto.setTitle("Продам ноутбук #" + i);
+            dto.setPrice(10_000 + i);
+            dto.setImage("/ads-images/" + i + ".jpg");
+            results.add(dto);
+        }
+        AdsDto ads = new AdsDto();
+        ads.setCount(size);
+        ads.setResults(results);
+        return ads;
+    }
+
+    static CommentsDto commentsDto(int size) {
+        List<CommentDto> results = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            CommentDto dto = new CommentDto();
+            dto.setPk(i);
+            dto.setAuthor(i % 100 + 1);
+            dto.setAuthorFirstName("Иван");
+            dto.setAuthorImage("/avatars/" + (i % 100 + 1) + ".jpg");
+            dto.setCreatedAt(1_704_110_400_000L + i * 60_000L);
+            dto.setText("Очень заинтересовало! 5.000 уступите? " + i);
+            results.add(dto);
+        }
+        CommentsDto comments = new CommentsDto();
+        comments.setCount(size);
+        comments.setResults(results);
+        return comments;
+    }
+}
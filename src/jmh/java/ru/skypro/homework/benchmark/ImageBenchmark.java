@@ -0,0 +1,91 @@
+package ru.skypro.homework.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import ru.skypro.homework.service.ImageService;
+import ru.skypro.homework.service.ImageTranscoder;
+import ru.skypro.homework.util.ImageHelper;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции с изображениями: определение формата по сигнатуре и сохранение загрузки
+ * с перекодированием (уменьшение до 1920 px, JPEG) на диск.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageBenchmark {
+
+    /**
+     * Ширина исходного JPEG (высота 3/4 ширины): меньше и больше {@code app.image.max-dimension}.
+     */
+    @Param({"640", "4000"})
+    private int imageWidth;
+
+    private ImageService imageService;
+    private byte[] image;
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        ImageTranscoder transcoder = new ImageTranscoder(1920, 50_000_000, 0.82f);
+        imageService = new ImageService(new SimpleMeterRegistry(), transcoder, DataSize.ofMegabytes(50));
+        BufferedImage source = new BufferedImage(imageWidth, imageWidth * 3 / 4, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                source.setRGB(x, y, (x << 16) ^ (y << 8) ^ random.nextInt(32));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(source, "jpeg", out);
+        image = out.toByteArray();
+    }
+
+    @Setup(Level.Iteration)
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("image-benchmark");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteDirectory() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Optional<String> detectFormat() {
+        return ImageHelper.detectFormat(image);
+    }
+
+    @Benchmark
+    public String saveImage() {
+        return imageService.saveImage(new ByteArrayInputStream(image), directory.toString(), "/ads-images/");
+    }
+}
@@ -0,0 +1,164 @@
+package ru.skypro.homework.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.util.Duration;
+import net.logstash.logback.appender.LoggingEventAsyncDisruptorAppender;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.skypro.homework.logging.SamplingTurboFilter;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Стоимость одной INFO-записи сервисного слоя для потока запроса при нескольких конкурентных потоках:
+ * <ul>
+ *     <li>{@code sync-pattern} — текущая dev-конфигурация: синхронный паттерн-аппендер;</li>
+ *     <li>{@code async-json} — prod без сэмплирования: JSON через кольцевой буфер;</li>
+ *     <li>{@code async-json-sampled} — prod-конфигурация целиком: сэмплирование 1/100 + JSON через буфер.</li>
+ * </ul>
+ * Вывод ({@code sink}) блокирует пишущий поток, как консоль:
+ * <ul>
+ *     <li>{@code slow-console} — каждая запись ждёт {@value #CONSOLE_WRITE_MICROS} мкс (терминал или pipe
+ *     сборщика логов, который не успевает читать);</li>
+ *     <li>{@code file} — настоящий файл во временном каталоге.</li>
+ * </ul>
+ * Синхронный аппендер платит за этот вывод в потоке запроса и под своей блокировкой, асинхронный — в своём потоке.
+ * При переполнении буфера асинхронный аппендер отбрасывает события (как и в prod), это видно по росту throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss} - %msg%n";
+    private static final long CONSOLE_WRITE_MICROS = 50;
+
+    @Param({"sync-pattern", "async-json", "async-json-sampled"})
+    private String mode;
+
+    @Param({"slow-console", "file"})
+    private String sink;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private LoggerContext context;
+    private Logger log;
+    private Path logFile;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Trial)
+    public void setUp() throws IOException {
+        if ("file".equals(sink)) {
+            logFile = Files.createTempFile("logging-benchmark", ".log");
+        }
+        context = new LoggerContext();
+        context.setName("benchmark");
+
+        Appender<ILoggingEvent> appender;
+        if ("sync-pattern".equals(mode)) {
+            PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+            encoder.setPattern(PATTERN);
+            appender = blocking(encoder);
+        } else {
+            LoggingEventAsyncDisruptorAppender async = new LoggingEventAsyncDisruptorAppender();
+            async.setContext(context);
+            async.setName("ASYNC_JSON");
+            async.setRingBufferSize(8192);
+            async.setAppendTimeout(Duration.buildByMilliseconds(0));
+            async.addAppender(blocking(new LogstashEncoder()));
+            async.start();
+            appender = async;
+        }
+
+        if ("async-json-sampled".equals(mode)) {
+            SamplingTurboFilter filter = new SamplingTurboFilter();
+            filter.setContext(context);
+            filter.setLoggerPrefix("ru.skypro.homework.service");
+            filter.setSampleRate(100);
+            filter.start();
+            context.addTurboFilter(filter);
+        }
+
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.INFO);
+        root.addAppender(appender);
+        context.start();
+
+        log = context.getLogger("ru.skypro.homework.service.impl.AdServiceImpl");
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+    public void tearDown() throws IOException {
+        context.stop();
+        if (logFile != null) {
+            Files.delete(logFile);
+        }
+    }
+
+    @Benchmark
+    public void logAdCreated() {
+        log.info("Ad created with id: {} by user: {}", ids.incrementAndGet(), "user@example.com");
+    }
+
+    private OutputStreamAppender<ILoggingEvent> blocking(Encoder<ILoggingEvent> encoder) throws IOException {
+        encoder.setContext(context);
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setName("BLOCKING");
+        appender.setEncoder(encoder);
+        appender.setOutputStream("file".equals(sink) ? new FileOutputStream(logFile.toFile()) : new SlowConsoleStream());
+        appender.start();
+        return appender;
+    }
+
+    /**
+     * Консоль, которая принимает запись за {@value #CONSOLE_WRITE_MICROS} мкс. Logback пишет событие одним вызовом
+     * {@code write} и сбрасывает буфер после каждого ({@code immediateFlush}).
+     */
+    private static final class SlowConsoleStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            block();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            block();
+        }
+
+        private static void block() {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(CONSOLE_WRITE_MICROS));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.skypro.homework.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.skypro.homework.dto.ad.AdDto;
+import ru.skypro.homework.dto.ad.ExtendedAdDto;
+import ru.skypro.homework.dto.comment.CommentDto;
+import ru.skypro.homework.mapper.AdMapper;
+import ru.skypro.homework.mapper.AdMapperImpl;
+import ru.skypro.homework.mapper.CommentMapper;
+import ru.skypro.homework.mapper.CommentMapperImpl;
+import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.model.CommentsDao;
+import ru.skypro.homework.model.UsersDao;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность MapStruct-мапперов на горячем пути отдачи объявлений и комментариев.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    private AdMapper adMapper;
+    private CommentMapper commentMapper;
+
+    private AdsDao ad;
+    private CommentsDao comment;
+    private LocalDateTime createdAt;
+
+    @Setup
+    public void setUp() {
+        adMapper = new AdMapperImpl();
+        commentMapper = new CommentMapperImpl();
+
+        UsersDao author = BenchmarkData.user(1);
+        ad = BenchmarkData.ad(1, author);
+        comment = BenchmarkData.comment(1, author, ad);
+        createdAt = comment.getCreatedAt();
+    }
+
+    @Benchmark
+    public AdDto toAdDto() {
+        return adMapper.toAdDto(ad);
+    }
+
+    @Benchmark
+    public ExtendedAdDto toExtendedAdDto() {
+        return adMapper.toExtendedAdDto(ad);
+    }
+
+    @Benchmark
+    public CommentDto toCommentDto() {
+        return commentMapper.toCommentDto(comment);
+    }
+
+    @Benchmark
+    public Long localDateTimeToEpochMillis() {
+        return commentMapper.localDateTimeToEpochMillis(createdAt);
+    }
+}
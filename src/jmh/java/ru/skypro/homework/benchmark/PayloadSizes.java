@@ -0,0 +1,33 @@
+package ru.skypro.homework.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Размеры ответов {@link SerializationBenchmark} в байтах для каждого формата и размера списка.
+ * Данные бенчмарка детерминированы, поэтому размеры считаются один раз, отдельно от замеров:
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=ru.skypro.homework.benchmark.PayloadSizes
+ * </pre>
+ */
+public final class PayloadSizes {
+
+    // те же значения, что в @Param бенчмарка
+    private static final String[] FORMATS = {"json", "smile", "cbor"};
+    private static final int[] SIZES = {10, 1000, 100000};
+
+    private PayloadSizes() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-6s %8s %14s %14s%n", "format", "size", "AdsDto", "CommentsDto");
+        for (String format : FORMATS) {
+            ObjectMapper objectMapper = SerializationBenchmark.objectMapper(format);
+            for (int size : SIZES) {
+                System.out.printf("%-6s %8d %14d %14d%n", format, size,
+                        objectMapper.writeValueAsBytes(BenchmarkData.adsDto(size)).length,
+                        objectMapper.writeValueAsBytes(BenchmarkData.commentsDto(size)).length);
+            }
+        }
+    }
+}
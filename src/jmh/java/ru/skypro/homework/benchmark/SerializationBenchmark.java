@@ -0,0 +1,89 @@
+package ru.skypro.homework.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.skypro.homework.dto.ad.AdsDto;
+import ru.skypro.homework.dto.comment.CommentsDto;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость Jackson-сериализации и разбора списочных ответов {@code GET /ads} и {@code GET /ads/{id}/comments}
+ * в JSON и в бинарных форматах Smile и CBOR ({@code Accept: application/x-jackson-smile}, {@code application/cbor}).
+ * ObjectMapper настраивается так же, как в application.properties (UTC).
+ * Размер ответа для каждого формата и размера списка считает {@link PayloadSizes}: он детерминирован и не зависит
+ * от прогона.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private AdsDto ads;
+    private CommentsDto comments;
+    private byte[] adsBytes;
+    private byte[] commentsBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = objectMapper(format);
+        ads = BenchmarkData.adsDto(size);
+        comments = BenchmarkData.commentsDto(size);
+        adsBytes = objectMapper.writeValueAsBytes(ads);
+        commentsBytes = objectMapper.writeValueAsBytes(comments);
+    }
+
+    static ObjectMapper objectMapper(String format) {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                                                                         .timeZone("UTC");
+        if ("smile".equals(format)) {
+            builder.factory(new SmileFactory());
+        } else if ("cbor".equals(format)) {
+            builder.factory(new CBORFactory());
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public byte[] serializeAds() throws Exception {
+        return objectMapper.writeValueAsBytes(ads);
+    }
+
+    @Benchmark
+    public byte[] serializeComments() throws Exception {
+        return objectMapper.writeValueAsBytes(comments);
+    }
+
+    @Benchmark
+    public AdsDto deserializeAds() throws Exception {
+        return objectMapper.readValue(adsBytes, AdsDto.class);
+    }
+
+    @Benchmark
+    public CommentsDto deserializeComments() throws Exception {
+        return objectMapper.readValue(commentsBytes, CommentsDto.class);
+    }
+}
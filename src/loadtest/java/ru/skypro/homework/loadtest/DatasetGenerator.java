@@ -0,0 +1,146 @@
+package ru.skypro.homework.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Воспроизводимый генератор тестовых данных: пользователи, объявления с картинками и комментарии.
+ * Вставка идёт пакетами через JDBC, минуя сервисный слой, чтобы подготовка большого набора
+ * не занимала больше времени, чем сам прогон.
+ */
+@Slf4j
+final class DatasetGenerator {
+
+    static final String PASSWORD = "password";
+
+    private static final int BATCH_SIZE = 1_000;
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LoadTestConfig config;
+    private final Path adImageDir;
+    private final Random random;
+
+    DatasetGenerator(JdbcTemplate jdbcTemplate, LoadTestConfig config, Path adImageDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.config = config;
+        this.adImageDir = adImageDir;
+        this.random = new Random(config.seed);
+    }
+
+    static String email(int userIndex) {
+        return "lt-user-" + userIndex + "@example.com";
+    }
+
+    /**
+     * Настоящий JPEG размером около {@code sizeKb}: загрузка проверяет сигнатуру и декодирует картинку,
+     * случайные байты отклоняются с 400. Сжатие зависит от размера кадра, поэтому ширина уточняется
+     * несколькими пробными кодированиями.
+     */
+    static byte[] jpeg(int sizeKb, long seed) {
+        int width = 256;
+        byte[] image = encode(width, seed);
+        for (int i = 0; i < 4; i++) {
+            width = Math.max(16, (int) (width * Math.sqrt(sizeKb * 1024.0 / image.length)));
+            image = encode(width, seed);
+        }
+        return image;
+    }
+
+    private static byte[] encode(int width, long seed) {
+        BufferedImage image = new BufferedImage(width, width * 3 / 4, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x << 16) ^ (y << 8) ^ random.nextInt(32));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpeg", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    Dataset generate(byte[] image) throws IOException {
+        long started = System.nanoTime();
+        // Один хэш на всех: BCrypt на каждого пользователя сделал бы генерацию дольше самого теста
+        String passwordHash = new BCryptPasswordEncoder().encode(PASSWORD);
+        Files.createDirectories(adImageDir);
+
+        List<Object[]> users = new ArrayList<>(config.users);
+        for (int i = 0; i < config.users; i++) {
+            users.add(new Object[]{email(i), passwordHash, "Имя" + i, "Фамилия" + i, "+7 (999) 123-45-67", "USER"});
+        }
+        batchUpdate("INSERT INTO users (email, password, first_name, last_name, phone, role) VALUES (?, ?, ?, ?, ?, ?)",
+                users);
+        List<Integer> userIds = jdbcTemplate.queryForList("SELECT id FROM users WHERE email LIKE 'lt-user-%' ORDER BY id",
+                Integer.class);
+
+        List<Object[]> ads = new ArrayList<>();
+        for (Integer userId : userIds) {
+            for (int i = 0; i < config.adsPerUser; i++) {
+                String imageName = "lt-" + userId + "-" + i + ".jpg";
+                Files.write(adImageDir.resolve(imageName), image);
+                ads.add(new Object[]{"Объявление " + userId + "-" + i, "Описание объявления для нагрузочного теста " + i,
+                        random.nextInt(1_000_000), "/ads-images/" + imageName, userId});
+            }
+        }
+        batchUpdate("INSERT INTO ads (title, description, price, image, user_id) VALUES (?, ?, ?, ?, ?)", ads);
+        List<Integer> adIds = jdbcTemplate.queryForList("SELECT pk FROM ads ORDER BY pk", Integer.class);
+
+        List<Object[]> comments = new ArrayList<>();
+        for (Integer adId : adIds) {
+            for (int i = 0; i < config.commentsPerAd; i++) {
+                Integer authorId = userIds.get(random.nextInt(userIds.size()));
+                Timestamp createdAt = Timestamp.valueOf(BASE_TIME.plusMinutes(random.nextInt(525_600)));
+                comments.add(new Object[]{"Комментарий номер " + i + " к объявлению " + adId, createdAt, authorId, adId});
+                if (comments.size() == BATCH_SIZE) {
+                    batchUpdate("INSERT INTO comments (text, created_at, user_id, ad_id) VALUES (?, ?, ?, ?)", comments);
+                    comments.clear();
+                }
+            }
+        }
+        batchUpdate("INSERT INTO comments (text, created_at, user_id, ad_id) VALUES (?, ?, ?, ?)", comments);
+
+        log.info("Dataset generated in {} ms: {} users, {} ads, {} comments",
+                (System.nanoTime() - started) / 1_000_000, userIds.size(), adIds.size(),
+                (long) adIds.size() * config.commentsPerAd);
+        return new Dataset(userIds.size(), adIds);
+    }
+
+    private void batchUpdate(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * Сгенерированный набор: количество пользователей (их email вычисляется по индексу) и идентификаторы объявлений.
+     */
+    static final class Dataset {
+        final int users;
+        final List<Integer> adIds;
+
+        Dataset(int users, List<Integer> adIds) {
+            this.users = users;
+            this.adIds = adIds;
+        }
+    }
+}
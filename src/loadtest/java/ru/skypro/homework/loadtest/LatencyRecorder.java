@@ -0,0 +1,63 @@
+package ru.skypro.homework.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Накопитель замеров одного сценария. Каждый клиент пишет в свой экземпляр без синхронизации,
+ * в конце прогона экземпляры сливаются через {@link #merge(LatencyRecorder)}.
+ */
+final class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+    private long bytes;
+
+    void record(long latencyNanos, boolean error, long responseBytes) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+        if (error) {
+            errors++;
+        }
+        bytes += responseBytes;
+    }
+
+    void merge(LatencyRecorder other) {
+        if (count + other.count > latencies.length) {
+            latencies = Arrays.copyOf(latencies, count + other.count);
+        }
+        System.arraycopy(other.latencies, 0, latencies, count, other.count);
+        count += other.count;
+        errors += other.errors;
+        bytes += other.bytes;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long errors() {
+        return errors;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Перцентиль задержки в миллисекундах (nearest-rank).
+     *
+     * @param percentile значение от 0 до 100
+     */
+    double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(rank, count - 1))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,96 @@
+package ru.skypro.homework.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного прогона. Задаются аргументами вида {@code key=value},
+ * например {@code users=1000 adsPerUser=20 concurrency=64 duration=60}.
+ */
+final class LoadTestConfig {
+
+    /** Количество сгенерированных пользователей. */
+    final int users;
+    /** Объявлений на пользователя. */
+    final int adsPerUser;
+    /** Комментариев на объявление. */
+    final int commentsPerAd;
+    /** Примерный размер JPEG-картинки объявления в килобайтах (и для генерации, и для загрузки). */
+    final int imageSizeKb;
+    /** Seed генератора: одинаковый seed даёт одинаковый набор данных и последовательность запросов. */
+    final long seed;
+    /** Количество параллельных виртуальных клиентов. */
+    final int concurrency;
+    final Duration warmup;
+    final Duration duration;
+    final Path outputDir;
+    /** Spring-профили приложения под нагрузкой (через запятую), пусто - профиль по умолчанию. */
+    final String springProfiles;
+    /** Включить ограничение запросов приложения; по умолчанию выключено: все клиенты драйвера идут с одного адреса. */
+    final boolean rateLimit;
+    /** Отправлять {@code Accept-Encoding: gzip}; тело не распаковывается, в отчёт попадают байты "на проводе". */
+    final boolean compression;
+    /** HTTP/2 (h2c) вместо HTTP/1.1. */
+    final boolean http2;
+
+    private final Map<String, String> raw;
+
+    private LoadTestConfig(Map<String, String> raw) {
+        this.raw = raw;
+        this.users = intValue("users", 100);
+        this.adsPerUser = intValue("adsPerUser", 10);
+        this.commentsPerAd = intValue("commentsPerAd", 5);
+        this.imageSizeKb = intValue("imageSizeKb", 64);
+        this.seed = Long.parseLong(raw.getOrDefault("seed", "42"));
+        this.concurrency = intValue("concurrency", 16);
+        this.warmup = Duration.ofSeconds(intValue("warmup", 10));
+        this.duration = Duration.ofSeconds(intValue("duration", 30));
+        this.outputDir = Paths.get(raw.getOrDefault("output", "target/loadtest"));
+        this.springProfiles = raw.getOrDefault("profiles", "");
+        this.rateLimit = Boolean.parseBoolean(raw.getOrDefault("rateLimit", "false"));
+        this.compression = Boolean.parseBoolean(raw.getOrDefault("compression", "false"));
+        this.http2 = Boolean.parseBoolean(raw.getOrDefault("http2", "false"));
+    }
+
+    static LoadTestConfig fromArgs(String[] args) {
+        Map<String, String> raw = new LinkedHashMap<>();
+        for (String arg : args) {
+            int idx = arg.indexOf('=');
+            if (idx <= 0) {
+                throw new IllegalArgumentException("Expected key=value argument, got: " + arg);
+            }
+            raw.put(arg.substring(0, idx), arg.substring(idx + 1));
+        }
+        return new LoadTestConfig(raw);
+    }
+
+    /**
+     * Значения параметров для отчёта, чтобы прогоны с разными настройками не сравнивались между собой.
+     */
+    Map<String, Object> describe() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", users);
+        result.put("adsPerUser", adsPerUser);
+        result.put("commentsPerAd", commentsPerAd);
+        result.put("imageSizeKb", imageSizeKb);
+        result.put("seed", seed);
+        result.put("concurrency", concurrency);
+        result.put("warmupSeconds", warmup.getSeconds());
+        result.put("durationSeconds", duration.getSeconds());
+        result.put("profiles", springProfiles);
+        result.put("rateLimit", rateLimit);
+        result.put("compression", compression);
+        result.put("http2", http2);
+        result.put("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        result.put("javaVersion", System.getProperty("java.version"));
+        return result;
+    }
+
+    private int intValue(String key, int defaultValue) {
+        String value = raw.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
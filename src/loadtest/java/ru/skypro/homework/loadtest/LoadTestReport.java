@@ -0,0 +1,105 @@
+package ru.skypro.homework.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Отчёт по прогону: p50/p90/p99, пропускная способность и объём ответов по каждому эндпоинту.
+ * Файл именуется по коммиту и времени запуска, поэтому отчёты разных коммитов можно сравнивать напрямую.
+ */
+@Slf4j
+final class LoadTestReport {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final LoadTestConfig config;
+    private final Map<Scenario, LatencyRecorder> results;
+
+    LoadTestReport(LoadTestConfig config, Map<Scenario, LatencyRecorder> results) {
+        this.config = config;
+        this.results = results;
+    }
+
+    Path write() throws IOException {
+        String commit = gitCommit();
+        double seconds = config.duration.toMillis() / 1000.0;
+
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        StringBuilder table = new StringBuilder(String.format("%n%-28s %8s %7s %10s %9s %9s %9s %12s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "bytes/req"));
+        for (Map.Entry<Scenario, LatencyRecorder> entry : results.entrySet()) {
+            LatencyRecorder recorder = entry.getValue();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("endpoint", entry.getKey().endpoint);
+            row.put("count", recorder.count());
+            row.put("errors", recorder.errors());
+            row.put("throughput", recorder.count() / seconds);
+            row.put("p50", recorder.percentileMillis(50));
+            row.put("p90", recorder.percentileMillis(90));
+            row.put("p99", recorder.percentileMillis(99));
+            row.put("max", recorder.percentileMillis(100));
+            row.put("bytesPerRequest", recorder.count() == 0 ? 0 : recorder.bytes() / recorder.count());
+            endpoints.add(row);
+            table.append(String.format("%-28s %8d %7d %10.1f %9.2f %9.2f %9.2f %12d%n",
+                    row.get("endpoint"), recorder.count(), recorder.errors(), row.get("throughput"),
+                    row.get("p50"), row.get("p90"), row.get("p99"), row.get("bytesPerRequest")));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("commit", commit);
+        report.put("timestamp", LocalDateTime.now().toString());
+        report.put("config", config.describe());
+        report.put("runtime", runtime());
+        report.put("endpoints", endpoints);
+
+        Files.createDirectories(config.outputDir);
+        Path file = config.outputDir.resolve("loadtest-" + commit + "-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+
+        log.info("Load test results for commit {}:{}", commit, table);
+        log.info("Report written to {}", file.toAbsolutePath());
+        return file;
+    }
+
+    /**
+     * Пиковое число потоков и занятая куча: при сравнении платформенных и виртуальных потоков
+     * на одинаковом {@code -Xmx} показывают, во что обходится достигнутая конкурентность.
+     */
+    private static Map<String, Object> runtime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("peakPlatformThreads", threads.getPeakThreadCount());
+        result.put("heapUsedMb", heap.getUsed() / (1024 * 1024));
+        result.put("heapCommittedMb", heap.getCommitted() / (1024 * 1024));
+        return result;
+    }
+
+    private static String gitCommit() {
+        try {
+            Process process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            return process.waitFor() == 0 && !output.isEmpty() ? output : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.skypro.homework.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.skypro.homework.HomeworkApplication;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Точка входа нагрузочного теста: поднимает Postgres в Testcontainers, запускает приложение на случайном порту,
+ * заполняет базу генератором и гоняет сценарии {@link Scenario} заданным числом параллельных клиентов.
+ * <p>
+ * Запуск: {@code mvn -Ploadtest test -Dloadtest.args="users=1000 concurrency=64 duration=60"}.
+ */
+@Slf4j
+public final class LoadTestRunner {
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromArgs(args);
+        System.setProperty("docker.client.version", "1.44");
+        System.setProperty("testcontainers.ryuk.disabled", "true");
+
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+                .withDatabaseName("loadtest")
+                .withUsername("test")
+                .withPassword("test")) {
+            postgres.start();
+
+            Path adImageDir = config.outputDir.resolve("ads-images");
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(HomeworkApplication.class)
+                    .profiles(config.springProfiles.isEmpty() ? new String[0] : config.springProfiles.split(","))
+                    .run("--server.port=0",
+                            "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                            "--spring.datasource.username=" + postgres.getUsername(),
+                            "--spring.datasource.password=" + postgres.getPassword(),
+                            "--app.image.ad-dir=" + adImageDir,
+                            "--app.image.avatar-dir=" + config.outputDir.resolve("avatars"),
+                            "--app.rate-limit.enabled=" + config.rateLimit);
+            try {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                byte[] image = DatasetGenerator.jpeg(config.imageSizeKb, config.seed);
+                log.info("Ad image: {} KB JPEG", image.length / 1024);
+                DatasetGenerator.Dataset dataset = new DatasetGenerator(
+                        new JdbcTemplate(context.getBean(DataSource.class)), config, adImageDir).generate(image);
+
+                Scenario.Context scenarioContext = new Scenario.Context("http://localhost:" + port, dataset, image);
+                Map<Scenario, LatencyRecorder> results = run(config, scenarioContext);
+                new LoadTestReport(config, results).write();
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private static Map<Scenario, LatencyRecorder> run(LoadTestConfig config, Scenario.Context scenarioContext)
+            throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                                      .version(config.http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                                      .connectTimeout(Duration.ofSeconds(10))
+                                      .build();
+        long warmupEnd = System.nanoTime() + config.warmup.toNanos();
+        long end = warmupEnd + config.duration.toNanos();
+        log.info("Running {} clients: {} s warmup, {} s measurement", config.concurrency,
+                config.warmup.getSeconds(), config.duration.getSeconds());
+
+        ExecutorService executor = Executors.newFixedThreadPool(config.concurrency);
+        try {
+            List<Future<Map<Scenario, LatencyRecorder>>> futures = new ArrayList<>();
+            for (int i = 0; i < config.concurrency; i++) {
+                Random random = new Random(config.seed + i);
+                futures.add(executor.submit(worker(client, config, scenarioContext, random, warmupEnd, end)));
+            }
+            Map<Scenario, LatencyRecorder> merged = new EnumMap<>(Scenario.class);
+            for (Scenario scenario : Scenario.values()) {
+                merged.put(scenario, new LatencyRecorder());
+            }
+            for (Future<Map<Scenario, LatencyRecorder>> future : futures) {
+                future.get().forEach((scenario, recorder) -> merged.get(scenario).merge(recorder));
+            }
+            return merged;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Callable<Map<Scenario, LatencyRecorder>> worker(HttpClient client, LoadTestConfig config,
+                                                                    Scenario.Context ctx, Random random,
+                                                                    long warmupEnd, long end) {
+        return () -> {
+            Map<Scenario, LatencyRecorder> recorders = new EnumMap<>(Scenario.class);
+            for (Scenario scenario : Scenario.values()) {
+                recorders.put(scenario, new LatencyRecorder());
+            }
+            long started;
+            while ((started = System.nanoTime()) < end) {
+                Scenario scenario = Scenario.pick(random);
+                HttpRequest.Builder builder = scenario.request(ctx, random).timeout(Duration.ofSeconds(30));
+                if (config.compression) {
+                    builder.header("Accept-Encoding", "gzip");
+                }
+                HttpRequest request = builder.build();
+                boolean error;
+                long bytes = 0;
+                try {
+                    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    error = response.statusCode() >= 400;
+                    bytes = response.body().length;
+                } catch (IOException e) {
+                    error = true;
+                }
+                if (started >= warmupEnd) {
+                    recorders.get(scenario).record(System.nanoTime() - started, error, bytes);
+                }
+            }
+            return recorders;
+        };
+    }
+}
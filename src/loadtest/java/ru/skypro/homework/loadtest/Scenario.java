@@ -0,0 +1,188 @@
+package ru.skypro.homework.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Сценарии нагрузки по мотивам example-requests.http. Вес определяет долю сценария в общем потоке запросов.
+ */
+enum Scenario {
+
+    GET_ADS("GET /ads", 30) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            return ctx.get("/ads");
+        }
+    },
+    GET_AD("GET /ads/{id}", 20) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            return ctx.get("/ads/" + ctx.randomAdId(random));
+        }
+    },
+    GET_COMMENTS("GET /ads/{id}/comments", 15) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            return ctx.get("/ads/" + ctx.randomAdId(random) + "/comments");
+        }
+    },
+    GET_ADS_ME("GET /ads/me", 8) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            return ctx.authenticated(ctx.get("/ads/me"), random);
+        }
+    },
+    GET_USER_ME("GET /users/me", 8) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            return ctx.authenticated(ctx.get("/users/me"), random);
+        }
+    },
+    PATCH_USER_ME("PATCH /users/me", 4) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            String body = "{\"firstName\":\"Иван\",\"lastName\":\"Иванов\",\"phone\":\"+7 (999) 123-45-67\"}";
+            return ctx.authenticated(ctx.json("/users/me", "PATCH", body), random);
+        }
+    },
+    POST_COMMENT("POST /ads/{id}/comments", 4) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            String body = "{\"text\":\"Комментарий из нагрузочного теста\"}";
+            return ctx.authenticated(ctx.json("/ads/" + ctx.randomAdId(random) + "/comments", "POST", body), random);
+        }
+    },
+    POST_LOGIN("POST /login", 5) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            String body = "{\"username\":\"" + ctx.randomEmail(random) + "\",\"password\":\""
+                    + DatasetGenerator.PASSWORD + "\"}";
+            return ctx.json("/login", "POST", body);
+        }
+    },
+    POST_SET_PASSWORD("POST /users/set_password", 1) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            // Пароль меняется на тот же самый, чтобы не ломать остальные сценарии
+            String body = "{\"currentPassword\":\"" + DatasetGenerator.PASSWORD + "\",\"newPassword\":\""
+                    + DatasetGenerator.PASSWORD + "\"}";
+            return ctx.authenticated(ctx.json("/users/set_password", "POST", body), random);
+        }
+    },
+    POST_REGISTER("POST /register", 2) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            String body = "{\"username\":\"lt-new-" + ctx.registered.incrementAndGet() + "@example.com\","
+                    + "\"password\":\"" + DatasetGenerator.PASSWORD + "\",\"firstName\":\"Иван\","
+                    + "\"lastName\":\"Иванов\",\"phone\":\"+7 (999) 123-45-67\",\"role\":\"USER\"}";
+            return ctx.json("/register", "POST", body);
+        }
+    },
+    POST_AD("POST /ads", 3) {
+        @Override
+        HttpRequest.Builder request(Context ctx, Random random) {
+            String boundary = UUID.randomUUID().toString();
+            String properties = "{\"title\":\"Новое объявление\",\"price\":1000,"
+                    + "\"description\":\"Объявление из нагрузочного теста\"}";
+            byte[] body = multipart(boundary, properties, ctx.image);
+            return ctx.authenticated(HttpRequest.newBuilder(ctx.uri("/ads"))
+                                                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                                                .POST(HttpRequest.BodyPublishers.ofByteArray(body)), random);
+        }
+    };
+
+    final String endpoint;
+    final int weight;
+
+    Scenario(String endpoint, int weight) {
+        this.endpoint = endpoint;
+        this.weight = weight;
+    }
+
+    abstract HttpRequest.Builder request(Context ctx, Random random);
+
+    /**
+     * Выбор сценария с учётом весов.
+     */
+    static Scenario pick(Random random) {
+        int total = 0;
+        for (Scenario scenario : values()) {
+            total += scenario.weight;
+        }
+        int point = random.nextInt(total);
+        for (Scenario scenario : values()) {
+            point -= scenario.weight;
+            if (point < 0) {
+                return scenario;
+            }
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+    private static byte[] multipart(String boundary, String properties, byte[] image) {
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"properties\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + properties + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"image.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.UTF_8);
+        byte[] tailBytes = tail.getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[headBytes.length + image.length + tailBytes.length];
+        System.arraycopy(headBytes, 0, body, 0, headBytes.length);
+        System.arraycopy(image, 0, body, headBytes.length, image.length);
+        System.arraycopy(tailBytes, 0, body, headBytes.length + image.length, tailBytes.length);
+        return body;
+    }
+
+    /**
+     * Общее для всех клиентов окружение: адрес приложения, набор данных и содержимое загружаемой картинки.
+     */
+    static final class Context {
+        private final String baseUrl;
+        private final DatasetGenerator.Dataset dataset;
+        private final byte[] image;
+        private final AtomicInteger registered = new AtomicInteger();
+
+        Context(String baseUrl, DatasetGenerator.Dataset dataset, byte[] image) {
+            this.baseUrl = baseUrl;
+            this.dataset = dataset;
+            this.image = image;
+        }
+
+        URI uri(String path) {
+            return URI.create(baseUrl + path);
+        }
+
+        HttpRequest.Builder get(String path) {
+            return HttpRequest.newBuilder(uri(path)).GET();
+        }
+
+        HttpRequest.Builder json(String path, String method, String body) {
+            return HttpRequest.newBuilder(uri(path))
+                              .header("Content-Type", "application/json")
+                              .method(method, HttpRequest.BodyPublishers.ofString(body));
+        }
+
+        HttpRequest.Builder authenticated(HttpRequest.Builder builder, Random random) {
+            String credentials = randomEmail(random) + ":" + DatasetGenerator.PASSWORD;
+            return builder.header("Authorization",
+                    "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        String randomEmail(Random random) {
+            return DatasetGenerator.email(random.nextInt(dataset.users));
+        }
+
+        int randomAdId(Random random) {
+            return dataset.adIds.get(random.nextInt(dataset.adIds.size()));
+        }
+    }
+}
@@ -2,8 +2,14 @@ package ru.skypro.homework;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@EnableScheduling
+@EnableAsync
 public class HomeworkApplication {
     public static void main(String[] args) {
         SpringApplication.run(HomeworkApplication.class, args);
@@ -0,0 +1,75 @@
+package ru.skypro.homework.bulkhead;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * DataSource, который выдаёт соединение только при свободном месте в отсеке текущего класса трафика.
+ * <p>
+ * Место занимается до обращения к пулу и освобождается при закрытии соединения, поэтому один класс
+ * трафика не может занять весь пул: например, поток анонимных {@code GET /ads} упирается в свой отсек,
+ * а вход и запись получают соединения без очереди за ним. Если места нет дольше {@code max-wait},
+ * выбрасывается {@link java.sql.SQLTransientConnectionException}, как при исчерпании пула Hikari.
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    private final ConnectionBulkheads bulkheads;
+
+    public BulkheadDataSource(DataSource target, ConnectionBulkheads bulkheads) {
+        super(target);
+        this.bulkheads = bulkheads;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ConnectionBulkhead bulkhead = bulkheads.select();
+        if (bulkhead == null) {
+            return super.getConnection();
+        }
+        bulkhead.acquire();
+        try {
+            return releasingOnClose(super.getConnection(), bulkhead);
+        } catch (SQLException | RuntimeException e) {
+            bulkhead.release();
+            throw e;
+        }
+    }
+
+    private static Connection releasingOnClose(Connection connection, ConnectionBulkhead bulkhead) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(BulkheadDataSource.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "getTargetConnection":
+                            return connection;
+                        case "close":
+                            if (released.compareAndSet(false, true)) {
+                                try {
+                                    connection.close();
+                                } finally {
+                                    bulkhead.release();
+                                }
+                            }
+                            return null;
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
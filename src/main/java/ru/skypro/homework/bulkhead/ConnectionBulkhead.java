@@ -0,0 +1,95 @@
+package ru.skypro.homework.bulkhead;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Один отсек: справедливый семафор на число одновременно занятых соединений.
+ * <p>
+ * Метрики: {@code app.db.bulkhead.acquire} (время ожидания места, теги bulkhead и outcome: acquired, timeout),
+ * {@code app.db.bulkhead.active} и {@code app.db.bulkhead.limit}.
+ */
+public class ConnectionBulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+
+    private volatile Timer acquiredTimer;
+    private volatile Timer timeoutTimer;
+
+    public ConnectionBulkhead(String name, int maxConcurrent, Duration maxWait) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    void bindTo(MeterRegistry registry) {
+        acquiredTimer = acquireTimer(registry, "acquired");
+        timeoutTimer = acquireTimer(registry, "timeout");
+        Gauge.builder("app.db.bulkhead.active", this, ConnectionBulkhead::getActive)
+             .description("Connections currently held through the bulkhead")
+             .tag("bulkhead", name)
+             .register(registry);
+        Gauge.builder("app.db.bulkhead.limit", this, bulkhead -> bulkhead.maxConcurrent)
+             .description("Connections the bulkhead may hold at once")
+             .tag("bulkhead", name)
+             .register(registry);
+    }
+
+    /**
+     * Занимает место в отсеке, ожидая не дольше {@code max-wait}.
+     *
+     * @throws SQLTransientConnectionException если место не освободилось вовремя
+     */
+    public void acquire() throws SQLTransientConnectionException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for bulkhead " + name, e);
+        }
+        record(acquired ? acquiredTimer : timeoutTimer, System.nanoTime() - start);
+        if (!acquired) {
+            throw new SQLTransientConnectionException("Bulkhead " + name + " is full: " + maxConcurrent
+                    + " connections in use, waited " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms");
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private static void record(Timer timer, long nanos) {
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer acquireTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("app.db.bulkhead.acquire")
+                    .description("Time spent waiting for a place in a connection bulkhead")
+                    .tag("bulkhead", name)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+    }
+}
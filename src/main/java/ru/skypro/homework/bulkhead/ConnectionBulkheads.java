@@ -0,0 +1,76 @@
+package ru.skypro.homework.bulkhead;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Отсеки из {@link DbBulkheadProperties} и выбор отсека для соединения, которое запрашивает текущий поток.
+ * <p>
+ * Класс трафика определяется так же, как endpoint в {@link ru.skypro.homework.datasource.ConnectionHoldListener}:
+ * по HTTP-запросу, привязанному к потоку, и по тому, выбран ли уже обработчик.
+ */
+public class ConnectionBulkheads implements MeterBinder {
+
+    static final String AUTHENTICATION = "authentication";
+    static final String BACKGROUND = "background";
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final ConnectionBulkhead authentication;
+    private final ConnectionBulkhead background;
+    private final Map<DbBulkheadProperties.Route, ConnectionBulkhead> routes = new LinkedHashMap<>();
+
+    public ConnectionBulkheads(DbBulkheadProperties properties) {
+        this.authentication = bulkhead(AUTHENTICATION, properties.getAuthentication());
+        this.background = bulkhead(BACKGROUND, properties.getBackground());
+        properties.getRoutes().forEach(route -> routes.put(route, bulkhead(route.getName(), route)));
+    }
+
+    private static ConnectionBulkhead bulkhead(String name, DbBulkheadProperties.Limit limit) {
+        return new ConnectionBulkhead(name, limit.getMaxConcurrent(), limit.getMaxWait());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        authentication.bindTo(registry);
+        background.bindTo(registry);
+        routes.values().forEach(bulkhead -> bulkhead.bindTo(registry));
+    }
+
+    /**
+     * @return отсек для соединения текущего потока или {@code null}, если соединение не ограничивается
+     */
+    public ConnectionBulkhead select() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return background;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        if (request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) == null) {
+            return authentication;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Map.Entry<DbBulkheadProperties.Route, ConnectionBulkhead> entry : routes.entrySet()) {
+            if (matches(entry.getKey(), request.getMethod(), path)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(DbBulkheadProperties.Route route, String method, String path) {
+        if (!route.getMethods().isEmpty() && route.getMethods().stream().noneMatch(method::equalsIgnoreCase)) {
+            return false;
+        }
+        return route.getPatterns().stream().anyMatch(pattern -> PATH_MATCHER.match(pattern, path));
+    }
+}
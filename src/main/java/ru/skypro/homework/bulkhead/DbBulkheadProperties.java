@@ -0,0 +1,85 @@
+package ru.skypro.homework.bulkhead;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки отсеков пула соединений ({@code app.db-bulkhead.*}).
+ * <p>
+ * Каждый отсек — ограничение числа соединений, которые один класс трафика держит одновременно.
+ * Соединения, взятые в цепочке фильтров до выбора обработчика (проверка Basic-аутентификации),
+ * попадают в {@code authentication}, взятые вне HTTP-запроса (задачи по расписанию, асинхронная выгрузка) —
+ * в {@code background}. Остальные распределяются по {@code routes}: первый подходящий маршрут;
+ * соединения запросов, не попавших ни в один маршрут, не ограничиваются.
+ */
+@Data
+@Validated
+@ConfigurationProperties(prefix = "app.db-bulkhead")
+public class DbBulkheadProperties {
+
+    private boolean enabled = true;
+
+    @Valid
+    private Limit authentication = new Limit(3, Duration.ofSeconds(2));
+
+    @Valid
+    private Limit background = new Limit(2, Duration.ofSeconds(10));
+
+    @Valid
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Limit {
+
+        /**
+         * Сколько соединений отсек может держать одновременно.
+         */
+        @Min(1)
+        private int maxConcurrent = 1;
+
+        /**
+         * Сколько ждать свободного места в отсеке; после этого — 503 с {@code Retry-After}.
+         */
+        private Duration maxWait = Duration.ofSeconds(1);
+
+        public Limit() {
+        }
+
+        public Limit(int maxConcurrent, Duration maxWait) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxWait = maxWait;
+        }
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class Route extends Limit {
+
+        /**
+         * Имя отсека — тег {@code bulkhead} в метриках.
+         */
+        @NotBlank
+        private String name;
+
+        /**
+         * HTTP-методы; пустой список — любые.
+         */
+        private List<String> methods = new ArrayList<>();
+
+        /**
+         * Ant-шаблоны пути, например {@code /ads/{id:\d+}}.
+         */
+        @NotEmpty
+        private List<String> patterns = new ArrayList<>();
+    }
+}
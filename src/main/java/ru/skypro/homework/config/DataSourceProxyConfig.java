@@ -0,0 +1,54 @@
+package ru.skypro.homework.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import ru.skypro.homework.bulkhead.BulkheadDataSource;
+import ru.skypro.homework.bulkhead.ConnectionBulkheads;
+import ru.skypro.homework.datasource.ConnectionHoldListener;
+import ru.skypro.homework.datasource.SqlStatisticsListener;
+
+import javax.sql.DataSource;
+
+/**
+ * Оборачивает DataSource в datasource-proxy, чтобы считать SQL-выражения и время в БД на каждый HTTP-запрос.
+ * Бюджет запроса проверяет {@link ru.skypro.homework.filter.SqlStatementBudgetFilter}.
+ * {@link ConnectionHoldListener} измеряет, сколько каждый эндпоинт держит соединение из пула.
+ * <p>
+ * Оборачивается только бин {@code dataSource}, через который работает приложение: при включённой реплике
+ * пулы primary и реплики лежат под ним, и их повторное оборачивание посчитало бы каждое выражение дважды.
+ * Снаружи прокси стоит {@link BulkheadDataSource}, если заданы отсеки пула ({@link DbBulkheadConfig}):
+ * ожидание места в отсеке не входит во время удержания соединения.
+ */
+@Configuration
+public class DataSourceProxyConfig {
+
+    private static final String DATA_SOURCE_BEAN_NAME = "dataSource";
+
+    @Bean
+    public static BeanPostProcessor sqlStatisticsDataSourcePostProcessor(Environment environment,
+                                                                         ObjectProvider<MeterRegistry> meterRegistry,
+                                                                         ObjectProvider<ConnectionBulkheads> bulkheads) {
+        long slowStatementMillis = environment.getProperty("app.sql-budget.slow-statement-ms", Long.class, 200L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!DATA_SOURCE_BEAN_NAME.equals(beanName) || !(bean instanceof DataSource)
+                        || bean instanceof ProxyDataSource || bean instanceof BulkheadDataSource) {
+                    return bean;
+                }
+                DataSource proxy = ProxyDataSourceBuilder.create(beanName, (DataSource) bean)
+                                                         .listener(new SqlStatisticsListener(slowStatementMillis))
+                                                         .listener(new ConnectionHoldListener(meterRegistry))
+                                                         .build();
+                ConnectionBulkheads connectionBulkheads = bulkheads.getIfAvailable();
+                return connectionBulkheads == null ? proxy : new BulkheadDataSource(proxy, connectionBulkheads);
+            }
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package ru.skypro.homework.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.skypro.homework.bulkhead.ConnectionBulkheads;
+import ru.skypro.homework.bulkhead.DbBulkheadProperties;
+
+/**
+ * Отсеки пула соединений по классам трафика ({@code app.db-bulkhead.enabled=true}, по умолчанию включены).
+ * DataSource оборачивает {@link DataSourceProxyConfig}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.db-bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+public class DbBulkheadConfig {
+
+    @Bean
+    public ConnectionBulkheads connectionBulkheads(DbBulkheadProperties properties) {
+        return new ConnectionBulkheads(properties);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.skypro.homework.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Бинарные JSON-совместимые форматы для всех контроллеров: клиент выбирает формат заголовком
+ * {@code Accept: application/x-jackson-smile} или {@code Accept: application/cbor}
+ * (и присылает тело с тем же {@code Content-Type}); без заголовка ответ остаётся JSON.
+ * <p>
+ * Конвертеры строятся из {@link Jackson2ObjectMapperBuilder} Spring Boot, поэтому настройки
+ * {@code spring.jackson.*} (часовой пояс UTC, формат дат) у всех форматов одинаковые,
+ * и заменяют конвертеры Spring MVC по умолчанию, которые этих настроек не учитывают.
+ * Они подключаются только к Spring MVC, а не бинами: бин-конвертеры попадают и в клиентский
+ * {@code RestTemplateBuilder}, где CBOR оказывается первым конвертером частей multipart
+ * и пытается сериализовать файлы.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class JacksonBinaryFormatsConfig implements WebMvcConfigurer {
+
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        replaceOrAdd(converters, MappingJackson2SmileHttpMessageConverter.class,
+                new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.createXmlMapper(false)
+                                                                                .factory(new SmileFactory())
+                                                                                .build()));
+        replaceOrAdd(converters, MappingJackson2CborHttpMessageConverter.class,
+                new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.createXmlMapper(false)
+                                                                               .factory(new CBORFactory())
+                                                                               .build()));
+    }
+
+    private static void replaceOrAdd(List<HttpMessageConverter<?>> converters,
+                                     Class<?> type, HttpMessageConverter<?> converter) {
+        for (int i = 0; i < converters.size(); i++) {
+            if (type.isInstance(converters.get(i))) {
+                converters.set(i, converter);
+                return;
+            }
+        }
+        converters.add(converter);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.skypro.homework.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.skypro.homework.security.InMemoryLoginAttemptStore;
+import ru.skypro.homework.security.LoginAttemptStore;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Хранилище попыток входа по умолчанию — в памяти ({@code app.login-throttling.store=memory}).
+ * При другом значении свойства приложение ожидает собственный бин {@link LoginAttemptStore},
+ * общий для всех экземпляров.
+ */
+@Configuration
+public class LoginThrottlingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.login-throttling.store", havingValue = "memory", matchIfMissing = true)
+    public LoginAttemptStore loginAttemptStore(@Value("${app.login-throttling.window-seconds:900}") long windowSeconds,
+                                               @Value("${app.login-throttling.base-backoff-seconds:1}") long baseBackoffSeconds,
+                                               @Value("${app.login-throttling.max-backoff-seconds:900}") long maxBackoffSeconds,
+                                               @Value("${app.login-throttling.max-keys:100000}") int maxKeys,
+                                               MeterRegistry meterRegistry) {
+        InMemoryLoginAttemptStore store = new InMemoryLoginAttemptStore(Duration.ofSeconds(windowSeconds),
+                Duration.ofSeconds(baseBackoffSeconds), Duration.ofSeconds(maxBackoffSeconds), maxKeys,
+                Clock.systemUTC());
+        Gauge.builder("app.login.attempts.keys", store, InMemoryLoginAttemptStore::size)
+             .description("Usernames and addresses with recorded failed logins")
+             .register(meterRegistry);
+        return store;
+    }
+}
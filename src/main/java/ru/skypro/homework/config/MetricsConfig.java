@@ -0,0 +1,21 @@
+package ru.skypro.homework.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Включает обработку {@link io.micrometer.core.annotation.Timed} на сервисах.
+ * Таймеры методов сервисов публикуются под именем {@link #SERVICE_TIMER} с тегами class и method.
+ */
+@Configuration
+public class MetricsConfig {
+
+    public static final String SERVICE_TIMER = "app.service";
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.skypro.homework.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+import ru.skypro.homework.datasource.ReadWriteRoutingDataSource;
+import ru.skypro.homework.datasource.ReadYourWritesTracker;
+import ru.skypro.homework.datasource.ReplicaLagMonitor;
+import ru.skypro.homework.datasource.ReplicaProperties;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * Два пула — primary и реплика для чтения — за одним DataSource с маршрутизацией по read-only транзакциям.
+ * Включается свойством {@code app.datasource.replica.url}.
+ * <p>
+ * Пулы объявлены отдельными бинами, чтобы у каждого были свои метрики Hikari и health-проверка.
+ * Приложение, JPA и Flyway видят только {@code dataSource}; Flyway и всё, что работает вне транзакции,
+ * попадает на primary.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "url")
+public class ReadReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties, ReplicaProperties replica) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        dataSource.setJdbcUrl(replica.getUrl());
+        dataSource.setUsername(StringUtils.hasText(replica.getUsername())
+                ? replica.getUsername() : properties.determineUsername());
+        dataSource.setPassword(StringUtils.hasText(replica.getPassword())
+                ? replica.getPassword() : properties.determinePassword());
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                               ReplicaProperties replica) {
+        return new ReplicaLagMonitor(replicaDataSource, replica.getMaxLag());
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(ReplicaProperties replica) {
+        return new ReadYourWritesTracker(replica.getStickyWindow());
+    }
+
+    @Bean
+    public MeterBinder readYourWritesTrackerMetrics(ReadYourWritesTracker tracker) {
+        return registry -> Gauge.builder("app.datasource.replica.sticky.users", tracker, ReadYourWritesTracker::size)
+                                .description("Users whose reads stay on primary after a recent write")
+                                .register(registry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor,
+                                 ReadYourWritesTracker readYourWritesTracker,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource,
+                replicaLagMonitor, readYourWritesTracker, meterRegistry);
+        routing.afterPropertiesSet();
+        // Значения по умолчанию заданы явно, иначе прокси возьмёт соединение с primary ради их чтения при старте
+        LazyConnectionDataSourceProxy lazy = new LazyConnectionDataSourceProxy();
+        lazy.setTargetDataSource(routing);
+        lazy.setDefaultAutoCommit(true);
+        lazy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        lazy.afterPropertiesSet();
+        return lazy;
+    }
+}
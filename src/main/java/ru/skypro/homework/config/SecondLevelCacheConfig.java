@@ -0,0 +1,49 @@
+package ru.skypro.homework.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.skypro.homework.model.UsersDao;
+
+import javax.cache.CacheManager;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Кэш второго уровня Hibernate на JCache (Caffeine).
+ * <p>
+ * Регионы создаются здесь, а не из файла конфигурации Caffeine, чтобы размер и время жизни задавались
+ * свойствами {@code app.cache.users.*}; Hibernate получает готовый {@link CacheManager} и не создаёт
+ * неописанные регионы ({@code missing_cache_strategy=fail}). У каждого контекста свой провайдер,
+ * поэтому контексты в тестах не делят кэш.
+ * <p>
+ * Кэш локален для экземпляра приложения: изменения, сделанные другим экземпляром, видны здесь
+ * не позже чем через {@code app.cache.users.ttl}. Поэтому учётные данные для аутентификации читаются
+ * мимо кэша ({@link ru.skypro.homework.repository.UserRepository#findCredentialsByEmail(String)}). Статистику (hit/miss по регионам и кэшу натуральных ключей)
+ * публикует hibernate-micrometer при {@code hibernate.generate_statistics=true}.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${app.cache.users.max-size:10000}") long usersMaxSize,
+                                              @Value("${app.cache.users.ttl:10m}") Duration usersTtl) {
+        CaffeineCachingProvider provider = new CaffeineCachingProvider();
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        CaffeineConfiguration<Object, Object> users = new CaffeineConfiguration<>();
+        users.setMaximumSize(OptionalLong.of(usersMaxSize));
+        users.setExpireAfterWrite(OptionalLong.of(usersTtl.toNanos()));
+        cacheManager.createCache(UsersDao.CACHE_REGION, users);
+        cacheManager.createCache(UsersDao.NATURAL_ID_CACHE_REGION, users);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
@@ -1,5 +1,7 @@
 package ru.skypro.homework.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -7,7 +9,13 @@ import org.springframework.security.config.annotation.authentication.builders.Au
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.skypro.homework.security.BcryptStrengthCalibrator;
+import ru.skypro.homework.security.BoundedPasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Конфигурация для предотвращения циклической зависимости в WebSecurityConfig
@@ -16,9 +24,35 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class SecurityBeansConfig {
 
+    private static final String BCRYPT_ID = "bcrypt";
+
+    /**
+     * Пароли хранятся в формате {@code {bcrypt}$2a$NN$...} ({@link DelegatingPasswordEncoder}).
+     * <p>
+     * Стоимость BCrypt берётся из {@code app.password-hashing.bcrypt-strength}, а при значении 0
+     * подбирается при старте под {@code app.password-hashing.target-verify-ms}
+     * ({@link BcryptStrengthCalibrator}). Старые хеши без префикса (тестовые данные V3) проверяются
+     * BCrypt по умолчанию и, как и хеши с меньшей стоимостью, перехешируются при успешном входе
+     * ({@link ru.skypro.homework.service.DatabaseUserDetailsManager#updatePassword}).
+     * <p>
+     * Хеширование выполняется на отдельном ограниченном пуле, см. {@link BoundedPasswordEncoder}.
+     * {@code app.password-hashing.threads=0} — по числу ядер.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${app.password-hashing.bcrypt-strength:0}") int bcryptStrength,
+                                           @Value("${app.password-hashing.target-verify-ms:100}") long targetVerifyMillis,
+                                           @Value("${app.password-hashing.threads:0}") int threads,
+                                           @Value("${app.password-hashing.queue-capacity:50}") int queueCapacity,
+                                           MeterRegistry meterRegistry) {
+        int strength = bcryptStrength > 0 ? bcryptStrength : BcryptStrengthCalibrator.calibrate(targetVerifyMillis);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT_ID, new BCryptPasswordEncoder(strength));
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(BCRYPT_ID, encoders);
+        delegating.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(delegating, poolSize, queueCapacity, meterRegistry);
     }
 
     @Bean
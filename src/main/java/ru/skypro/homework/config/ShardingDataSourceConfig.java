@@ -0,0 +1,133 @@
+package ru.skypro.homework.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.sharding.ShardDataSources;
+import ru.skypro.homework.sharding.ShardDirectory;
+import ru.skypro.homework.sharding.ShardMigrationStrategy;
+import ru.skypro.homework.sharding.ShardRebalancer;
+import ru.skypro.homework.sharding.ShardRouter;
+import ru.skypro.homework.sharding.ShardRoutingDataSource;
+import ru.skypro.homework.sharding.ShardRoutingInterceptor;
+import ru.skypro.homework.sharding.ShardUserReplicator;
+import ru.skypro.homework.sharding.ShardingProperties;
+import ru.skypro.homework.sharding.ShardsEndpoint;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * Шардирование объявлений и комментариев по автору: пулы всех узлов за одним DataSource с маршрутизацией
+ * по {@link ru.skypro.homework.sharding.ShardContext}. Включается свойством {@code app.sharding.enabled}.
+ * <p>
+ * Пул основного узла — отдельный бин с метриками и health-проверкой Hikari; пулы шардов создаются по его
+ * настройкам ({@code spring.datasource.hikari.*}) и называются именами шардов. С репликой для чтения
+ * ({@link ReadReplicaDataSourceConfig}) не совмещается.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.sharding", name = "enabled", havingValue = "true")
+public class ShardingDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource mainDataSource(DataSourceProperties properties, Environment environment) {
+        if (StringUtils.hasText(environment.getProperty("app.datasource.replica.url"))) {
+            throw new IllegalStateException("app.sharding.enabled cannot be combined with app.datasource.replica.url");
+        }
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ShardingProperties.MAIN);
+        return dataSource;
+    }
+
+    @Bean
+    public ShardDataSources shardDataSources(@Qualifier("mainDataSource") HikariDataSource mainDataSource,
+                                             ShardingProperties properties) {
+        ShardDataSources dataSources = new ShardDataSources(mainDataSource);
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            if (shard.getIndex() <= 0 || shard.getIndex() >= properties.getMaxShards()) {
+                throw new IllegalStateException("Index of shard " + shard.getName() + " must be between 1 and "
+                        + (properties.getMaxShards() - 1));
+            }
+            HikariConfig config = new HikariConfig();
+            mainDataSource.copyStateTo(config);
+            config.setPoolName(shard.getName());
+            config.setJdbcUrl(shard.getUrl());
+            if (StringUtils.hasText(shard.getUsername())) {
+                config.setUsername(shard.getUsername());
+            }
+            if (StringUtils.hasText(shard.getPassword())) {
+                config.setPassword(shard.getPassword());
+            }
+            dataSources.addShard(shard.getName(), shard.getIndex(), new HikariDataSource(config));
+        }
+        return dataSources;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardDataSources shardDataSources) {
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shardDataSources.asMap());
+        routing.afterPropertiesSet();
+        // как в ReadReplicaDataSourceConfig: без явных значений прокси взял бы соединение ради их чтения при старте
+        LazyConnectionDataSourceProxy lazy = new LazyConnectionDataSourceProxy();
+        lazy.setTargetDataSource(routing);
+        lazy.setDefaultAutoCommit(true);
+        lazy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        lazy.afterPropertiesSet();
+        return lazy;
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory(ShardDataSources shardDataSources, ShardingProperties properties) {
+        return new ShardDirectory(shardDataSources.jdbc(ShardingProperties.MAIN), properties.getBuckets());
+    }
+
+    @Bean
+    public ShardUserReplicator shardUserReplicator(ShardDataSources shardDataSources, ShardingProperties properties) {
+        return new ShardUserReplicator(shardDataSources, properties.getUserReplicationTimeout());
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(ShardDataSources shardDataSources, ShardDirectory shardDirectory,
+                                           ShardingProperties properties) {
+        return new ShardRebalancer(shardDataSources, shardDirectory, properties.getSettleTime());
+    }
+
+    @Bean
+    public ShardsEndpoint shardsEndpoint(ShardDataSources shardDataSources, ShardDirectory shardDirectory,
+                                         ShardRebalancer shardRebalancer) {
+        return new ShardsEndpoint(shardDataSources, shardDirectory, shardRebalancer);
+    }
+
+    @Bean
+    public ShardMigrationStrategy shardMigrationStrategy(ShardDataSources shardDataSources,
+                                                         ShardUserReplicator shardUserReplicator,
+                                                         ShardDirectory shardDirectory,
+                                                         ShardingProperties properties) {
+        return new ShardMigrationStrategy(shardDataSources, shardUserReplicator, shardDirectory,
+                properties.getMaxShards());
+    }
+
+    @Bean
+    public WebMvcConfigurer shardRoutingConfigurer(ShardRouter shardRouter, UserRepository userRepository) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new ShardRoutingInterceptor(shardRouter, userRepository));
+            }
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package ru.skypro.homework.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Режим виртуальных потоков (Java 21+, профиль сборки {@code java21}), включается {@code app.threads.virtual=true}.
+ * <p>
+ * Tomcat обрабатывает каждый запрос в отдельном виртуальном потоке вместо ограниченного пула
+ * {@code server.tomcat.threads.max}, тем же способом исполняются асинхронные задачи приложения.
+ * Число одновременных запросов ограничивает {@code server.tomcat.max-connections},
+ * а доступ к БД — пул Hikari: его размер и короткий {@code connection-timeout} задаются
+ * в {@code application-vthreads.properties}, чтобы тысячи виртуальных потоков не копились в очереди за соединением.
+ * <p>
+ * API виртуальных потоков вызывается через reflection, чтобы основная сборка оставалась на Java 11.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(virtualThreadFactory("http-vt-"));
+        log.info("Tomcat requests will run on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new SimpleAsyncTaskExecutor(virtualThreadFactory("task-vt-"));
+    }
+
+    /**
+     * Эквивалент {@code Thread.ofVirtual().name(prefix, 0).factory()}.
+     *
+     * @throws IllegalStateException если JVM не поддерживает виртуальные потоки
+     */
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method name = builderType.getMethod("name", String.class, long.class);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(name.invoke(builder, prefix, 0L));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("app.threads.virtual=true requires Java 21+, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package ru.skypro.homework.config;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import ru.skypro.homework.filter.LoginThrottlingFilter;
+import ru.skypro.homework.filter.PasswordHashingRejectedFilter;
+import ru.skypro.homework.security.LoginThrottlingService;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
@@ -15,6 +20,7 @@ import static org.springframework.security.config.Customizer.withDefaults;
 public class WebSecurityConfig {
 
     private final UserDetailsService userDetailsService;
+    private final LoginThrottlingService loginThrottlingService;
 
     private static final String[] AUTH_WHITELIST = {
             "/swagger-resources/**",
@@ -30,13 +36,22 @@ public class WebSecurityConfig {
         http.csrf().disable()
             .authorizeHttpRequests(authz -> authz
                     .mvcMatchers(AUTH_WHITELIST).permitAll()
+                    // Actuator: health и метрики для Prometheus открыты, остальное только для ADMIN
+                    .requestMatchers(EndpointRequest.to("health", "info", "prometheus")).permitAll()
+                    .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ADMIN")
+                    // Выгрузка всех объявлений только для ADMIN (до открытого GET /ads/{id})
+                    .mvcMatchers(HttpMethod.GET, "/ads/export").hasRole("ADMIN")
                     // Открытые GET-эндпоинты
                     .mvcMatchers(HttpMethod.GET, "/ads", "/ads/{id}", "/ads/{id}/comments").permitAll()
                     // Всё остальное требует аутентификации
                     .anyRequest().authenticated()
             )
             .cors(withDefaults())
-            .httpBasic(withDefaults());
+            .httpBasic(withDefaults())
+            // 503 вместо 500, если пул хеширования паролей переполнен во время Basic-аутентификации
+            .addFilterBefore(new PasswordHashingRejectedFilter(), BasicAuthenticationFilter.class)
+            // 429 для заблокированных после неудачных попыток входа, до проверки пароля
+            .addFilterBefore(new LoginThrottlingFilter(loginThrottlingService), BasicAuthenticationFilter.class);
         return http.build();
     }
 }
\ No newline at end of file
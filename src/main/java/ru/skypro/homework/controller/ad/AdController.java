@@ -20,17 +20,19 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.skypro.homework.dto.ad.AdDto;
 import ru.skypro.homework.dto.ad.AdsDto;
 import ru.skypro.homework.dto.ad.CreateOrUpdateAdDto;
 import ru.skypro.homework.dto.ad.ExtendedAdDto;
 import ru.skypro.homework.service.AdService;
+import ru.skypro.homework.upload.MultipartImageReader;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.InputStream;
+import java.util.Map;
 
 @Slf4j
 @Validated
@@ -41,6 +43,7 @@ import javax.validation.Valid;
 public class AdController {
 
     private final AdService adService;
+    private final MultipartImageReader multipartImageReader;
 
     @Operation(summary = "Получение всех объявлений")
     @ApiResponses(value = {
@@ -52,19 +55,52 @@ public class AdController {
         return ResponseEntity.ok(adService.getAllAds());
     }
 
+    @Operation(summary = "Потоковая выгрузка всех объявлений (только ADMIN)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Объявления выгружаются по мере чтения из БД",
+                    content = @Content(schema = @Schema(implementation = AdsDto.class))),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "403", description = "Нет прав администратора")
+    })
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAds() {
+        return ResponseEntity.ok()
+                             .contentType(MediaType.APPLICATION_JSON)
+                             .body(adService::exportAds);
+    }
+
     @Operation(summary = "Добавление объявления")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Объявление создано",
                     content = @Content(schema = @Schema(implementation = AdDto.class))),
-            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован")
+            @ApiResponse(responseCode = "400", description = "Некорректные данные или изображение"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "413", description = "Изображение слишком большое")
     })
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Части 'properties' (JSON) и 'image' в любом порядке",
+            content = @Content(mediaType = MediaType.MULTIPART_FORM_DATA_VALUE))
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<AdDto> addAd(
-            @RequestPart("properties") @Valid CreateOrUpdateAdDto properties,
-            @RequestPart("image") MultipartFile image,
-            Authentication authentication) {
+    public ResponseEntity<AdDto> addAd(HttpServletRequest request, Authentication authentication) {
         String email = authentication.getName();
-        AdDto createdAd = adService.addAd(email, properties, image);
+        AdDto createdAd = multipartImageReader.readAll(request, "image",
+                new MultipartImageReader.StoredImageUpload<String, AdDto>() {
+                    @Override
+                    public String store(InputStream image) {
+                        return adService.saveAdImage(image);
+                    }
+
+                    @Override
+                    public AdDto complete(Map<String, byte[]> fields, String imagePath) {
+                        CreateOrUpdateAdDto properties = multipartImageReader.readJsonPart(fields, "properties",
+                                CreateOrUpdateAdDto.class);
+                        return adService.addAd(email, properties, imagePath);
+                    }
+
+                    @Override
+                    public void discard(String imagePath) {
+                        adService.deleteAdImage(imagePath);
+                    }
+                });
         return ResponseEntity.status(HttpStatus.CREATED).body(createdAd);
     }
 
@@ -126,17 +162,22 @@ public class AdController {
     @Operation(summary = "Обновление картинки объявления")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Изображение обновлено"),
+            @ApiResponse(responseCode = "400", description = "Некорректное изображение"),
             @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
             @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
-            @ApiResponse(responseCode = "404", description = "Объявление не найдено")
+            @ApiResponse(responseCode = "404", description = "Объявление не найдено"),
+            @ApiResponse(responseCode = "413", description = "Изображение слишком большое")
     })
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Часть 'image'",
+            content = @Content(mediaType = MediaType.MULTIPART_FORM_DATA_VALUE))
     @PatchMapping(value = "/{id}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<byte[]> updateImage(
             @PathVariable Integer id,
-            @RequestParam("image") MultipartFile image,
+            HttpServletRequest request,
             Authentication authentication) {
         String email = authentication.getName();
-        byte[] updatedImage = adService.updateImage(id, email, image);
+        byte[] updatedImage = multipartImageReader.read(request, "image",
+                (fields, image) -> adService.updateImage(id, email, image));
         return ResponseEntity.ok(updatedImage);
     }
 }
\ No newline at end of file
@@ -17,14 +17,14 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.multipart.MultipartFile;
 import ru.skypro.homework.dto.user.NewPasswordDto;
 import ru.skypro.homework.dto.user.UpdateUserDto;
 import ru.skypro.homework.dto.user.UserDto;
 import ru.skypro.homework.service.UserService;
+import ru.skypro.homework.upload.MultipartImageReader;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 @Slf4j
@@ -36,6 +36,7 @@ import javax.validation.Valid;
 public class UserController {
 
     private final UserService userService;
+    private final MultipartImageReader multipartImageReader;
 
     @Operation(summary = "Обновление пароля")
     @ApiResponses(value = {
@@ -81,14 +82,19 @@ public class UserController {
     @Operation(summary = "Обновление аватара авторизованного пользователя")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Аватар обновлен"),
-            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован")
+            @ApiResponse(responseCode = "400", description = "Некорректное изображение"),
+            @ApiResponse(responseCode = "401", description = "Пользователь не авторизован"),
+            @ApiResponse(responseCode = "413", description = "Изображение слишком большое")
     })
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Часть 'image'",
+            content = @Content(mediaType = MediaType.MULTIPART_FORM_DATA_VALUE))
     @PatchMapping(value = "/me/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<Void> updateUserImage(
-            @RequestParam("image") MultipartFile image,
-            Authentication authentication) {
+    public ResponseEntity<Void> updateUserImage(HttpServletRequest request, Authentication authentication) {
         String email = authentication.getName();
-        userService.updateUserImage(email, image);
+        multipartImageReader.read(request, "image", (fields, image) -> {
+            userService.updateUserImage(email, image);
+            return null;
+        });
         return ResponseEntity.ok().build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package ru.skypro.homework.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.ttddyy.dsproxy.ConnectionInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.lifecycle.JdbcLifecycleEventListenerAdapter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.sql.Connection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Слушатель datasource-proxy: время от получения соединения из пула до его возврата
+ * ({@code app.db.connection.hold} с тегом endpoint).
+ * <p>
+ * Endpoint — метод и шаблон пути обработчика ({@code GET /ads/{id}}); соединения, взятые до выбора обработчика
+ * (например, проверкой Basic-аутентификации в цепочке фильтров), помечаются {@value #FILTER_CHAIN},
+ * вне HTTP-запроса (фоновые задачи, старт приложения) — {@value #NO_REQUEST}.
+ */
+public class ConnectionHoldListener extends JdbcLifecycleEventListenerAdapter {
+
+    static final String FILTER_CHAIN = "filter-chain";
+    static final String NO_REQUEST = "none";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<String, Long> acquiredAt = new ConcurrentHashMap<>();
+
+    public ConnectionHoldListener(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterGetConnection(MethodExecutionContext executionContext) {
+        ConnectionInfo connectionInfo = executionContext.getConnectionInfo();
+        if (connectionInfo != null && executionContext.getThrown() == null) {
+            acquiredAt.put(connectionInfo.getConnectionId(), System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterClose(MethodExecutionContext executionContext) {
+        if (!(executionContext.getTarget() instanceof Connection) || executionContext.getConnectionInfo() == null) {
+            return;
+        }
+        Long startedAt = acquiredAt.remove(executionContext.getConnectionInfo().getConnectionId());
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (startedAt == null || registry == null) {
+            return;
+        }
+        Timer.builder("app.db.connection.hold")
+             .description("Time a pooled JDBC connection is held, per endpoint")
+             .tag("endpoint", currentEndpoint())
+             .publishPercentileHistogram()
+             .register(registry)
+             .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private static String currentEndpoint() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return NO_REQUEST;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? FILTER_CHAIN : request.getMethod() + " " + pattern;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.skypro.homework.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Направляет read-only транзакции на реплику, всё остальное — на primary.
+ * <p>
+ * Решение принимается при получении физического соединения, поэтому источник оборачивается
+ * в {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: транзакционный менеджер
+ * запрашивает соединение раньше, чем выставляет признак read-only, а ленивый прокси откладывает выбор пула
+ * до первого SQL-выражения. Вне транзакции соединение берётся с primary.
+ * <p>
+ * Чтение остаётся на primary, если реплика отстаёт или недоступна ({@link ReplicaLagMonitor}) и если
+ * пользователь недавно сам что-то записал ({@link ReadYourWritesTracker}) — запись фиксируется
+ * после коммита пишущей транзакции.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target { PRIMARY, REPLICA }
+
+    private final DataSource primary;
+
+    private final DataSource replica;
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    private final ReadYourWritesTracker writesTracker;
+
+    // Реестр метрик создаётся после DataSource и сам от него зависит, поэтому берётся лениво
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor,
+                                      ReadYourWritesTracker writesTracker, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.primary = primary;
+        this.replica = replica;
+        this.lagMonitor = lagMonitor;
+        this.writesTracker = writesTracker;
+        this.meterRegistry = meterRegistry;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    /**
+     * Если соединение с репликой получить не удалось, чтение выполняется на primary,
+     * а реплика считается недоступной до следующей успешной проверки.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target != replica) {
+            return target.getConnection();
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            lagMonitor.markUnavailable(e);
+            countRoute("primary", "replica-unavailable");
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String username = currentUsername();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            countRoute("primary", "write");
+            rememberWriteAfterCommit(username);
+            return Target.PRIMARY;
+        }
+        if (!lagMonitor.isAvailable()) {
+            countRoute("primary", "replica-unavailable");
+            return Target.PRIMARY;
+        }
+        if (username != null && writesTracker.isSticky(username)) {
+            countRoute("primary", "read-your-writes");
+            return Target.PRIMARY;
+        }
+        countRoute("replica", "read");
+        return Target.REPLICA;
+    }
+
+    private void countRoute(String target, String reason) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        Counter.builder("app.datasource.route")
+               .description("Physical connections taken per pool and routing reason")
+               .tag("target", target)
+               .tag("reason", reason)
+               .register(registry)
+               .increment();
+    }
+
+    private void rememberWriteAfterCommit(String username) {
+        if (username == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                writesTracker.recordWrite(username);
+            }
+        });
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
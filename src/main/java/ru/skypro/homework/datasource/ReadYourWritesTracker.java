@@ -0,0 +1,45 @@
+package ru.skypro.homework.datasource;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Запоминает время последней подтверждённой записи каждого пользователя.
+ * <p>
+ * Пока не истекло окно {@code app.datasource.replica.sticky-window}, read-only транзакции этого пользователя
+ * идут на primary: реплика могла ещё не применить его изменения. Остальные пользователи продолжают читать с реплики.
+ */
+public class ReadYourWritesTracker {
+
+    private final Map<String, Long> lastWriteNanos = new ConcurrentHashMap<>();
+
+    private final long windowNanos;
+
+    public ReadYourWritesTracker(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    public void recordWrite(String username) {
+        if (windowNanos > 0) {
+            lastWriteNanos.put(username, System.nanoTime());
+        }
+    }
+
+    public boolean isSticky(String username) {
+        Long writtenAt = lastWriteNanos.get(username);
+        return writtenAt != null && System.nanoTime() - writtenAt < windowNanos;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.eviction-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        lastWriteNanos.values().removeIf(writtenAt -> now - writtenAt >= windowNanos);
+    }
+
+    public int size() {
+        return lastWriteNanos.size();
+    }
+}
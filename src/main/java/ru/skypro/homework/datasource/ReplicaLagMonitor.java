@@ -0,0 +1,91 @@
+package ru.skypro.homework.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Периодически измеряет отставание реплики и решает, можно ли отправлять на неё чтение.
+ * <p>
+ * Отставание — время с момента последней применённой транзакции; если реплика применила весь полученный WAL,
+ * оно считается нулевым, чтобы простой без записей на primary не выглядел как отставание.
+ * Пока реплика не проверена, недоступна или отстаёт больше {@code app.datasource.replica.max-lag},
+ * {@link ReadWriteRoutingDataSource} читает с primary.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements MeterBinder {
+
+    static final String LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final DataSource replica;
+
+    private final double maxLagSeconds;
+
+    private volatile double lagSeconds = Double.NaN;
+
+    private volatile boolean available;
+
+    public ReplicaLagMonitor(DataSource replica, Duration maxLag) {
+        this.replica = replica;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("app.datasource.replica.lag", this, m -> m.lagSeconds)
+             .description("Replication lag of the read replica; NaN when it is unreachable")
+             .baseUnit("seconds")
+             .register(meterRegistry);
+        Gauge.builder("app.datasource.replica.available", this, m -> m.available ? 1 : 0)
+             .description("Whether read-only transactions are routed to the replica")
+             .register(meterRegistry);
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:2000}")
+    public void check() {
+        boolean nowAvailable;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+            resultSet.next();
+            lagSeconds = resultSet.getDouble(1);
+            nowAvailable = lagSeconds <= maxLagSeconds;
+            if (!nowAvailable && available) {
+                log.warn("Read replica lags {}s behind primary (max {}s), routing reads to primary",
+                        lagSeconds, maxLagSeconds);
+            }
+        } catch (SQLException e) {
+            markUnavailable(e);
+            return;
+        }
+        if (nowAvailable && !available) {
+            log.info("Read replica is in sync (lag {}s), routing read-only transactions to it", lagSeconds);
+        }
+        available = nowAvailable;
+    }
+
+    /**
+     * Снимает реплику с чтения до следующей успешной проверки.
+     */
+    public void markUnavailable(SQLException cause) {
+        lagSeconds = Double.NaN;
+        if (available) {
+            available = false;
+            log.warn("Read replica is unreachable, routing reads to primary: {}", cause.getMessage());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.skypro.homework.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки реплики для чтения ({@code app.datasource.replica.*}).
+ * <p>
+ * Маршрутизация включается только при заданном {@code url}; без него приложение работает с одним пулом
+ * {@code spring.datasource.*}. Пустые {@code username} и {@code password} берутся из {@code spring.datasource}.
+ * Параметры пула реплики задаются в {@code app.datasource.replica.hikari.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource.replica")
+public class ReplicaProperties {
+
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    /**
+     * Сколько после своей записи пользователь читает с primary, чтобы видеть собственные изменения.
+     * {@code 0} отключает привязку.
+     */
+    private Duration stickyWindow = Duration.ofSeconds(5);
+
+    /**
+     * Отставание реплики, после которого чтение уходит на primary.
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+}
@@ -0,0 +1,65 @@
+package ru.skypro.homework.datasource;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Статистика SQL текущего HTTP-запроса: количество выражений, суммарное время в БД
+ * и сколько раз выполнялся каждый текст запроса.
+ * <p>
+ * Привязывается к потоку обработки запроса фильтром
+ * {@link ru.skypro.homework.filter.SqlStatementBudgetFilter} и заполняется
+ * {@link SqlStatisticsListener}. Вне HTTP-запроса (миграции, фоновые задачи) {@link #current()} возвращает null.
+ */
+public final class SqlStatementStatistics {
+
+    private static final ThreadLocal<SqlStatementStatistics> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long timeNanos;
+    private final Map<String, Integer> queries = new LinkedHashMap<>();
+
+    private SqlStatementStatistics() {
+    }
+
+    public static SqlStatementStatistics start() {
+        SqlStatementStatistics statistics = new SqlStatementStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    public static SqlStatementStatistics current() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    void record(String sql, long elapsedNanos) {
+        statements++;
+        timeNanos += elapsedNanos;
+        queries.merge(sql, 1, Integer::sum);
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    public long getTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(timeNanos);
+    }
+
+    /**
+     * Выполненные запросы в порядке первого выполнения с количеством повторов.
+     */
+    public Map<String, Integer> getQueries() {
+        return Collections.unmodifiableMap(queries);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.skypro.homework.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import ru.skypro.homework.util.SqlFingerprint;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Слушатель datasource-proxy: засекает время каждого SQL-выражения, добавляет его в статистику
+ * текущего запроса и пишет в лог выражения медленнее заданного порога.
+ */
+@Slf4j
+public class SqlStatisticsListener implements QueryExecutionListener {
+
+    private static final String STARTED_AT = "sqlStatistics.startedAt";
+
+    private final long slowStatementNanos;
+
+    public SqlStatisticsListener(long slowStatementMillis) {
+        this.slowStatementNanos = TimeUnit.MILLISECONDS.toNanos(slowStatementMillis);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(STARTED_AT, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long startedAt = execInfo.getCustomValue(STARTED_AT, Long.class);
+        if (startedAt == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        String sql = queryInfoList.size() == 1
+                ? queryInfoList.get(0).getQuery()
+                : queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+
+        SqlStatementStatistics statistics = SqlStatementStatistics.current();
+        if (statistics != null) {
+            statistics.record(sql, elapsed);
+        }
+        if (elapsed >= slowStatementNanos) {
+            log.warn("Slow SQL statement ({} ms): {}", TimeUnit.NANOSECONDS.toMillis(elapsed), SqlFingerprint.of(sql));
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.skypro.homework.exception;
+
+/**
+ * Изображение превышает {@code app.image.max-size}; загрузка прервана на первом байте сверх лимита.
+ */
+public class ImageTooLargeException extends RuntimeException {
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.skypro.homework.exception;
+
+/**
+ * Загрузка отклонена: запрос не является корректным multipart, нет нужной части
+ * или содержимое файла не похоже на изображение поддерживаемого формата.
+ */
+public class InvalidUploadException extends RuntimeException {
+    public InvalidUploadException(String message) {
+        super(message);
+    }
+
+    public InvalidUploadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.skypro.homework.exception;
+
+import lombok.Getter;
+
+/**
+ * Слишком много неудачных попыток входа: вход временно заблокирован.
+ */
+@Getter
+public class LoginThrottledException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.skypro.homework.exception;
+
+/**
+ * Пул хеширования паролей перегружен: очередь заполнена, запрос нужно повторить позже.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.skypro.homework.exception;
+
+import lombok.Getter;
+
+/**
+ * Объявления автора сейчас переносятся на другой шард: запись временно недоступна.
+ */
+@Getter
+public class ShardMovingException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ShardMovingException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
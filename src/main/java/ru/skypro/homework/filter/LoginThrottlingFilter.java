@@ -0,0 +1,66 @@
+package ru.skypro.homework.filter;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.skypro.homework.exception.LoginThrottledException;
+import ru.skypro.homework.security.LoginThrottlingService;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Отклоняет попытки входа с заблокированного имени пользователя или адреса ответом 429 ещё до проверки пароля.
+ * Ставится в цепочку Spring Security перед {@code BasicAuthenticationFilter}.
+ * <p>
+ * Для HTTP Basic проверяются имя из заголовка {@code Authorization} и адрес клиента, для {@code POST /login} —
+ * только адрес: имя пользователя из тела запроса проверяет {@code AuthServiceImpl}.
+ */
+@RequiredArgsConstructor
+public class LoginThrottlingFilter extends OncePerRequestFilter {
+
+    private static final String BASIC_PREFIX = "Basic ";
+
+    private final LoginThrottlingService loginThrottlingService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String username = basicUsername(request);
+        boolean loginRequest = HttpMethod.POST.matches(request.getMethod())
+                && "/login".equals(request.getServletPath());
+        if (username != null || loginRequest) {
+            try {
+                loginThrottlingService.check(username, request.getRemoteAddr());
+            } catch (LoginThrottledException e) {
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static String basicUsername(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BASIC_PREFIX, 0, BASIC_PREFIX.length())) {
+            return null;
+        }
+        try {
+            String credentials = new String(Base64.getDecoder().decode(header.substring(BASIC_PREFIX.length()).trim()),
+                    StandardCharsets.UTF_8);
+            int colon = credentials.indexOf(':');
+            return colon > 0 ? credentials.substring(0, colon) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
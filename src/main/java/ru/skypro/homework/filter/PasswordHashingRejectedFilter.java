@@ -0,0 +1,37 @@
+package ru.skypro.homework.filter;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.skypro.homework.exception.PasswordHashingRejectedException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Превращает отказ пула хеширования паролей при HTTP Basic-аутентификации в 503 с {@code Retry-After}.
+ * Ставится в цепочку Spring Security перед {@code BasicAuthenticationFilter}: это исключение не является
+ * {@code AuthenticationException}, и без фильтра клиент получил бы 500.
+ * Для {@code /login} и {@code /register} то же делает {@code GlobalExceptionHandler}.
+ */
+public class PasswordHashingRejectedFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } catch (PasswordHashingRejectedException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.resetBuffer();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        }
+    }
+}
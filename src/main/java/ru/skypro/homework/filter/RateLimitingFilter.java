@@ -0,0 +1,109 @@
+package ru.skypro.homework.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.skypro.homework.ratelimit.RateLimitProperties;
+import ru.skypro.homework.ratelimit.RouteLimiter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Ограничение частоты и сброс нагрузки для маршрутов из {@code app.rate-limit.routes}.
+ * <ul>
+ *     <li>превышение частоты для пользователя (или IP-адреса анонимного клиента) — 429 и {@code Retry-After};</li>
+ *     <li>превышение адаптивного лимита одновременных запросов маршрута — 503 и {@code Retry-After}:
+ *     лишний запрос отклоняется сразу, а не ждёт в очереди, увеличивая время ответа остальных.</li>
+ * </ul>
+ * Фильтр стоит после цепочки Spring Security, чтобы ключом был аутентифицированный пользователь,
+ * а запросы без учётных данных отсекались раньше.
+ */
+@Slf4j
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 1)
+public class RateLimitingFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final List<RouteLimiter> routes;
+
+    public RateLimitingFilter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.routes = properties.getRoutes().stream()
+                                .map(route -> new RouteLimiter(route, meterRegistry))
+                                .collect(Collectors.toList());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RouteLimiter route = enabled ? findRoute(request) : null;
+        if (route == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = route.tryConsume(clientKey(request));
+        if (waitNanos > 0) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+            return;
+        }
+        if (!route.tryAcquire()) {
+            log.debug("Request {} {} shed by concurrency limit of route {}", request.getMethod(), request.getRequestURI(), route.getName());
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            route.release(System.nanoTime() - start, response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        routes.forEach(RouteLimiter::evictIdleBuckets);
+    }
+
+    private RouteLimiter findRoute(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (RouteLimiter route : routes) {
+            if (route.matches(request.getMethod(), path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    }
+}
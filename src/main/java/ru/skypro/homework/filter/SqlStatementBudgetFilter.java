@@ -0,0 +1,146 @@
+package ru.skypro.homework.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.skypro.homework.datasource.SqlStatementStatistics;
+import ru.skypro.homework.util.SqlFingerprint;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Считает SQL-выражения и время в БД на каждый HTTP-запрос.
+ * <ul>
+ *   <li>публикует метрики {@code app.sql.statements} и {@code app.sql.time} с тегами uri и method;</li>
+ *   <li>при {@code app.sql-budget.expose-headers=true} добавляет в ответ заголовки
+ *   {@value #STATEMENTS_HEADER} и {@value #TIME_HEADER} (удобно в dev и в тестах);</li>
+ *   <li>если запрос превысил бюджет по количеству выражений или времени, пишет в лог отпечатки его SQL.</li>
+ * </ul>
+ * Стоит раньше фильтров безопасности, поэтому учитывает и запросы аутентификации.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class SqlStatementBudgetFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String TIME_HEADER = "X-Sql-Time-Ms";
+
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.sql-budget.max-statements:20}")
+    private int maxStatements;
+
+    @Value("${app.sql-budget.max-time-ms:500}")
+    private long maxTimeMillis;
+
+    @Value("${app.sql-budget.expose-headers:false}")
+    private boolean exposeHeaders;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatementStatistics statistics = SqlStatementStatistics.start();
+        HeaderWritingResponse headerWriter = exposeHeaders ? new HeaderWritingResponse(response, statistics) : null;
+        try {
+            filterChain.doFilter(request, headerWriter != null ? headerWriter : response);
+        } finally {
+            SqlStatementStatistics.clear();
+            if (headerWriter != null && !response.isCommitted()) {
+                headerWriter.writeHeaders();
+            }
+            record(request, statistics);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatementStatistics statistics) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : UNKNOWN_URI;
+        String method = request.getMethod();
+
+        DistributionSummary.builder("app.sql.statements")
+                           .description("SQL statements per HTTP request")
+                           .tag("uri", uri)
+                           .tag("method", method)
+                           .publishPercentileHistogram()
+                           .register(meterRegistry)
+                           .record(statistics.getStatements());
+        Timer.builder("app.sql.time")
+             .description("Total database time per HTTP request")
+             .tag("uri", uri)
+             .tag("method", method)
+             .publishPercentileHistogram()
+             .register(meterRegistry)
+             .record(statistics.getTimeNanos(), TimeUnit.NANOSECONDS);
+
+        if (statistics.getStatements() > maxStatements || statistics.getTimeMillis() > maxTimeMillis) {
+            Counter.builder("app.sql.budget.exceeded")
+                   .tag("uri", uri)
+                   .tag("method", method)
+                   .register(meterRegistry)
+                   .increment();
+            log.warn("SQL budget exceeded by {} {}: {} statements in {} ms (budget {} statements, {} ms){}",
+                    method, request.getRequestURI(), statistics.getStatements(), statistics.getTimeMillis(),
+                    maxStatements, maxTimeMillis, fingerprints(statistics));
+        }
+    }
+
+    private static String fingerprints(SqlStatementStatistics statistics) {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : statistics.getQueries().entrySet()) {
+            result.append(System.lineSeparator())
+                  .append(String.format("%5dx ", entry.getValue()))
+                  .append(SqlFingerprint.of(entry.getKey()));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Дописывает заголовки со статистикой в момент фиксации ответа, пока их ещё можно добавить.
+     */
+    private static final class HeaderWritingResponse extends OnCommittedResponseWrapper {
+
+        private final HttpServletResponse response;
+        private final SqlStatementStatistics statistics;
+        private boolean written;
+
+        HeaderWritingResponse(HttpServletResponse response, SqlStatementStatistics statistics) {
+            super(response);
+            this.response = response;
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            writeHeaders();
+        }
+
+        void writeHeaders() {
+            if (written) {
+                return;
+            }
+            written = true;
+            response.setHeader(STATEMENTS_HEADER, String.valueOf(statistics.getStatements()));
+            response.setHeader(TIME_HEADER, String.valueOf(statistics.getTimeMillis()));
+        }
+    }
+}
@@ -3,15 +3,22 @@ package ru.skypro.homework.handler;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.skypro.homework.exception.AdNotFoundException;
 import ru.skypro.homework.exception.CommentNotFoundException;
+import ru.skypro.homework.exception.ImageTooLargeException;
 import ru.skypro.homework.exception.InvalidCurrentPasswordException;
+import ru.skypro.homework.exception.InvalidUploadException;
+import ru.skypro.homework.exception.LoginThrottledException;
+import ru.skypro.homework.exception.PasswordHashingRejectedException;
+import ru.skypro.homework.exception.ShardMovingException;
 import ru.skypro.homework.exception.UnauthorizedAccessException;
 import ru.skypro.homework.exception.UserAlreadyExistsException;
 import ru.skypro.homework.exception.UserNotFoundException;
@@ -59,6 +66,48 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
     }
 
+    /**
+     * Пул соединений исчерпан дольше {@code spring.datasource.hikari.connection-timeout}:
+     * клиенту лучше повторить запрос позже, чем ждать в очереди за соединением.
+     */
+    @ExceptionHandler(CannotCreateTransactionException.class)
+    public ResponseEntity<?> handleConnectionPoolExhausted() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, "1")
+                             .build();
+    }
+
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<?> handlePasswordHashingRejected(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, "1")
+                             .body(e.getMessage());
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<?> handleLoginThrottled(LoginThrottledException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                             .body(e.getMessage());
+    }
+
+    @ExceptionHandler(ShardMovingException.class)
+    public ResponseEntity<?> handleShardMoving(ShardMovingException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                             .body(e.getMessage());
+    }
+
+    @ExceptionHandler(InvalidUploadException.class)
+    public ResponseEntity<?> handleInvalidUpload(InvalidUploadException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
+    @ExceptionHandler(ImageTooLargeException.class)
+    public ResponseEntity<?> handleImageTooLarge(ImageTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ValidationErrorResponse> handleValidationExceptions(MethodArgumentNotValidException ex) {
         List<Violation> violations = ex.getBindingResult().getFieldErrors().stream()
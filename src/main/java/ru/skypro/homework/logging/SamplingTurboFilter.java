@@ -0,0 +1,56 @@
+package ru.skypro.homework.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Сэмплирование "шумных" логов на горячем пути: из событий заданного уровня (по умолчанию INFO)
+ * от логгеров с указанными префиксами пропускается в среднем одно из {@code sampleRate}.
+ * События других уровней и других логгеров не затрагиваются.
+ * <p>
+ * TurboFilter срабатывает до форматирования сообщения и создания события,
+ * поэтому отброшенная запись почти ничего не стоит потоку запроса.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private String[] loggerPrefixes = new String[0];
+    private Level level = Level.INFO;
+    private int sampleRate = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (sampleRate <= 1 || level != this.level || !matches(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextInt(sampleRate) == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private boolean matches(String loggerName) {
+        for (String prefix : loggerPrefixes) {
+            if (loggerName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param loggerPrefix префиксы имён логгеров через запятую
+     */
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefixes = loggerPrefix.trim().isEmpty() ? new String[0] : loggerPrefix.trim().split("\\s*,\\s*");
+    }
+
+    public void setLevel(String level) {
+        this.level = Level.toLevel(level, Level.INFO);
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.skypro.homework.maintenance;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.sharding.ShardRouter;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отмечает активность объявлений, не связанную с их изменением (просмотр, новый комментарий).
+ * <p>
+ * Отметки копятся в памяти и записываются одним {@code UPDATE} раз в
+ * {@code app.ads.archive.activity-flush-interval-ms}: чтение объявления не превращается в запись,
+ * а популярное объявление обновляется не чаще одного раза за интервал. При сбое или остановке
+ * несохранённые отметки теряются — это сдвигает архивацию не больше чем на интервал.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdActivityTracker {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    private final Set<Integer> touched = ConcurrentHashMap.newKeySet();
+
+    public void touch(Integer adId) {
+        touched.add(adId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ads.archive.activity-flush-interval-ms:30000}")
+    public void flush() {
+        if (touched.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(touched);
+        touched.removeAll(ids);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Object idArray = ids.toArray(new Integer[0]);
+        // id не говорит, где объявление сейчас: каждый шард обновляет те, что есть у него
+        for (String shard : shardRouter.shards()) {
+            try {
+                shardRouter.run(shard,
+                        () -> jdbcTemplate.update("UPDATE ads SET last_activity_at = ? WHERE pk = ANY(?)", now, idArray));
+            } catch (DataAccessException e) {
+                log.warn("Failed to record activity of {} ads on shard {}", ids.size(), shard, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.skypro.homework.maintenance;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.service.AdArchiveService;
+import ru.skypro.homework.sharding.ShardRouter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Переносит в архив объявления без активности дольше {@code app.ads.archive.idle-after}
+ * (по расписанию {@code app.ads.archive.cron}).
+ * <p>
+ * Каждая пачка из {@code app.ads.archive.batch-size} объявлений — отдельная короткая транзакция,
+ * после её фиксации изображения переносятся в {@code app.ads.archive.image-dir}.
+ * Рабочая таблица {@code ads} и её индексы остаются небольшими, а архивные объявления
+ * возвращаются при обращении ({@link AdArchiveService#restore(Integer)}). Шарды обходятся по очереди.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.ads.archive", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AdArchiveJob {
+
+    private final AdArchiveService adArchiveService;
+    private final AdArchiveProperties properties;
+    private final ShardRouter shardRouter;
+
+    @Scheduled(cron = "${app.ads.archive.cron:0 45 3 * * *}")
+    public void archiveIdleAds() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getIdleAfter());
+        for (String shard : shardRouter.shards()) {
+            shardRouter.run(shard, () -> archiveIdleAds(shard, cutoff));
+        }
+    }
+
+    private void archiveIdleAds(String shard, LocalDateTime cutoff) {
+        int archived = 0;
+        try {
+            List<String> images;
+            do {
+                images = adArchiveService.archiveBatch(cutoff, properties.getBatchSize());
+                adArchiveService.moveImagesToArchive(images);
+                archived += images.size();
+            } while (images.size() == properties.getBatchSize());
+        } catch (DataAccessException e) {
+            log.warn("Ad archiving on shard {} stopped after {} ads, will continue on next run", shard, archived, e);
+        }
+        if (archived > 0) {
+            log.info("Archived {} ads idle since {} on shard {}", archived, cutoff, shard);
+        }
+    }
+}
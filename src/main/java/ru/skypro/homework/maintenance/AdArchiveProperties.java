@@ -0,0 +1,29 @@
+package ru.skypro.homework.maintenance;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки архивации объявлений ({@code app.ads.archive.*}).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.ads.archive")
+public class AdArchiveProperties {
+
+    /**
+     * Через сколько без активности объявление переносится в архив.
+     */
+    private Duration idleAfter = Duration.ofDays(180);
+
+    /**
+     * Объявлений в одной транзакции архивации.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Директория изображений архивных объявлений (холодное хранилище).
+     */
+    private String imageDir = "./ads-images-archive";
+}
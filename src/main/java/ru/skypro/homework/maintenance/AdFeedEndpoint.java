@@ -0,0 +1,36 @@
+package ru.skypro.homework.maintenance;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.service.AdFeedService;
+import ru.skypro.homework.sharding.ShardRouter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code POST /actuator/adfeed} полностью перестраивает ленту объявлений ({@link AdFeedService#rebuild()})
+ * на каждом шарде по очереди и возвращает число строк по шардам. Доступно администраторам.
+ * <p>
+ * Нужна после изменения данных в обход триггеров (ручные правки, восстановление из резервной копии);
+ * в обычной работе лента обновляется вместе с объявлениями.
+ */
+@Component
+@Endpoint(id = "adfeed")
+@RequiredArgsConstructor
+public class AdFeedEndpoint {
+
+    private final AdFeedService adFeedService;
+    private final ShardRouter shardRouter;
+
+    @WriteOperation
+    public Map<String, Integer> rebuild() {
+        Map<String, Integer> rebuilt = new LinkedHashMap<>();
+        for (String shard : shardRouter.shards()) {
+            rebuilt.put(shard, shardRouter.on(shard, adFeedService::rebuild));
+        }
+        return rebuilt;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.skypro.homework.maintenance;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.sharding.ShardRouter;
+
+/**
+ * Обслуживает месячные секции {@code comments}: создаёт будущие, закрывает прошедшие ограничением
+ * на диапазон {@code pk} (для исключения секций при поиске комментария по id) и удаляет устаревшие.
+ * <p>
+ * Работу выполняют функции БД из миграции {@code V6__partition_comments.sql}. Каждая вызывается
+ * отдельной транзакцией: добавление ограничения {@code NOT VALID} и его проверка не должны держать
+ * эксклюзивную блокировку вместе. Функции берут advisory-блокировку, поэтому задача может
+ * одновременно работать на нескольких экземплярах. Запускается при старте приложения и по расписанию
+ * {@code app.comments.partitions.cron}; при ошибке (например, истёк {@code lock_timeout}) повторится в следующий раз.
+ * Секции каждого шарда обслуживаются отдельно.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "app.comments.partitions", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CommentPartitionMaintenance {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CommentPartitionProperties properties;
+    private final ShardRouter shardRouter;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.comments.partitions.cron:0 15 3 * * *}")
+    public void maintain() {
+        for (String shard : shardRouter.shards()) {
+            shardRouter.run(shard, () -> maintain(shard));
+        }
+    }
+
+    private void maintain(String shard) {
+        try {
+            int created = call("SELECT comments_create_partitions(?)", properties.getMonthsAhead());
+            int sealed = call("SELECT comments_seal_partitions()");
+            int validated = call("SELECT comments_validate_pk_ranges()");
+            int dropped = 0;
+            if (properties.getRetention() != null && !properties.getRetention().isZero()) {
+                dropped = call("SELECT comments_drop_expired_partitions(CAST(? AS INTERVAL))",
+                        properties.getRetention().toString());
+            }
+            if (created + sealed + validated + dropped > 0) {
+                log.info("Comment partitions on shard {}: {} created, {} sealed, {} validated, {} dropped",
+                        shard, created, sealed, validated, dropped);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Comment partition maintenance on shard {} failed, will retry on next run", shard, e);
+        }
+    }
+
+    private int call(String sql, Object... args) {
+        Integer result = jdbcTemplate.queryForObject(sql, Integer.class, args);
+        return result == null ? 0 : result;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.skypro.homework.maintenance;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Period;
+
+/**
+ * Настройки обслуживания месячных секций таблицы {@code comments} ({@code app.comments.partitions.*}).
+ */
+@Data
+@ConfigurationProperties(prefix = "app.comments.partitions")
+public class CommentPartitionProperties {
+
+    /**
+     * На сколько месяцев вперёд от текущего создаются секции. Вставка с {@code created_at}
+     * вне созданных секций завершится ошибкой, поэтому запас должен перекрывать возможный простой задачи.
+     */
+    private int monthsAhead = 3;
+
+    /**
+     * Срок хранения комментариев; секции, все строки которых старше, отключаются и удаляются.
+     * Не задан — комментарии хранятся бессрочно.
+     */
+    private Period retention;
+}
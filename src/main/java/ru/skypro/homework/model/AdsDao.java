@@ -4,8 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
 
-import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
@@ -16,6 +16,7 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,6 +50,19 @@ public class AdsDao {
     @JoinColumn(name = "user_id", nullable = false)
     private UsersDao author;
 
-    @OneToMany(mappedBy = "ad", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    /**
+     * Последняя активность: обновляется при каждом изменении, а просмотры и новые комментарии
+     * отмечает {@link ru.skypro.homework.maintenance.AdActivityTracker}. Давно не активные объявления
+     * переносятся в архив ({@link ru.skypro.homework.maintenance.AdArchiveJob}).
+     */
+    @UpdateTimestamp
+    @Column(name = "last_activity_at", nullable = false)
+    private LocalDateTime lastActivityAt;
+
+    /**
+     * Без каскада JPA: комментарии удаляет {@code ON DELETE CASCADE} внешнего ключа одной операцией в БД,
+     * а не Hibernate построчно.
+     */
+    @OneToMany(mappedBy = "ad", fetch = FetchType.LAZY)
     private List<CommentsDao> commentsDaos = new ArrayList<>();
 }
\ No newline at end of file
@@ -4,11 +4,17 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.service.UserChangeListener;
 
-import javax.persistence.CascadeType;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
@@ -20,8 +26,18 @@ import javax.persistence.Table;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Пользователь. Email — неизменяемый натуральный ключ: сущность и соответствие email → id хранятся
+ * в кэше второго уровня ({@link ru.skypro.homework.config.SecondLevelCacheConfig}), поэтому поиск
+ * по email ({@link ru.skypro.homework.repository.UserNaturalIdRepository}) обычно не доходит до БД.
+ * Изменения публикуются событием ({@link UserChangeListener}), по которому пользователи копируются на шарды.
+ */
 @Entity
+@EntityListeners(UserChangeListener.class)
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = UsersDao.CACHE_REGION)
+@NaturalIdCache(region = UsersDao.NATURAL_ID_CACHE_REGION)
 @Getter @Setter
 @NoArgsConstructor
 @AllArgsConstructor
@@ -34,10 +50,14 @@ public class UsersDao {
     public static final int MAX_PASSWORD_LENGTH = 100;
     public static final int MAX_IMAGE_LENGTH = 512;
 
+    public static final String CACHE_REGION = "users";
+    public static final String NATURAL_ID_CACHE_REGION = "users-by-email";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
+    @NaturalId
     @Column(name = "email", nullable = false, unique = true, length = MAX_EMAIL_LENGTH)
     private String email;
 
@@ -60,9 +80,13 @@ public class UsersDao {
     @Column(name = "image", length = MAX_IMAGE_LENGTH)
     private String image;
 
-    @OneToMany(mappedBy = "author", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    /**
+     * Без каскада JPA: объявления и комментарии пользователя удаляет {@code ON DELETE CASCADE}
+     * внешних ключей одной операцией в БД, а не Hibernate построчно.
+     */
+    @OneToMany(mappedBy = "author", fetch = FetchType.LAZY)
     private List<AdsDao> adsDaos = new ArrayList<>();
 
-    @OneToMany(mappedBy = "author", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "author", fetch = FetchType.LAZY)
     private List<CommentsDao> commentsDaos = new ArrayList<>();
 }
\ No newline at end of file
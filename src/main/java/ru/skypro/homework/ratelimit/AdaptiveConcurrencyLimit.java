@@ -0,0 +1,82 @@
+package ru.skypro.homework.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Адаптивный лимит одновременных запросов по схеме AIMD.
+ * <p>
+ * Пока ответы укладываются в целевое время, лимит растёт на {@code 1/limit} за каждый ответ
+ * (примерно +1 за "поколение" запросов), но только если маршрут действительно загружен — занято
+ * не меньше половины лимита. Медленный ответ или 503 снизу уменьшает лимит в {@value #BACKOFF_RATIO}
+ * раза, не чаще раза за целевое время, чтобы пачка медленных ответов одного всплеска не обрушила лимит до минимума.
+ * Запросы сверх лимита сразу отклоняются: очередь не растёт, и время ответа принятых запросов не деградирует.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private boolean decreased;
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyLimit(int minLimit, int initialLimit, int maxLimit, long latencyTargetMillis) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param latencyNanos время обработки запроса
+     * @param overloaded   нижележащие ресурсы сообщили о перегрузке (например, ответ 503)
+     */
+    public void release(long latencyNanos, boolean overloaded) {
+        release(latencyNanos, overloaded, System.nanoTime());
+    }
+
+    /**
+     * То же с явным текущим временем ({@link System#nanoTime()}), как у {@link TokenBucket}.
+     */
+    public void release(long latencyNanos, boolean overloaded, long nowNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        synchronized (this) {
+            double current = limit;
+            if (overloaded || latencyNanos > latencyTargetNanos) {
+                // у System.nanoTime() произвольное начало отсчёта, поэтому первое снижение не сравнивается с нулём
+                if (!decreased || nowNanos - lastDecreaseNanos > latencyTargetNanos) {
+                    limit = Math.max(minLimit, current * BACKOFF_RATIO);
+                    decreased = true;
+                    lastDecreaseNanos = nowNanos;
+                }
+            } else if (inFlightBefore * 2 >= current) {
+                limit = Math.min(maxLimit, current + 1 / current);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
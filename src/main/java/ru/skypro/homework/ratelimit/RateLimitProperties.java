@@ -0,0 +1,73 @@
+package ru.skypro.homework.ratelimit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки ограничения запросов ({@code app.rate-limit.*}).
+ * <p>
+ * Маршруты проверяются по порядку, запрос попадает в первый подходящий. Для каждого маршрута задаются
+ * token bucket на ключ (аутентифицированный пользователь или IP-адрес) и адаптивный лимит
+ * одновременных запросов на весь маршрут.
+ */
+@Data
+@Validated
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    @Valid
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Route {
+
+        /**
+         * Имя маршрута — тег {@code route} в метриках.
+         */
+        @NotBlank
+        private String name;
+
+        /**
+         * HTTP-методы; пустой список — любые.
+         */
+        private List<String> methods = new ArrayList<>();
+
+        /**
+         * Ant-шаблоны пути, например {@code /users/me/image}.
+         */
+        @NotEmpty
+        private List<String> patterns = new ArrayList<>();
+
+        /**
+         * Пополнение token bucket на ключ, запросов в секунду; 0 — без ограничения частоты.
+         */
+        private double requestsPerSecond;
+
+        /**
+         * Ёмкость token bucket — допустимый всплеск.
+         */
+        private int burst = 1;
+
+        /**
+         * Границы и начальное значение адаптивного лимита одновременных запросов; {@code max-concurrency=0} — без лимита.
+         */
+        private int minConcurrency = 1;
+        private int initialConcurrency = 16;
+        private int maxConcurrency;
+
+        /**
+         * Время ответа, выше которого лимит одновременных запросов уменьшается.
+         */
+        private long latencyTargetMs = 500;
+    }
+}
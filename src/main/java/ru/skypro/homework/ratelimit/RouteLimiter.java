@@ -0,0 +1,109 @@
+package ru.skypro.homework.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ограничители одного маршрута из {@link RateLimitProperties}: token bucket на каждый ключ
+ * и общий {@link AdaptiveConcurrencyLimit}.
+ * <p>
+ * Метрики: {@code app.admission} (теги route и outcome: accepted, rate_limited, shed),
+ * {@code app.admission.concurrency.limit} и {@code app.admission.in.flight}.
+ */
+public class RouteLimiter {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final RateLimitProperties.Route route;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    private final Counter acceptedCounter;
+    private final Counter rateLimitedCounter;
+    private final Counter shedCounter;
+
+    public RouteLimiter(RateLimitProperties.Route route, MeterRegistry meterRegistry) {
+        this.route = route;
+        this.concurrencyLimit = route.getMaxConcurrency() > 0
+                ? new AdaptiveConcurrencyLimit(route.getMinConcurrency(), route.getInitialConcurrency(),
+                route.getMaxConcurrency(), route.getLatencyTargetMs())
+                : null;
+
+        this.acceptedCounter = admissionCounter(meterRegistry, "accepted");
+        this.rateLimitedCounter = admissionCounter(meterRegistry, "rate_limited");
+        this.shedCounter = admissionCounter(meterRegistry, "shed");
+        if (concurrencyLimit != null) {
+            Gauge.builder("app.admission.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                 .description("Current adaptive concurrency limit")
+                 .tag("route", route.getName())
+                 .register(meterRegistry);
+            Gauge.builder("app.admission.in.flight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                 .description("Requests currently admitted")
+                 .tag("route", route.getName())
+                 .register(meterRegistry);
+        }
+    }
+
+    public boolean matches(String method, String path) {
+        if (!route.getMethods().isEmpty() && route.getMethods().stream().noneMatch(method::equalsIgnoreCase)) {
+            return false;
+        }
+        return route.getPatterns().stream().anyMatch(pattern -> PATH_MATCHER.match(pattern, path));
+    }
+
+    /**
+     * @return 0, если запрос укладывается в частоту для ключа, иначе сколько наносекунд ждать
+     */
+    public long tryConsume(String key) {
+        if (route.getRequestsPerSecond() <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long waitNanos = buckets.computeIfAbsent(key, k -> new TokenBucket(route.getBurst(), route.getRequestsPerSecond(), now))
+                                .tryConsume(now);
+        if (waitNanos > 0) {
+            rateLimitedCounter.increment();
+        }
+        return waitNanos;
+    }
+
+    public boolean tryAcquire() {
+        if (concurrencyLimit != null && !concurrencyLimit.tryAcquire()) {
+            shedCounter.increment();
+            return false;
+        }
+        acceptedCounter.increment();
+        return true;
+    }
+
+    public void release(long latencyNanos, boolean overloaded) {
+        if (concurrencyLimit != null) {
+            concurrencyLimit.release(latencyNanos, overloaded);
+        }
+    }
+
+    /**
+     * Удаляет полные bucket'ы: они эквивалентны отсутствующим.
+     */
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    public String getName() {
+        return route.getName();
+    }
+
+    private Counter admissionCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("app.admission")
+                      .description("Admission decisions of the rate limiting filter")
+                      .tag("route", route.getName())
+                      .tag("outcome", outcome)
+                      .register(meterRegistry);
+    }
+}
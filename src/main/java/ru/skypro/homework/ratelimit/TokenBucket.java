@@ -0,0 +1,48 @@
+package ru.skypro.homework.ratelimit;
+
+/**
+ * Token bucket: ёмкость {@code capacity} токенов, пополнение {@code tokensPerSecond} в секунду.
+ * Токены пополняются лениво при обращении, отдельного таймера нет.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double capacity, double tokensPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Забирает токен, если он есть.
+     *
+     * @return 0, если токен получен, иначе через сколько наносекунд появится следующий
+     */
+    public synchronized long tryConsume(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Полный bucket неотличим от нового, его можно удалить.
+     */
+    public synchronized boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    private void refill(long nowNanos) {
+        tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = nowNanos;
+    }
+}
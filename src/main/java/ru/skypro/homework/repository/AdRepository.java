@@ -3,10 +3,18 @@ package ru.skypro.homework.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.skypro.homework.model.AdsDao;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface AdRepository extends JpaRepository<AdsDao, Integer> {
@@ -36,4 +44,40 @@ public interface AdRepository extends JpaRepository<AdsDao, Integer> {
      * @return количество объявлений
      */
     long countByAuthorId(Integer authorId);
+
+    /**
+     * Ссылки на изображения объявлений автора — чтобы удалить файлы после удаления пользователя,
+     * не загружая сами объявления.
+     *
+     * @param authorId идентификатор автора
+     * @return непустые пути изображений
+     */
+    @Query("select a.image from AdsDao a where a.author.id = :authorId and a.image is not null")
+    List<String> findImagesByAuthorId(@Param("authorId") Integer authorId);
+
+    /**
+     * Объявление с блокировкой строки ({@code SELECT ... FOR UPDATE}) до конца транзакции,
+     * чтобы параллельные замены изображения не потеряли ссылку на старый файл.
+     *
+     * @param id идентификатор объявления
+     * @return объявление или пусто
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from AdsDao a where a.pk = :id")
+    Optional<AdsDao> findByIdForUpdate(@Param("id") Integer id);
+
+    /**
+     * Все объявления по возрастанию id курсором: строки подгружаются из БД пачками по
+     * {@value #STREAM_FETCH_SIZE}, а не целиком. Поток нужно закрыть и читать внутри транзакции.
+     *
+     * @return поток объявлений
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    @Query("select a from AdsDao a order by a.pk")
+    Stream<AdsDao> streamAllOrderByPk();
+
+    int STREAM_FETCH_SIZE = 500;
 }
\ No newline at end of file
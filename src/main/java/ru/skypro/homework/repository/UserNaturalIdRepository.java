@@ -0,0 +1,19 @@
+package ru.skypro.homework.repository;
+
+import ru.skypro.homework.model.UsersDao;
+
+import java.util.Optional;
+
+/**
+ * Поиск пользователя по натуральному ключу (email) через кэш второго уровня.
+ */
+public interface UserNaturalIdRepository {
+
+    /**
+     * Сначала email разрешается в id по кэшу натуральных ключей, затем сущность берётся из кэша;
+     * в БД запрос уходит только при промахе.
+     */
+    Optional<UsersDao> findByEmail(String email);
+
+    boolean existsByEmail(String email);
+}
@@ -0,0 +1,28 @@
+package ru.skypro.homework.repository;
+
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import ru.skypro.homework.model.UsersDao;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Optional;
+
+@Transactional(readOnly = true)
+class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<UsersDao> findByEmail(String email) {
+        return entityManager.unwrap(Session.class)
+                            .bySimpleNaturalId(UsersDao.class)
+                            .loadOptional(email);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return findByEmail(email).isPresent();
+    }
+}
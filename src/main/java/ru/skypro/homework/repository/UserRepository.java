@@ -1,13 +1,44 @@
 package ru.skypro.homework.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.skypro.homework.dto.auth.Role;
 import ru.skypro.homework.model.UsersDao;
 
+import javax.persistence.LockModeType;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<UsersDao, Integer> {
-    Optional<UsersDao> findByEmail(String email);
-    boolean existsByEmail(String email);
+public interface UserRepository extends JpaRepository<UsersDao, Integer>, UserNaturalIdRepository {
+
+    /**
+     * Пользователь с блокировкой строки ({@code SELECT ... FOR UPDATE}) до конца транзакции,
+     * чтобы параллельные замены аватара не потеряли ссылку на старый файл. Всегда идёт в БД, минуя кэш.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from UsersDao u where u.email = :email")
+    Optional<UsersDao> findByEmailForUpdate(@Param("email") String email);
+
+    /**
+     * Учётные данные для аутентификации. Запрос проекции всегда идёт в БД, минуя кэш второго уровня:
+     * кэш локален для экземпляра, и смена пароля или удаление пользователя на другом экземпляре
+     * не должны оставлять старые учётные данные действительными до истечения TTL.
+     *
+     * @param email email пользователя
+     * @return email, хеш пароля и роль или пусто
+     */
+    @Query("select u.email as email, u.password as password, u.role as role from UsersDao u where u.email = :email")
+    Optional<Credentials> findCredentialsByEmail(@Param("email") String email);
+
+    interface Credentials {
+
+        String getEmail();
+
+        String getPassword();
+
+        Role getRole();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package ru.skypro.homework.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Arrays;
+
+/**
+ * Подбирает стоимость BCrypt под железо конкретного развёртывания.
+ * <p>
+ * Время проверки пароля измеряется на минимальной стоимости, после чего выбирается наибольшая
+ * стоимость, при которой оценка (каждая единица стоимости удваивает время) укладывается в целевую
+ * задержку. Стоимость никогда не опускается ниже {@link #MIN_STRENGTH} — значения, которым
+ * закодированы существующие пароли.
+ */
+@Slf4j
+public final class BcryptStrengthCalibrator {
+
+    public static final int MIN_STRENGTH = 10;
+    public static final int MAX_STRENGTH = 16;
+
+    private static final int SAMPLES = 5;
+
+    private BcryptStrengthCalibrator() {
+    }
+
+    /**
+     * @param targetVerifyMillis целевое время одной проверки пароля
+     * @return стоимость BCrypt в диапазоне [{@link #MIN_STRENGTH}, {@link #MAX_STRENGTH}]
+     */
+    public static int calibrate(long targetVerifyMillis) {
+        double baseMillis = measureVerifyMillis(MIN_STRENGTH);
+        int strength = MIN_STRENGTH;
+        while (strength < MAX_STRENGTH && baseMillis * (1L << (strength + 1 - MIN_STRENGTH)) <= targetVerifyMillis) {
+            strength++;
+        }
+        log.info("BCrypt calibrated: {} ms per verify at strength {}, target {} ms -> strength {} (~{} ms)",
+                String.format("%.1f", baseMillis), MIN_STRENGTH, targetVerifyMillis, strength,
+                Math.round(baseMillis * (1L << (strength - MIN_STRENGTH))));
+        return strength;
+    }
+
+    /**
+     * Медиана нескольких проверок после одной прогревочной.
+     */
+    private static double measureVerifyMillis(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        String hash = encoder.encode("calibration-password");
+        encoder.matches("calibration-password", hash);
+
+        double[] samples = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.matches("calibration-password", hash);
+            samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+}
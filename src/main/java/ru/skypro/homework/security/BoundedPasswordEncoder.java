@@ -0,0 +1,128 @@
+package ru.skypro.homework.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.skypro.homework.exception.PasswordHashingRejectedException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PasswordEncoder}, выполняющий хеширование и проверку паролей на отдельном пуле
+ * размером с число ядер и с ограниченной очередью.
+ * <p>
+ * BCrypt нагружает процессор на десятки миллисекунд; без ограничения всплеск логинов занимает
+ * все потоки Tomcat и дешёвые запросы вроде {@code GET /ads} ждут. Здесь одновременно хешируют
+ * не больше {@code threads} потоков, ещё {@code queueCapacity} запросов ждут в очереди, а остальные
+ * сразу получают {@link PasswordHashingRejectedException} (503 и {@code Retry-After}).
+ * <p>
+ * Метрики: {@code app.password.hash} (время хеширования, тег operation),
+ * {@code app.password.wait} (ожидание в очереди), {@code app.password.rejected},
+ * а также {@code executor.queued}/{@code executor.active} с тегом {@code name=password-hash}.
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private static final String POOL_NAME = "password-hash";
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(POOL_NAME + "-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.prestartAllCoreThreads();
+
+        new ExecutorServiceMetrics(executor, POOL_NAME, Tags.empty()).bindTo(meterRegistry);
+        this.encodeTimer = Timer.builder("app.password.hash")
+                                .description("Password hashing time")
+                                .tag("operation", "encode")
+                                .publishPercentileHistogram()
+                                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("app.password.hash")
+                                 .description("Password hashing time")
+                                 .tag("operation", "matches")
+                                 .publishPercentileHistogram()
+                                 .register(meterRegistry);
+        this.waitTimer = Timer.builder("app.password.wait")
+                              .description("Time spent waiting for a password hashing thread")
+                              .publishPercentileHistogram()
+                              .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("app.password.rejected")
+                                      .description("Password hashing requests rejected because the queue was full")
+                                      .register(meterRegistry);
+        log.info("Password hashing pool: {} threads, queue capacity {}", threads, queueCapacity);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Перехеширование при входе — необязательная работа: пока в очереди есть ожидающие запросы,
+     * оно откладывается до следующего входа, чтобы не отбирать мощность у проверок паролей.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return executor.getQueue().isEmpty() && delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T submit(Timer hashTimer, Callable<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return hashTimer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("Password hashing rejected: {} active, {} queued", executor.getActiveCount(), executor.getQueue().size());
+            throw new PasswordHashingRejectedException("Password hashing capacity exhausted, retry later");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingRejectedException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
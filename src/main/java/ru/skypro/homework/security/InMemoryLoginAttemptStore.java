@@ -0,0 +1,166 @@
+package ru.skypro.homework.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * {@link LoginAttemptStore} в памяти одного экземпляра приложения.
+ * <p>
+ * Скользящее окно приближается двумя соседними фиксированными окнами: неудачи предыдущего окна
+ * учитываются с весом, пропорциональным его доле, ещё попадающей в скользящее окно.
+ * Состояние ключа — неизменяемый объект в {@link AtomicReference}, обновляемый через CAS,
+ * так что параллельные попытки для разных ключей не блокируют друг друга, а для одного ключа не теряются.
+ * Ключи без активной блокировки, не обновлявшиеся дольше двух окон, удаляются по расписанию.
+ * <p>
+ * Число ключей ограничено {@code maxKeys}: перебор случайных имён пользователей иначе наращивал бы хранилище
+ * до следующей очистки. При заполнении удаляются ключи без активной блокировки, начиная с самых старых окон,
+ * до {@value #TRIM_RATIO} от предела; заблокированные ключи не удаляются, иначе перебор снимал бы блокировки.
+ * Если заблокированы все ключи, новая неудача не учитывается до их истечения.
+ */
+@Slf4j
+public class InMemoryLoginAttemptStore implements LoginAttemptStore {
+
+    private static final double TRIM_RATIO = 0.9;
+
+    private final ConcurrentHashMap<String, AtomicReference<Attempts>> attempts = new ConcurrentHashMap<>();
+
+    private final long windowMillis;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxKeys;
+    private final Clock clock;
+
+    public InMemoryLoginAttemptStore(Duration window, Duration baseBackoff, Duration maxBackoff, int maxKeys,
+                                     Clock clock) {
+        this.windowMillis = window.toMillis();
+        this.baseBackoffMillis = baseBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.maxKeys = maxKeys;
+        this.clock = clock;
+    }
+
+    @Override
+    public Duration blockedFor(String key) {
+        AtomicReference<Attempts> state = attempts.get(key);
+        if (state == null) {
+            return Duration.ZERO;
+        }
+        long remaining = state.get().blockedUntil - clock.millis();
+        return remaining > 0 ? Duration.ofMillis(remaining) : Duration.ZERO;
+    }
+
+    @Override
+    public void recordFailure(String key, int maxFailures) {
+        long now = clock.millis();
+        AtomicReference<Attempts> state = attempts.get(key);
+        if (state == null) {
+            if (attempts.size() >= maxKeys && !trim(now)) {
+                log.warn("Login attempt store is full of blocked keys ({}), failure for a new key is not recorded", maxKeys);
+                return;
+            }
+            state = attempts.computeIfAbsent(key, k -> new AtomicReference<>(new Attempts(0L, 0, 0, 0L)));
+        }
+        state.updateAndGet(current -> current.withFailure(now, maxFailures));
+    }
+
+    @Override
+    public void reset(String key) {
+        attempts.remove(key);
+    }
+
+    /**
+     * @return число ключей в хранилище
+     */
+    public int size() {
+        return attempts.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.login-throttling.eviction-interval-ms:60000}")
+    public void evictExpired() {
+        long now = clock.millis();
+        int before = attempts.size();
+        attempts.values().removeIf(state -> state.get().isExpired(now));
+        int evicted = before - attempts.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} expired login attempt keys, {} left", evicted, attempts.size());
+        }
+    }
+
+    /**
+     * Освобождает место под новые ключи.
+     *
+     * @return удалось ли опустить число ключей ниже предела
+     */
+    private synchronized boolean trim(long now) {
+        if (attempts.size() < maxKeys) {
+            return true;
+        }
+        evictExpired();
+        int target = (int) (maxKeys * TRIM_RATIO);
+        if (attempts.size() > target) {
+            attempts.entrySet().stream()
+                    .filter(entry -> entry.getValue().get().blockedUntil <= now)
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().get().windowStart))
+                    .limit(attempts.size() - target)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList())
+                    .forEach(attempts::remove);
+            log.warn("Login attempt store reached {} keys, evicted unblocked keys down to {}", maxKeys, attempts.size());
+        }
+        return attempts.size() < maxKeys;
+    }
+
+    private final class Attempts {
+
+        private final long windowStart;
+        private final int previous;
+        private final int current;
+        private final long blockedUntil;
+
+        private Attempts(long windowStart, int previous, int current, long blockedUntil) {
+            this.windowStart = windowStart;
+            this.previous = previous;
+            this.current = current;
+            this.blockedUntil = blockedUntil;
+        }
+
+        private Attempts withFailure(long now, int maxFailures) {
+            long start = now - now % windowMillis;
+            int previousCount;
+            int currentCount;
+            if (start == windowStart) {
+                previousCount = previous;
+                currentCount = current + 1;
+            } else if (start == windowStart + windowMillis) {
+                previousCount = current;
+                currentCount = 1;
+            } else {
+                previousCount = 0;
+                currentCount = 1;
+            }
+
+            double previousWeight = (double) (windowMillis - (now - start)) / windowMillis;
+            int failures = (int) (previousCount * previousWeight) + currentCount;
+
+            long until = blockedUntil;
+            if (failures >= maxFailures) {
+                int doublings = Math.min(failures - maxFailures, 30);
+                long backoff = Math.min(baseBackoffMillis << doublings, maxBackoffMillis);
+                until = Math.max(until, now + backoff);
+            }
+            return new Attempts(start, previousCount, currentCount, until);
+        }
+
+        private boolean isExpired(long now) {
+            return blockedUntil <= now && now - windowStart >= 2 * windowMillis;
+        }
+    }
+}
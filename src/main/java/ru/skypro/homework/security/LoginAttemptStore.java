@@ -0,0 +1,30 @@
+package ru.skypro.homework.security;
+
+import java.time.Duration;
+
+/**
+ * Хранилище неудачных попыток входа для {@link LoginThrottlingService}.
+ * <p>
+ * Ключ — имя пользователя или IP-адрес с префиксом типа. Реализация сама ведёт скользящее окно
+ * и экспоненциальную блокировку; по умолчанию используется {@link InMemoryLoginAttemptStore}
+ * (один экземпляр приложения). Для нескольких экземпляров за балансировщиком подключается общая
+ * реализация (например, на Redis) с {@code app.login-throttling.store}, отличным от {@code memory}.
+ */
+public interface LoginAttemptStore {
+
+    /**
+     * @return сколько ещё заблокирован ключ; {@link Duration#ZERO}, если попытка разрешена
+     */
+    Duration blockedFor(String key);
+
+    /**
+     * Учитывает неудачную попытку. Начиная с {@code maxFailures} неудач в окне ключ блокируется,
+     * и каждая следующая неудача удваивает время блокировки.
+     */
+    void recordFailure(String key, int maxFailures);
+
+    /**
+     * Сбрасывает счётчик ключа после успешного входа.
+     */
+    void reset(String key);
+}
@@ -0,0 +1,105 @@
+package ru.skypro.homework.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.skypro.homework.exception.LoginThrottledException;
+
+import java.time.Duration;
+
+/**
+ * Защита от подбора паролей: ограничивает неудачные попытки входа по имени пользователя и по IP-адресу.
+ * <p>
+ * Неудачи и успехи учитываются по событиям Spring Security, поэтому одинаково покрыты
+ * {@code POST /login} и HTTP Basic. Проверка блокировки выполняется до хеширования пароля —
+ * в {@link ru.skypro.homework.filter.LoginThrottlingFilter} и в
+ * {@link ru.skypro.homework.service.impl.AuthServiceImpl#login(String, String)} — и заканчивается
+ * ответом 429 с {@code Retry-After}.
+ * <p>
+ * Порог по IP выше порога по пользователю: за одним адресом (NAT, прокси) могут быть многие пользователи.
+ * Адрес — {@code getRemoteAddr()}: за обратным прокси Tomcat подставляет в него адрес клиента из
+ * {@code X-Forwarded-For}, если запрос пришёл от доверенного прокси ({@code server.forward-headers-strategy=native}),
+ * иначе все клиенты делили бы адрес прокси и общую блокировку.
+ */
+@Slf4j
+@Service
+public class LoginThrottlingService {
+
+    private static final String USER_KEY_PREFIX = "user:";
+    private static final String IP_KEY_PREFIX = "ip:";
+
+    private final LoginAttemptStore store;
+    private final int maxFailuresPerUser;
+    private final int maxFailuresPerIp;
+    private final Counter throttledCounter;
+
+    public LoginThrottlingService(LoginAttemptStore store,
+                                  @Value("${app.login-throttling.max-failures-per-user:5}") int maxFailuresPerUser,
+                                  @Value("${app.login-throttling.max-failures-per-ip:20}") int maxFailuresPerIp,
+                                  MeterRegistry meterRegistry) {
+        this.store = store;
+        this.maxFailuresPerUser = maxFailuresPerUser;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.throttledCounter = Counter.builder("app.login.throttled")
+                                       .description("Authentication attempts rejected with 429")
+                                       .register(meterRegistry);
+    }
+
+    /**
+     * @param username имя пользователя или null
+     * @param ip       IP-адрес клиента или null
+     * @throws LoginThrottledException если заблокировано имя пользователя или адрес
+     */
+    public void check(String username, String ip) {
+        Duration blockedFor = Duration.ZERO;
+        if (username != null) {
+            blockedFor = store.blockedFor(USER_KEY_PREFIX + normalize(username));
+        }
+        if (ip != null) {
+            Duration ipBlockedFor = store.blockedFor(IP_KEY_PREFIX + ip);
+            if (ipBlockedFor.compareTo(blockedFor) > 0) {
+                blockedFor = ipBlockedFor;
+            }
+        }
+        if (!blockedFor.isZero()) {
+            throttledCounter.increment();
+            long retryAfterSeconds = (blockedFor.toMillis() + 999) / 1000;
+            log.warn("Login throttled for user: {}, ip: {}, retry after {} s", username, ip, retryAfterSeconds);
+            throw new LoginThrottledException("Too many failed login attempts, retry later", retryAfterSeconds);
+        }
+    }
+
+    @EventListener
+    public void onFailure(AuthenticationFailureBadCredentialsEvent event) {
+        store.recordFailure(USER_KEY_PREFIX + normalize(event.getAuthentication().getName()), maxFailuresPerUser);
+        String ip = currentClientIp();
+        if (ip != null) {
+            store.recordFailure(IP_KEY_PREFIX + ip, maxFailuresPerIp);
+        }
+    }
+
+    @EventListener
+    public void onSuccess(AuthenticationSuccessEvent event) {
+        store.reset(USER_KEY_PREFIX + normalize(event.getAuthentication().getName()));
+    }
+
+    private static String normalize(String username) {
+        return username.trim().toLowerCase();
+    }
+
+    private static String currentClientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            return ((ServletRequestAttributes) attributes).getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+}
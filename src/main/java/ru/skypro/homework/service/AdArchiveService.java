@@ -0,0 +1,162 @@
+package ru.skypro.homework.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.skypro.homework.dto.ad.AdDto;
+import ru.skypro.homework.maintenance.AdArchiveProperties;
+import ru.skypro.homework.maintenance.CommentPartitionProperties;
+import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.repository.AdRepository;
+import ru.skypro.homework.sharding.ShardRouter;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Перенос объявлений между рабочими таблицами ({@code ads}, {@code comments}) и архивом
+ * ({@code ads_archive}, {@code comments_archive}, миграция V7).
+ * <p>
+ * Объявление сохраняет id, поэтому архивное объявление возвращается в ads при первом обращении по id
+ * ({@link #restore(Integer)}), а его изображение — из {@code app.ads.archive.image-dir} в {@code app.image.ad-dir}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AdArchiveService {
+
+    private static final String AD_COLUMNS = "pk, title, description, price, image, user_id, last_activity_at";
+    private static final String COMMENT_COLUMNS = "pk, text, created_at, user_id, ad_id";
+    private static final LocalDateTime NO_RETENTION = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AdRepository adRepository;
+    private final ImageService imageService;
+    private final AdArchiveProperties properties;
+    private final CommentPartitionProperties commentPartitionProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shardRouter;
+
+    @Value("${app.image.ad-dir}")
+    private String adImageDir;
+
+    /**
+     * Переносит в архив до {@code batchSize} объявлений без активности с {@code cutoff} вместе с комментариями.
+     * <p>
+     * Объявления блокируются ({@code FOR UPDATE SKIP LOCKED}) до копирования комментариев:
+     * новый комментарий ждёт блокировку строки объявления, поэтому не потеряется между копированием
+     * и каскадным удалением, а объявления, которые сейчас меняют, пропускаются до следующего запуска.
+     * Корзины, запись в которые на этом шарде запрещена (переносятся или перенесены), не архивируются:
+     * их строки уже скопированы на другой шард.
+     * Изображения переносит вызывающий после фиксации ({@link #moveImagesToArchive(List)}).
+     *
+     * @return пути изображений перенесённых объявлений; пустой список — архивировать больше нечего
+     */
+    @Transactional
+    public List<String> archiveBatch(LocalDateTime cutoff, int batchSize) {
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT pk FROM ads WHERE last_activity_at < ? "
+                        + "AND NOT EXISTS (SELECT 1 FROM shard_bucket_fences f WHERE f.bucket = user_id % ?) "
+                        + "ORDER BY pk LIMIT ? FOR UPDATE SKIP LOCKED",
+                Integer.class, Timestamp.valueOf(cutoff), shardRouter.buckets(), batchSize);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Object idArray = ids.toArray(new Integer[0]);
+        // одним выражением: все CTE видят один снимок, поэтому комментарии копируются до того,
+        // как их удалит каскад внешнего ключа, а ссылки comments_archive -> ads_archive проверяются в конце
+        List<String> images = jdbcTemplate.queryForList("WITH moved AS ("
+                + "DELETE FROM ads WHERE pk = ANY(?) RETURNING " + AD_COLUMNS + "), "
+                + "archived_comments AS (INSERT INTO comments_archive (" + COMMENT_COLUMNS + ") "
+                + "SELECT " + COMMENT_COLUMNS + " FROM comments WHERE ad_id = ANY(?)) "
+                + "INSERT INTO ads_archive (" + AD_COLUMNS + ") SELECT " + AD_COLUMNS + " FROM moved "
+                + "RETURNING image", String.class, idArray, idArray);
+        log.debug("Archived batch of {} ads", ids.size());
+        return images;
+    }
+
+    public void moveImagesToArchive(List<String> images) {
+        for (String image : images) {
+            imageService.moveImage(image, adImageDir, properties.getImageDir());
+        }
+    }
+
+    /**
+     * Возвращает архивное объявление с комментариями в рабочие таблицы.
+     * <p>
+     * Присоединяется к транзакции на запись вызывающего или открывает свою; из транзакции только для чтения
+     * вызывать нельзя — читающие сценарии (просмотр объявления, комментарии) вызывают его до своей транзакции.
+     * Строка архива блокируется, поэтому параллельные обращения к одному объявлению восстанавливают его один раз,
+     * остальные получают уже восстановленное. Комментарии старше срока хранения секций {@code comments}
+     * не восстанавливаются. Изображение переносится из архива после фиксации ({@link ImagesMovedEvent}):
+     * при откате файл остаётся в архиве рядом со строкой {@code ads_archive}.
+     *
+     * @param id идентификатор объявления
+     * @return восстановленное (или уже восстановленное параллельно) объявление с загруженным автором;
+     * пусто, если объявления нет ни в рабочей таблице, ни в архиве
+     */
+    @Transactional
+    public Optional<AdsDao> restore(Integer id) {
+        List<Map<String, Object>> archived = jdbcTemplate.queryForList(
+                "SELECT image, user_id FROM ads_archive WHERE pk = ? FOR UPDATE", id);
+        if (!archived.isEmpty()) {
+            shardRouter.lockBucketForWrite((Integer) archived.get(0).get("user_id"));
+            String image = (String) archived.get(0).get("image");
+            jdbcTemplate.update("INSERT INTO ads (" + AD_COLUMNS + ") "
+                    + "SELECT pk, title, description, price, image, user_id, ? FROM ads_archive WHERE pk = ?",
+                    Timestamp.valueOf(LocalDateTime.now()), id);
+            LocalDateTime oldestComment = commentPartitionProperties.getRetention() == null
+                    ? NO_RETENTION
+                    : LocalDateTime.now().minus(commentPartitionProperties.getRetention());
+            jdbcTemplate.update("INSERT INTO comments (" + COMMENT_COLUMNS + ") "
+                    + "SELECT " + COMMENT_COLUMNS + " FROM comments_archive WHERE ad_id = ? AND created_at >= ?",
+                    id, Timestamp.valueOf(oldestComment));
+            jdbcTemplate.update("DELETE FROM ads_archive WHERE pk = ?", id);
+            if (image != null) {
+                eventPublisher.publishEvent(new ImagesMovedEvent(properties.getImageDir(), adImageDir, List.of(image)));
+            }
+            log.info("Restored archived ad {}", id);
+        }
+        Optional<AdsDao> ad = adRepository.findById(id);
+        ad.ifPresent(a -> Hibernate.initialize(a.getAuthor()));
+        return ad;
+    }
+
+    /**
+     * Архивные объявления автора — чтобы они оставались в его списке объявлений.
+     * Без изображения: файл лежит в {@code app.ads.archive.image-dir}, и ссылка {@code /ads-images/...} на него
+     * не ведёт; изображение вернётся вместе с объявлением при первом обращении по id.
+     */
+    @Transactional(readOnly = true)
+    public List<AdDto> findByAuthor(Integer authorId) {
+        return jdbcTemplate.query("SELECT pk, title, price, user_id FROM ads_archive WHERE user_id = ? ORDER BY pk",
+                (rs, rowNum) -> {
+                    AdDto dto = new AdDto();
+                    dto.setPk(rs.getInt("pk"));
+                    dto.setTitle(rs.getString("title"));
+                    dto.setPrice(rs.getInt("price"));
+                    dto.setAuthor(rs.getInt("user_id"));
+                    return dto;
+                }, authorId);
+    }
+
+    /**
+     * Изображения архивных объявлений автора в {@code app.ads.archive.image-dir}.
+     */
+    @Transactional(readOnly = true)
+    public List<String> findImagesByAuthor(Integer authorId) {
+        return jdbcTemplate.queryForList("SELECT image FROM ads_archive WHERE user_id = ? AND image IS NOT NULL",
+                String.class, authorId);
+    }
+
+    public String getImageDir() {
+        return properties.getImageDir();
+    }
+}
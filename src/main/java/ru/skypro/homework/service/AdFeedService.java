@@ -0,0 +1,79 @@
+package ru.skypro.homework.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.skypro.homework.dto.ad.AdDto;
+import ru.skypro.homework.dto.ad.ExtendedAdDto;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Лента объявлений — денормализованная модель чтения {@code ad_feed} (миграция V9): объявление с именем,
+ * контактами и аватаром автора и числом комментариев в одной строке.
+ * <p>
+ * Таблицу поддерживают триггеры БД в транзакции каждого изменения {@code ads}, {@code users} и {@code comments},
+ * поэтому здесь только чтение и полная перестройка. Архивные объявления в ленту не входят.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AdFeedService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Все объявления ленты узла по возрастанию id.
+     */
+    @Transactional(readOnly = true)
+    public List<AdDto> findAll() {
+        return jdbcTemplate.query("SELECT pk, title, price, image, user_id FROM ad_feed ORDER BY pk",
+                (rs, rowNum) -> {
+                    AdDto dto = new AdDto();
+                    dto.setPk(rs.getInt("pk"));
+                    dto.setTitle(rs.getString("title"));
+                    dto.setPrice(rs.getInt("price"));
+                    dto.setImage(rs.getString("image"));
+                    dto.setAuthor(rs.getInt("user_id"));
+                    return dto;
+                });
+    }
+
+    /**
+     * Объявление с автором по id; пусто, если объявления нет в рабочей таблице (в том числе архивного).
+     */
+    @Transactional(readOnly = true)
+    public Optional<ExtendedAdDto> findById(Integer id) {
+        return jdbcTemplate.query("SELECT pk, title, description, price, image, "
+                        + "author_email, author_first_name, author_last_name, author_phone FROM ad_feed WHERE pk = ?",
+                (rs, rowNum) -> {
+                    ExtendedAdDto dto = new ExtendedAdDto();
+                    dto.setPk(rs.getInt("pk"));
+                    dto.setTitle(rs.getString("title"));
+                    dto.setDescription(rs.getString("description"));
+                    dto.setPrice(rs.getInt("price"));
+                    dto.setImage(rs.getString("image"));
+                    dto.setEmail(rs.getString("author_email"));
+                    dto.setAuthorFirstName(rs.getString("author_first_name"));
+                    dto.setAuthorLastName(rs.getString("author_last_name"));
+                    dto.setPhone(rs.getString("author_phone"));
+                    return dto;
+                }, id).stream().findFirst();
+    }
+
+    /**
+     * Перестраивает ленту узла из рабочих таблиц ({@code ad_feed_rebuild()}). Запись объявлений, пользователей
+     * и комментариев ждёт окончания перестройки, чтение ленты продолжается.
+     *
+     * @return число строк ленты
+     */
+    @Transactional
+    public int rebuild() {
+        Integer rebuilt = jdbcTemplate.queryForObject("SELECT ad_feed_rebuild()", Integer.class);
+        log.info("Rebuilt ad feed: {} ads", rebuilt);
+        return rebuilt == null ? 0 : rebuilt;
+    }
+}
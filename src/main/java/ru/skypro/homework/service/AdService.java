@@ -1,11 +1,14 @@
 package ru.skypro.homework.service;
 
-import org.springframework.web.multipart.MultipartFile;
 import ru.skypro.homework.dto.ad.AdDto;
 import ru.skypro.homework.dto.ad.AdsDto;
 import ru.skypro.homework.dto.ad.CreateOrUpdateAdDto;
 import ru.skypro.homework.dto.ad.ExtendedAdDto;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 public interface AdService {
 
     /**
@@ -14,14 +17,38 @@ public interface AdService {
     AdsDto getAllAds();
 
     /**
-     * Добавление нового объявления.
+     * Потоковая выгрузка всех объявлений в формате {@link AdsDto} ({@code count} и {@code results}).
+     * Объявления пишутся в поток по мере чтения из БД, память на ответ не зависит от числа объявлений.
+     *
+     * @param out поток ответа
+     */
+    void exportAds(OutputStream out) throws IOException;
+
+    /**
+     * Сохранение изображения нового объявления до его создания.
+     *
+     * @param image содержимое изображения (поток части запроса)
+     * @return путь к изображению для {@link #addAd(String, CreateOrUpdateAdDto, String)}
+     */
+    String saveAdImage(InputStream image);
+
+    /**
+     * Добавление нового объявления. Если объявление не создано, изображение удаляет вызывающий
+     * через {@link #deleteAdImage(String)}.
      *
      * @param email      email автора (из Authentication)
      * @param properties данные объявления
-     * @param image      файл изображения
+     * @param imagePath  путь к изображению, сохранённому {@link #saveAdImage(InputStream)}
      * @return созданное объявление (AdDto)
      */
-    AdDto addAd(String email, CreateOrUpdateAdDto properties, MultipartFile image);
+    AdDto addAd(String email, CreateOrUpdateAdDto properties, String imagePath);
+
+    /**
+     * Удаление изображения объявления, которое так и не было создано.
+     *
+     * @param imagePath путь к изображению, сохранённому {@link #saveAdImage(InputStream)}
+     */
+    void deleteAdImage(String imagePath);
 
     /**
      * Получение расширенной информации об объявлении по id.
@@ -62,8 +89,8 @@ public interface AdService {
      *
      * @param id    идентификатор объявления
      * @param email email текущего пользователя
-     * @param image новый файл изображения
+     * @param image содержимое нового изображения (поток части запроса)
      * @return обновлённое изображение в виде байт
      */
-    byte[] updateImage(Integer id, String email, MultipartFile image);
+    byte[] updateImage(Integer id, String email, InputStream image);
 }
\ No newline at end of file
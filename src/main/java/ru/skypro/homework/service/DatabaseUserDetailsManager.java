@@ -1,9 +1,13 @@
 package ru.skypro.homework.service;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.UserDetailsManager;
@@ -12,7 +16,12 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.skypro.homework.exception.InvalidCurrentPasswordException;
 import ru.skypro.homework.exception.UserNotFoundException;
 import ru.skypro.homework.model.UsersDao;
+import ru.skypro.homework.repository.AdRepository;
 import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.sharding.ShardRouter;
+
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Кастомная реализация {@link UserDetailsManager}, обеспечивающая хранение и управление
@@ -39,21 +48,39 @@ import ru.skypro.homework.repository.UserRepository;
  * аутентифицированным пользователем: он получает текущего пользователя из
  * контекста безопасности, проверяет старый пароль с помощью {@link PasswordEncoder}
  * и сохраняет новый зашифрованный пароль.
+ * <p>
+ * Как {@link UserDetailsPasswordService} менеджер сохраняет пароль, перехешированный
+ * при успешном входе, если хранимый хеш устарел (нет префикса {@code {bcrypt}} или стоимость
+ * ниже текущей) — см. {@link #updatePassword(UserDetails, String)}.
  *
  * @see UserDetailsManager
  * @see UserRepository
  * @see PasswordEncoder
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
-public class DatabaseUserDetailsManager implements UserDetailsManager {
+public class DatabaseUserDetailsManager implements UserDetailsManager, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final AdRepository adRepository;
+    private final AdArchiveService adArchiveService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shardRouter;
+
+    @Value("${app.image.ad-dir}")
+    private String adImageDir;
+
+    @Value("${app.image.avatar-dir}")
+    private String avatarDir;
 
     /**
      * Загружает пользователя по его email (username).
+     * <p>
+     * Учётные данные читаются из БД, а не из кэша второго уровня
+     * ({@link UserRepository#findCredentialsByEmail(String)}).
      *
      * @param username email пользователя
      * @return объект {@link UserDetails}, содержащий имя, пароль и роли
@@ -61,8 +88,8 @@ public class DatabaseUserDetailsManager implements UserDetailsManager {
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        UsersDao user = userRepository.findByEmail(username)
-                                      .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+        UserRepository.Credentials user = userRepository.findCredentialsByEmail(username)
+                                                        .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
         return User.builder()
                    .username(user.getEmail())
                    .password(user.getPassword())
@@ -99,6 +126,12 @@ public class DatabaseUserDetailsManager implements UserDetailsManager {
 
     /**
      * Удаляет пользователя по email.
+     * <p>
+     * Объявления и комментарии пользователя (и архивные тоже) удаляет каскад внешних ключей в той же операции
+     * {@code DELETE}, без загрузки в контекст персистентности; на остальных шардах — удаление копии
+     * пользователя ({@link ru.skypro.homework.sharding.ShardUserReplicator}). Пути к изображениям объявлений
+     * (со всех шардов) и аватару собираются до удаления; сами файлы удаляются в фоне после фиксации
+     * ({@link ImagesReleasedEvent}).
      *
      * @param username email удаляемого пользователя
      * @throws UserNotFoundException если пользователь не найден
@@ -107,7 +140,21 @@ public class DatabaseUserDetailsManager implements UserDetailsManager {
     public void deleteUser(String username) {
         UsersDao user = userRepository.findByEmail(username)
                                       .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
+        Integer userId = user.getId();
+        List<String> adImages = distinct(shardRouter.gather(() -> adRepository.findImagesByAuthorId(userId)));
+        List<String> archivedAdImages = distinct(shardRouter.gather(() -> adArchiveService.findImagesByAuthor(userId)));
         userRepository.delete(user);
+        if (!adImages.isEmpty()) {
+            eventPublisher.publishEvent(new ImagesReleasedEvent(adImageDir, adImages));
+        }
+        if (!archivedAdImages.isEmpty()) {
+            eventPublisher.publishEvent(new ImagesReleasedEvent(adArchiveService.getImageDir(), archivedAdImages));
+        }
+        if (user.getImage() != null) {
+            eventPublisher.publishEvent(new ImagesReleasedEvent(avatarDir, List.of(user.getImage())));
+        }
+        log.info("User deleted: {}, released {} ad images and {} archived ad images", username, adImages.size(),
+                archivedAdImages.size());
     }
 
     /**
@@ -134,6 +181,29 @@ public class DatabaseUserDetailsManager implements UserDetailsManager {
         userRepository.save(user);
     }
 
+    /**
+     * Сохраняет новый хеш пароля пользователя, вычисленный при успешном входе.
+     * <p>
+     * Вызывается {@code DaoAuthenticationProvider}, когда {@link PasswordEncoder#upgradeEncoding(String)}
+     * сообщает, что хранимый хеш устарел. Открытый пароль сюда не попадает — только новый хеш.
+     *
+     * @param user        аутентифицированный пользователь
+     * @param newPassword новый хеш пароля
+     * @return пользователь с обновлённым паролем
+     * @throws UsernameNotFoundException если пользователь не найден
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UsersDao entity = userRepository.findByEmail(user.getUsername())
+                                        .orElseThrow(() -> new UsernameNotFoundException("User not found: " + user.getUsername()));
+        entity.setPassword(newPassword);
+        userRepository.save(entity);
+        log.info("Password hash upgraded for user: {}", user.getUsername());
+        return User.withUserDetails(user)
+                   .password(newPassword)
+                   .build();
+    }
+
     /**
      * Проверяет, существует ли пользователь с указанным email.
      *
@@ -144,4 +214,11 @@ public class DatabaseUserDetailsManager implements UserDetailsManager {
     public boolean userExists(String username) {
         return userRepository.existsByEmail(username);
     }
-}
\ No newline at end of file
+
+    /**
+     * Во время переноса корзины её объявления есть на двух шардах.
+     */
+    private static List<String> distinct(List<String> images) {
+        return images.stream().distinct().collect(Collectors.toList());
+    }
+}
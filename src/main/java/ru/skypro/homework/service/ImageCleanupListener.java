@@ -0,0 +1,30 @@
+package ru.skypro.homework.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Удаляет файлы из {@link ImagesReleasedEvent} в фоновом потоке после фиксации транзакции:
+ * при откате файлы остаются на месте, а запрос на удаление не ждёт диска.
+ * Ошибки удаления отдельных файлов только логируются ({@link ImageService#deleteImage(String, String)}).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageCleanupListener {
+
+    private final ImageService imageService;
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onImagesReleased(ImagesReleasedEvent event) {
+        for (String imagePath : event.getImagePaths()) {
+            imageService.deleteImage(imagePath, event.getDirectory());
+        }
+        log.debug("Deleted {} released images from {}", event.getImagePaths().size(), event.getDirectory());
+    }
+}
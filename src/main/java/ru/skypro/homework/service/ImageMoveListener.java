@@ -0,0 +1,29 @@
+package ru.skypro.homework.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Переносит файлы из {@link ImagesMovedEvent} после фиксации транзакции: при откате файлы остаются там,
+ * куда указывает строка БД. Перенос выполняется в потоке запроса, чтобы ответ ссылался на уже перенесённый файл.
+ * Ошибки переноса отдельных файлов только логируются ({@link ImageService#moveImage(String, String, String)}).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageMoveListener {
+
+    private final ImageService imageService;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onImagesMoved(ImagesMovedEvent event) {
+        for (String imagePath : event.getImagePaths()) {
+            imageService.moveImage(imagePath, event.getFromDirectory(), event.getToDirectory());
+        }
+        log.debug("Moved {} images from {} to {}", event.getImagePaths().size(), event.getFromDirectory(),
+                event.getToDirectory());
+    }
+}
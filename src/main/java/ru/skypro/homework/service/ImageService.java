@@ -1,47 +1,124 @@
 package ru.skypro.homework.service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-import ru.skypro.homework.util.ImageHelper;
+import org.springframework.util.unit.DataSize;
+import ru.skypro.homework.exception.ImageTooLargeException;
+import ru.skypro.homework.exception.InvalidUploadException;
 
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.UUID;
 
 /**
- * Сервис для работы с изображениями: сохранение, удаление, чтение
+ * Сервис для работы с изображениями: сохранение, удаление, чтение.
+ * Публикует гистограммы размеров загрузок ({@code app.image.upload.size}) и сохранённых
+ * после перекодирования файлов ({@code app.image.stored.size})
+ * и время дисковых операций ({@code app.image.io} с тегом operation).
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ImageService {
 
+    private final ImageTranscoder imageTranscoder;
+    private final long maxSize;
+    private final DistributionSummary uploadSize;
+    private final DistributionSummary storedSize;
+    private final Timer saveTimer;
+    private final Timer deleteTimer;
+    private final Timer readTimer;
+    private final Timer moveTimer;
+
+    public ImageService(MeterRegistry meterRegistry,
+                        ImageTranscoder imageTranscoder,
+                        @Value("${app.image.max-size:10MB}") DataSize maxSize) {
+        this.imageTranscoder = imageTranscoder;
+        this.maxSize = maxSize.toBytes();
+        this.uploadSize = DistributionSummary.builder("app.image.upload.size")
+                                             .description("Size of uploaded images")
+                                             .baseUnit("bytes")
+                                             .publishPercentileHistogram()
+                                             .register(meterRegistry);
+        this.storedSize = DistributionSummary.builder("app.image.stored.size")
+                                             .description("Size of stored images after re-encoding")
+                                             .baseUnit("bytes")
+                                             .publishPercentileHistogram()
+                                             .register(meterRegistry);
+        this.saveTimer = ioTimer(meterRegistry, "save");
+        this.deleteTimer = ioTimer(meterRegistry, "delete");
+        this.readTimer = ioTimer(meterRegistry, "read");
+        this.moveTimer = ioTimer(meterRegistry, "move");
+    }
+
+    private static Timer ioTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("app.image.io")
+                    .description("Image file I/O latency")
+                    .tag("operation", operation)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+    }
+
     /**
-     * Сохраняет файл в указанную директорию.
+     * Сохраняет изображение из потока в указанную директорию.
+     * Содержимое декодируется прямо из потока и перекодируется {@link ImageTranscoder}
+     * (уменьшение, поворот по EXIF, удаление метаданных), на диск пишется только результат.
+     * Превышение {@code app.image.max-size} обрывает чтение сразу; недописанный файл удаляется.
      *
-     * @param image     загружаемый файл
+     * @param image     содержимое изображения (например, поток части multipart-запроса)
      * @param directory корневая директория для сохранения (например, "./avatars")
      * @param urlPrefix префикс URL для доступа (например, "/avatars/")
      * @return относительный путь к файлу (например, "/avatars/file.jpg")
+     * @throws InvalidUploadException если содержимое не является изображением поддерживаемого формата
+     * @throws ImageTooLargeException если изображение больше {@code app.image.max-size}
      */
-    public String saveImage(MultipartFile image, String directory, String urlPrefix) {
+    public String saveImage(InputStream image, String directory, String urlPrefix) {
+        Timer.Sample sample = Timer.start();
+        Path filePath = null;
         try {
-            String extension = ImageHelper.getExtension(image.getOriginalFilename());
-            String filename = UUID.randomUUID() + extension;
-            Path uploadPath = Paths.get(directory);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
+            SizeLimitedInputStream content = new SizeLimitedInputStream(image, maxSize);
+            BufferedImage decoded = imageTranscoder.read(content);
+            Path uploadPath = Paths.get(directory).toAbsolutePath();
+            Files.createDirectories(uploadPath);
+            String filename = UUID.randomUUID() + imageTranscoder.extensionFor(decoded);
+            filePath = uploadPath.resolve(filename);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(filePath, StandardOpenOption.CREATE_NEW))) {
+                imageTranscoder.write(decoded, out);
             }
-            Path filePath = uploadPath.resolve(filename);
-            image.transferTo(filePath.toFile());
+            uploadSize.record(content.getCount());
+            storedSize.record(Files.size(filePath));
             return urlPrefix + filename;
         } catch (IOException e) {
+            deleteQuietly(filePath);
             log.error("Failed to save image to {}", directory, e);
             throw new RuntimeException("Failed to save image", e);
+        } catch (RuntimeException e) {
+            deleteQuietly(filePath);
+            throw e;
+        } finally {
+            sample.stop(saveTimer);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete partial image file: {}", path, e);
         }
     }
 
@@ -53,11 +130,39 @@ public class ImageService {
      */
     public void deleteImage(String imagePath, String directory) {
         if (imagePath == null) return;
+        Timer.Sample sample = Timer.start();
         try {
             Path fullPath = Paths.get(directory, Paths.get(imagePath).getFileName().toString());
             Files.deleteIfExists(fullPath);
         } catch (IOException e) {
             log.warn("Failed to delete image file: {}", imagePath, e);
+        } finally {
+            sample.stop(deleteTimer);
+        }
+    }
+
+    /**
+     * Переносит файл между директориями (например, в холодное хранилище архива и обратно).
+     * Отсутствующий в исходной директории файл пропускается: перенос можно повторять.
+     *
+     * @param imagePath     относительный путь (например, "/ads-images/file.jpg")
+     * @param fromDirectory директория, где файл лежит сейчас
+     * @param toDirectory   директория назначения; создаётся при необходимости
+     */
+    public void moveImage(String imagePath, String fromDirectory, String toDirectory) {
+        if (imagePath == null) return;
+        Timer.Sample sample = Timer.start();
+        try {
+            String fileName = Paths.get(imagePath).getFileName().toString();
+            Path source = Paths.get(fromDirectory, fileName);
+            if (Files.exists(source)) {
+                Path targetDirectory = Files.createDirectories(Paths.get(toDirectory));
+                Files.move(source, targetDirectory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to move image file {} from {} to {}", imagePath, fromDirectory, toDirectory, e);
+        } finally {
+            sample.stop(moveTimer);
         }
     }
 
@@ -69,12 +174,62 @@ public class ImageService {
      * @return массив байт файла
      */
     public byte[] readImageAsBytes(String imagePath, String directory) {
+        Timer.Sample sample = Timer.start();
         try {
             Path fullPath = Paths.get(directory, Paths.get(imagePath).getFileName().toString());
             return Files.readAllBytes(fullPath);
         } catch (IOException e) {
             log.error("Failed to read image file: {}", imagePath, e);
             throw new RuntimeException("Failed to read image file", e);
+        } finally {
+            sample.stop(readTimer);
+        }
+    }
+
+    /**
+     * Считает прочитанные байты и обрывает чтение на первом байте сверх лимита.
+     */
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        @Getter
+        private long count;
+
+        SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                advance(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            advance(skipped);
+            return skipped;
+        }
+
+        private void advance(long read) {
+            count += read;
+            if (count > limit) {
+                throw new ImageTooLargeException("Image exceeds " + limit + " bytes");
+            }
         }
     }
-}
\ No newline at end of file
+}
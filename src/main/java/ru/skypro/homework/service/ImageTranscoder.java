@@ -0,0 +1,256 @@
+package ru.skypro.homework.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Node;
+import ru.skypro.homework.exception.InvalidUploadException;
+import ru.skypro.homework.util.ImageHelper;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Iterator;
+
+/**
+ * Перекодирование загруженных изображений.
+ * <p>
+ * Формат определяется по сигнатуре; размер в пикселях проверяется по заголовку до декодирования,
+ * а изображения крупнее {@code app.image.max-dimension} декодируются с прореживанием строк и столбцов,
+ * поэтому память на декодирование не растёт с разрешением исходника. Поворот из EXIF применяется
+ * к пикселям, после чего изображение записывается заново: непрозрачные в JPEG с качеством
+ * {@code app.image.jpeg-quality}, с альфа-каналом в PNG. Метаданные (EXIF, GPS, ICC, комментарии)
+ * в результат не переносятся.
+ */
+@Component
+public class ImageTranscoder {
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+    private static final String APP1_MARKER_TAG = "225";
+
+    private final int maxDimension;
+    private final long maxPixels;
+    private final float jpegQuality;
+
+    public ImageTranscoder(@Value("${app.image.max-dimension:1920}") int maxDimension,
+                           @Value("${app.image.max-pixels:50000000}") long maxPixels,
+                           @Value("${app.image.jpeg-quality:0.82}") float jpegQuality) {
+        this.maxDimension = maxDimension;
+        this.maxPixels = maxPixels;
+        this.jpegQuality = jpegQuality;
+    }
+
+    /**
+     * Декодирует изображение, поворачивает по EXIF и уменьшает до {@code app.image.max-dimension} по большей стороне.
+     *
+     * @throws InvalidUploadException если формат не поддерживается, изображение повреждено
+     *                                или в нём больше {@code app.image.max-pixels} пикселей
+     */
+    public BufferedImage read(InputStream content) throws IOException {
+        byte[] header = content.readNBytes(ImageHelper.SIGNATURE_LENGTH);
+        String format = ImageHelper.detectFormat(header)
+                                   .orElseThrow(() -> new InvalidUploadException("Unsupported image format"));
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(format);
+        if (!readers.hasNext()) {
+            throw new InvalidUploadException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        InputStream full = new SequenceInputStream(new ByteArrayInputStream(header), content);
+        try (ImageInputStream input = new MemoryCacheImageInputStream(full)) {
+            boolean jpeg = "jpeg".equals(format);
+            reader.setInput(input, true, !jpeg);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if ((long) width * height > maxPixels) {
+                throw new InvalidUploadException("Image is " + width + "x" + height + ", at most " + maxPixels + " pixels allowed");
+            }
+            int orientation = jpeg ? exifOrientation(reader) : ImageHelper.ORIENTATION_NORMAL;
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            int step = Math.max(width, height) / maxDimension;
+            if (step > 1) {
+                param.setSourceSubsampling(step, step, 0, 0);
+            }
+            BufferedImage image = reader.read(0, param);
+            return resize(orient(image, orientation));
+        } catch (IOException | IllegalArgumentException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                // Например, ImageTooLargeException из потока, обёрнутое декодером
+                throw (RuntimeException) e.getCause();
+            }
+            throw new InvalidUploadException("Corrupted " + format + " image", e);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * @return расширение файла, в котором {@link #write} сохранит изображение
+     */
+    public String extensionFor(BufferedImage image) {
+        return image.getColorModel().hasAlpha() ? ".png" : ".jpg";
+    }
+
+    /**
+     * Записывает изображение без метаданных: JPEG (progressive) или PNG, см. {@link #extensionFor}.
+     */
+    public void write(BufferedImage image, OutputStream out) throws IOException {
+        if (image.getColorModel().hasAlpha()) {
+            ImageIO.write(image, "png", out);
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(toRgb(image), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static int exifOrientation(ImageReader reader) {
+        IIOMetadata metadata;
+        try {
+            metadata = reader.getImageMetadata(0);
+        } catch (IOException e) {
+            // Нестандартный порядок маркеров (например, EXIF перед JFIF) не мешает декодировать пиксели
+            return ImageHelper.ORIENTATION_NORMAL;
+        }
+        if (metadata == null) {
+            return ImageHelper.ORIENTATION_NORMAL;
+        }
+        Node root = metadata.getAsTree(JPEG_METADATA_FORMAT);
+        for (Node section = root.getFirstChild(); section != null; section = section.getNextSibling()) {
+            if (!"markerSequence".equals(section.getNodeName())) {
+                continue;
+            }
+            for (Node marker = section.getFirstChild(); marker != null; marker = marker.getNextSibling()) {
+                if (marker instanceof IIOMetadataNode
+                        && "unknown".equals(marker.getNodeName())
+                        && APP1_MARKER_TAG.equals(((IIOMetadataNode) marker).getAttribute("MarkerTag"))
+                        && ((IIOMetadataNode) marker).getUserObject() instanceof byte[]) {
+                    int orientation = ImageHelper.readExifOrientation((byte[]) ((IIOMetadataNode) marker).getUserObject());
+                    if (orientation != ImageHelper.ORIENTATION_NORMAL) {
+                        return orientation;
+                    }
+                }
+            }
+        }
+        return ImageHelper.ORIENTATION_NORMAL;
+    }
+
+    /**
+     * Применяет к пикселям преобразование, заданное тегом EXIF Orientation (1–8).
+     */
+    private static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation == ImageHelper.ORIENTATION_NORMAL) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean swap = orientation >= 5;
+        AffineTransform transform = new AffineTransform();
+        switch (orientation) {
+            case 2:
+                transform.scale(-1, 1);
+                transform.translate(-width, 0);
+                break;
+            case 3:
+                transform.translate(width, height);
+                transform.rotate(Math.PI);
+                break;
+            case 4:
+                transform.scale(1, -1);
+                transform.translate(0, -height);
+                break;
+            case 5:
+                transform.rotate(-Math.PI / 2);
+                transform.scale(-1, 1);
+                break;
+            case 6:
+                transform.translate(height, 0);
+                transform.rotate(Math.PI / 2);
+                break;
+            case 7:
+                transform.scale(-1, 1);
+                transform.translate(-height, 0);
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+                break;
+            case 8:
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+                break;
+            default:
+                return image;
+        }
+        BufferedImage oriented = new BufferedImage(swap ? height : width, swap ? width : height, outputType(image));
+        Graphics2D g = oriented.createGraphics();
+        try {
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return oriented;
+    }
+
+    private BufferedImage resize(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (Math.max(width, height) <= maxDimension) {
+            return image;
+        }
+        double scale = (double) maxDimension / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage resized = new BufferedImage(targetWidth, targetHeight, outputType(image));
+        Graphics2D g = resized.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return resized;
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private static int outputType(BufferedImage image) {
+        return image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.skypro.homework.service;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Файлы изображений, которые нужно перенести в другую директорию вслед за строками БД
+ * (например, при возврате объявления из архива).
+ * Публикуется внутри транзакции; файлы переносит {@link ImageMoveListener} после её фиксации.
+ */
+@Value
+public class ImagesMovedEvent {
+
+    /** Директория, где файлы лежат сейчас (например, "./ads-images-archive"). */
+    String fromDirectory;
+
+    /** Директория, куда их нужно перенести (например, "./ads-images"). */
+    String toDirectory;
+
+    /** Относительные пути (например, "/ads-images/file.jpg"). */
+    List<String> imagePaths;
+}
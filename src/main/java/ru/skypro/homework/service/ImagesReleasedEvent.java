@@ -0,0 +1,20 @@
+package ru.skypro.homework.service;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Файлы изображений, на которые больше не ссылается ни одна строка БД
+ * (например, после удаления объявления или пользователя).
+ * Публикуется внутри транзакции удаления; файлы удаляет {@link ImageCleanupListener} после её фиксации.
+ */
+@Value
+public class ImagesReleasedEvent {
+
+    /** Корневая директория файлов (например, "./ads-images"). */
+    String directory;
+
+    /** Относительные пути (например, "/ads-images/file.jpg"). */
+    List<String> imagePaths;
+}
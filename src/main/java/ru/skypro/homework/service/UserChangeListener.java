@@ -0,0 +1,28 @@
+package ru.skypro.homework.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.model.UsersDao;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA-слушатель {@link UsersDao}: сообщает об изменении пользователя событием {@link UserChangedEvent}.
+ * Hibernate получает слушатель из контекста Spring, поэтому зависимости внедряются как обычно.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserChangeListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(UsersDao user) {
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
+    }
+}
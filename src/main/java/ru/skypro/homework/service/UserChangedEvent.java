@@ -0,0 +1,12 @@
+package ru.skypro.homework.service;
+
+import lombok.Value;
+
+/**
+ * Пользователь создан, изменён или удалён. Публикуется {@link UserChangeListener} внутри транзакции изменения.
+ */
+@Value
+public class UserChangedEvent {
+
+    Integer userId;
+}
@@ -1,10 +1,11 @@
 package ru.skypro.homework.service;
 
-import org.springframework.web.multipart.MultipartFile;
 import ru.skypro.homework.dto.user.NewPasswordDto;
 import ru.skypro.homework.dto.user.UpdateUserDto;
 import ru.skypro.homework.dto.user.UserDto;
 
+import java.io.InputStream;
+
 public interface UserService {
 
     /**
@@ -36,7 +37,7 @@ public interface UserService {
      * Обновление аватара текущего пользователя.
      *
      * @param email email текущего пользователя
-     * @param image файл нового аватара
+     * @param image содержимое нового аватара (поток части запроса)
      */
-    void updateUserImage(String email, MultipartFile image);
+    void updateUserImage(String email, InputStream image);
 }
\ No newline at end of file
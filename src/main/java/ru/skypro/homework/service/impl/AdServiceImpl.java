@@ -1,11 +1,18 @@
 package ru.skypro.homework.service.impl;
 
+import io.micrometer.core.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.config.MetricsConfig;
 import ru.skypro.homework.dto.ad.AdDto;
 import ru.skypro.homework.dto.ad.AdsDto;
 import ru.skypro.homework.dto.ad.CreateOrUpdateAdDto;
@@ -14,82 +21,224 @@ import ru.skypro.homework.dto.auth.Role;
 import ru.skypro.homework.exception.AdNotFoundException;
 import ru.skypro.homework.exception.UnauthorizedAccessException;
 import ru.skypro.homework.exception.UserNotFoundException;
+import ru.skypro.homework.maintenance.AdActivityTracker;
 import ru.skypro.homework.mapper.AdMapper;
 import ru.skypro.homework.model.AdsDao;
 import ru.skypro.homework.model.UsersDao;
 import ru.skypro.homework.repository.AdRepository;
 import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdArchiveService;
+import ru.skypro.homework.service.AdFeedService;
 import ru.skypro.homework.service.AdService;
 import ru.skypro.homework.service.CurrentUserService;
 import ru.skypro.homework.service.ImageService;
+import ru.skypro.homework.service.ImagesReleasedEvent;
+import ru.skypro.homework.sharding.ShardRouter;
 import ru.skypro.homework.util.ImageHelper;
 
+import javax.persistence.EntityManager;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class AdServiceImpl implements AdService {
 
+    private static final String AD_IMAGE_URL_PREFIX = "/ads-images/";
+
     private final AdRepository adRepository;
     private final AdMapper adMapper;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
 
     private final CurrentUserService currentUserService;
     private final ImageService imageService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AdArchiveService adArchiveService;
+    private final AdFeedService adFeedService;
+    private final AdActivityTracker adActivityTracker;
+    private final ShardRouter shardRouter;
 
     @Value("${app.image.ad-dir}")
     private String adImageDir;
 
+    /**
+     * Объявления читаются из ленты ({@link AdFeedService}) без соединения с авторами.
+     * С шардированием ленты шардов читаются параллельно и сливаются по возрастанию id.
+     * Своей транзакции нет: каждое чтение ленты идёт в транзакции {@link AdFeedService#findAll()} на своём шарде,
+     * и запрос не держит лишнее соединение (и разрешение пула) на время сбора.
+     */
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AdsDto getAllAds() {
-        List<AdsDao> ads = adRepository.findAll();
-        List<AdDto> adDtos = ads.stream()
-                                .map(adMapper::toAdDto)
-                                .collect(Collectors.toList());
+        List<AdDto> adDtos = shardRouter.gatherSorted(adFeedService::findAll,
+                AdDto::getAuthor, Comparator.comparing(AdDto::getPk));
         AdsDto result = new AdsDto();
         result.setCount(adDtos.size());
         result.setResults(adDtos);
         return result;
     }
 
+    /**
+     * Без шардирования {@code count} и строки читаются в одном снимке (REPEATABLE READ), поэтому совпадают.
+     * С шардированием шарды выгружаются по очереди, каждый в своей транзакции только для чтения, по возрастанию id
+     * внутри шарда; общего снимка нет, поэтому {@code count} — число выгруженных строк и пишется после них.
+     * Каждые {@link AdRepository#STREAM_FETCH_SIZE} строк контекст персистентности очищается,
+     * чтобы прочитанные объявления и прокси авторов не копились в памяти.
+     */
     @Override
-    public AdDto addAd(String email, CreateOrUpdateAdDto properties, MultipartFile image) {
-        UsersDao author = currentUserService.getUserByEmail(email);
-        String imagePath = imageService.saveImage(image, adImageDir, "/ads-images/");
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportAds(OutputStream out) throws IOException {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTransaction.setReadOnly(true);
+        Long written;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            if (shardRouter.isSharded()) {
+                written = exportShards(generator, readOnlyTransaction);
+            } else {
+                readOnlyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+                written = readOnlyTransaction.execute(status -> exportSnapshot(generator));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Exported {} ads", written);
+    }
+
+    private long exportSnapshot(JsonGenerator generator) {
+        long count = adRepository.count();
+        long written = 0;
+        try (Stream<AdsDao> ads = adRepository.streamAllOrderByPk()) {
+            generator.writeStartObject();
+            generator.writeNumberField("count", count);
+            generator.writeArrayFieldStart("results");
+            Iterator<AdsDao> iterator = ads.iterator();
+            while (iterator.hasNext()) {
+                objectMapper.writeValue(generator, adMapper.toAdDto(iterator.next()));
+                if (++written % AdRepository.STREAM_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return written;
+    }
+
+    private long exportShards(JsonGenerator generator, TransactionTemplate readOnlyTransaction) throws IOException {
+        long written = 0;
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("results");
+        for (String shard : shardRouter.shards()) {
+            Long exported = shardRouter.on(shard,
+                    () -> readOnlyTransaction.execute(status -> exportShard(shard, generator)));
+            written += exported == null ? 0 : exported;
+        }
+        generator.writeEndArray();
+        generator.writeNumberField("count", written);
+        generator.writeEndObject();
+        return written;
+    }
+
+    private long exportShard(String shard, JsonGenerator generator) {
+        long read = 0;
+        long written = 0;
+        try (Stream<AdsDao> ads = adRepository.streamAllOrderByPk()) {
+            Iterator<AdsDao> iterator = ads.iterator();
+            while (iterator.hasNext()) {
+                AdsDao ad = iterator.next();
+                // копии корзины, переносимой на другой шард, выгружаются только с её владельца
+                if (shardRouter.owns(shard, ad.getAuthor().getId())) {
+                    objectMapper.writeValue(generator, adMapper.toAdDto(ad));
+                    written++;
+                }
+                if (++read % AdRepository.STREAM_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return written;
+    }
 
-        AdsDao ad = adMapper.toAdEntity(properties);
-        ad.setAuthor(author);
-        ad.setImage(imagePath);
-        AdsDao savedAd = adRepository.save(ad);
+    /**
+     * Изображение сохраняется до транзакции: чтение загрузки из сети и запись на диск не держат
+     * соединение с БД.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public String saveAdImage(InputStream image) {
+        return imageService.saveImage(image, adImageDir, AD_IMAGE_URL_PREFIX);
+    }
 
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AdDto addAd(String email, CreateOrUpdateAdDto properties, String imagePath) {
+        AdDto savedAd = transactionTemplate.execute(status -> {
+            UsersDao author = currentUserService.getUserByEmail(email);
+            shardRouter.lockBucketForWrite(author.getId());
+            AdsDao ad = adMapper.toAdEntity(properties);
+            ad.setAuthor(author);
+            ad.setImage(imagePath);
+            return adMapper.toAdDto(adRepository.save(ad));
+        });
         log.info("Ad created with id: {} by user: {}", savedAd.getPk(), email);
-        return adMapper.toAdDto(savedAd);
+        return savedAd;
     }
 
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void deleteAdImage(String imagePath) {
+        imageService.deleteImage(imagePath, adImageDir);
+    }
+
+    /**
+     * Объявление читается из ленты одной строкой в её транзакции только для чтения. Архивного объявления
+     * в ленте нет — оно восстанавливается уже после чтения, в своей транзакции на запись
+     * ({@link AdArchiveService#restore(Integer)}), и собирается из сущностей. Запрос не держит два соединения сразу.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ExtendedAdDto getAd(Integer id) {
-        AdsDao ad = getAdById(id);
-        return adMapper.toExtendedAdDto(ad);
+        ExtendedAdDto ad = adFeedService.findById(id)
+                                        .or(() -> adArchiveService.restore(id).map(adMapper::toExtendedAdDto))
+                                        .orElseThrow(() -> new AdNotFoundException("Ad not found with id: " + id));
+        adActivityTracker.touch(id);
+        return ad;
     }
 
+    /**
+     * Комментарии удаляет каскад внешнего ключа в той же операции, что и объявление.
+     * Файл изображения удаляется в фоне после фиксации транзакции ({@link ImagesReleasedEvent}):
+     * при откате удаления объявление не остаётся без картинки.
+     */
     @Override
     public void removeAd(Integer id, String email) {
         AdsDao ad = getAdById(id);
         checkPermissions(ad, email);
-
+        shardRouter.lockBucketForWrite(ad.getAuthor().getId());
+        adRepository.delete(ad);
         if (ad.getImage() != null) {
-            imageService.deleteImage(ad.getImage(), adImageDir);
+            eventPublisher.publishEvent(new ImagesReleasedEvent(adImageDir, List.of(ad.getImage())));
         }
-        adRepository.delete(ad);
         log.info("Ad deleted with id: {} by user: {}", id, email);
     }
 
@@ -97,6 +246,7 @@ public class AdServiceImpl implements AdService {
     public AdDto updateAd(Integer id, String email, CreateOrUpdateAdDto updateAd) {
         AdsDao ad = getAdById(id);
         checkPermissions(ad, email);
+        shardRouter.lockBucketForWrite(ad.getAuthor().getId());
         adMapper.updateAdFromDto(updateAd, ad);
         AdsDao updatedAd = adRepository.save(ad);
         log.info("Ad updated with id: {} by user: {}", id, email);
@@ -111,31 +261,56 @@ public class AdServiceImpl implements AdService {
         List<AdDto> adDtos = ads.stream()
                                 .map(adMapper::toAdDto)
                                 .collect(Collectors.toList());
+        adDtos.addAll(adArchiveService.findByAuthor(author.getId()));
         AdsDto result = new AdsDto();
         result.setCount(adDtos.size());
         result.setResults(adDtos);
         return result;
     }
 
+    /**
+     * Права проверяются в короткой транзакции до загрузки, затем файл сохраняется без соединения с БД,
+     * и только замена ссылки идёт во второй короткой транзакции. Старый файл удаляется после фиксации,
+     * новый — если замена не удалась.
+     */
     @Override
-    public byte[] updateImage(Integer id, String email, MultipartFile image) {
-        AdsDao ad = getAdById(id);
-        checkPermissions(ad, email);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public byte[] updateImage(Integer id, String email, InputStream image) {
+        Integer authorId = transactionTemplate.execute(status -> {
+            AdsDao ad = getAdById(id);
+            checkPermissions(ad, email);
+            return ad.getAuthor().getId();
+        });
 
-        String newImagePath = imageService.saveImage(image, adImageDir, "/ads-images/");
-        if (ad.getImage() != null) {
-            imageService.deleteImage(ad.getImage(), adImageDir);
+        String newImagePath = imageService.saveImage(image, adImageDir, AD_IMAGE_URL_PREFIX);
+        String oldImagePath;
+        try {
+            oldImagePath = transactionTemplate.execute(status -> {
+                // до блокировки строки: перенос корзины ждёт эту транзакцию, держа блокировку корзины
+                shardRouter.lockBucketForWrite(authorId);
+                AdsDao ad = adRepository.findByIdForUpdate(id)
+                                        .orElseThrow(() -> new AdNotFoundException("Ad not found with id: " + id));
+                String previous = ad.getImage();
+                ad.setImage(newImagePath);
+                adRepository.save(ad);
+                return previous;
+            });
+        } catch (RuntimeException e) {
+            imageService.deleteImage(newImagePath, adImageDir);
+            throw e;
         }
-
-        ad.setImage(newImagePath);
-        adRepository.save(ad);
+        imageService.deleteImage(oldImagePath, adImageDir);
         log.info("Image updated for ad id: {} by user: {}", id, email);
 
         return imageService.readImageAsBytes(newImagePath, adImageDir);
     }
 
+    /**
+     * Объявление по id; архивное объявление возвращается в рабочую таблицу ({@link AdArchiveService#restore(Integer)}).
+     */
     private AdsDao getAdById(Integer id) {
         return adRepository.findById(id)
+                           .or(() -> adArchiveService.restore(id))
                            .orElseThrow(() -> new AdNotFoundException("Ad not found with id: " + id));
     }
 
@@ -14,6 +14,7 @@ import ru.skypro.homework.exception.UserAlreadyExistsException;
 import ru.skypro.homework.mapper.UserMapper;
 import ru.skypro.homework.model.UsersDao;
 import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.security.LoginThrottlingService;
 import ru.skypro.homework.service.AuthService;
 
 @Slf4j
@@ -25,9 +26,11 @@ public class AuthServiceImpl implements AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final UserMapper userMapper;
+    private final LoginThrottlingService loginThrottlingService;
 
     @Override
     public void login(String userName, String password) {
+        loginThrottlingService.check(userName, null); // адрес уже проверен LoginThrottlingFilter
         try {
             Authentication auth = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(userName, password)
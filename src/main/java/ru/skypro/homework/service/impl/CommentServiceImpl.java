@@ -1,9 +1,13 @@
 package ru.skypro.homework.service.impl;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.config.MetricsConfig;
 import ru.skypro.homework.dto.auth.Role;
 import ru.skypro.homework.dto.comment.CommentDto;
 import ru.skypro.homework.dto.comment.CommentsDto;
@@ -11,14 +15,17 @@ import ru.skypro.homework.dto.comment.CreateOrUpdateCommentDto;
 import ru.skypro.homework.exception.AdNotFoundException;
 import ru.skypro.homework.exception.CommentNotFoundException;
 import ru.skypro.homework.exception.UnauthorizedAccessException;
+import ru.skypro.homework.maintenance.AdActivityTracker;
 import ru.skypro.homework.mapper.CommentMapper;
 import ru.skypro.homework.model.AdsDao;
 import ru.skypro.homework.model.CommentsDao;
 import ru.skypro.homework.model.UsersDao;
 import ru.skypro.homework.repository.AdRepository;
 import ru.skypro.homework.repository.CommentRepository;
+import ru.skypro.homework.service.AdArchiveService;
 import ru.skypro.homework.service.CommentService;
 import ru.skypro.homework.service.CurrentUserService;
+import ru.skypro.homework.sharding.ShardRouter;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -27,6 +34,7 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 @Transactional
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class CommentServiceImpl implements CommentService {
 
     private final CommentRepository commentRepository;
@@ -34,17 +42,27 @@ public class CommentServiceImpl implements CommentService {
     private final CommentMapper commentMapper;
 
     private final CurrentUserService currentUserService;
+    private final AdArchiveService adArchiveService;
+    private final AdActivityTracker adActivityTracker;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
 
+    /**
+     * Архивное объявление восстанавливается до транзакции только для чтения, в своей транзакции на запись
+     * ({@link AdArchiveService#restore(Integer)}), поэтому запрос не держит два соединения сразу.
+     */
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public CommentsDto getComments(Integer adId) {
-        if (!adRepository.existsById(adId)) {
+        if (!adRepository.existsById(adId) && adArchiveService.restore(adId).isEmpty()) {
             throw new AdNotFoundException("Ad not found with id: " + adId);
         }
-        List<CommentsDao> comments = commentRepository.findByAdPkOrderByCreatedAtDesc(adId);
-        List<CommentDto> commentDtos = comments.stream()
-                                               .map(commentMapper::toCommentDto)
-                                               .collect(Collectors.toList());
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTransaction.setReadOnly(true);
+        List<CommentDto> commentDtos = readOnlyTransaction.execute(status ->
+                commentRepository.findByAdPkOrderByCreatedAtDesc(adId).stream()
+                                 .map(commentMapper::toCommentDto)
+                                 .collect(Collectors.toList()));
         CommentsDto result = new CommentsDto();
         result.setCount(commentDtos.size());
         result.setResults(commentDtos);
@@ -55,11 +73,13 @@ public class CommentServiceImpl implements CommentService {
     public CommentDto addComment(Integer adId, String email, CreateOrUpdateCommentDto createComment) {
         UsersDao author = currentUserService.getUserByEmail(email);
         AdsDao ad = getAdById(adId);
+        shardRouter.lockBucketForWrite(ad.getAuthor().getId());
 
         CommentsDao comment = commentMapper.toCommentEntity(createComment);
         comment.setAuthor(author);
         comment.setAd(ad);
         CommentsDao savedComment = commentRepository.save(comment);
+        adActivityTracker.touch(adId);
 
         log.info("Comment added with id: {} to ad: {} by user: {}", savedComment.getPk(), adId, email);
         return commentMapper.toCommentDto(savedComment);
@@ -69,6 +89,7 @@ public class CommentServiceImpl implements CommentService {
     public void deleteComment(Integer adId, Integer commentId, String email) {
         CommentsDao comment = getCommentByIdAndAdId(commentId, adId);
         checkPermissions(comment, email);
+        shardRouter.lockBucketForWrite(comment.getAd().getAuthor().getId());
         commentRepository.delete(comment);
         log.info("Comment deleted with id: {} from ad: {} by user: {}", commentId, adId, email);
     }
@@ -77,6 +98,7 @@ public class CommentServiceImpl implements CommentService {
     public CommentDto updateComment(Integer adId, Integer commentId, String email, CreateOrUpdateCommentDto updateComment) {
         CommentsDao comment = getCommentByIdAndAdId(commentId, adId);
         checkPermissions(comment, email);
+        shardRouter.lockBucketForWrite(comment.getAd().getAuthor().getId());
         commentMapper.updateCommentFromDto(updateComment, comment);
         CommentsDao updatedComment = commentRepository.save(comment);
         log.info("Comment updated with id: {} in ad: {} by user: {}", commentId, adId, email);
@@ -85,6 +107,7 @@ public class CommentServiceImpl implements CommentService {
 
     private AdsDao getAdById(Integer adId) {
         return adRepository.findById(adId)
+                           .or(() -> adArchiveService.restore(adId))
                            .orElseThrow(() -> new AdNotFoundException("Ad not found with id: " + adId));
     }
 
@@ -1,16 +1,20 @@
 package ru.skypro.homework.service.impl;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.config.MetricsConfig;
 import ru.skypro.homework.dto.user.NewPasswordDto;
 import ru.skypro.homework.dto.user.UpdateUserDto;
 import ru.skypro.homework.dto.user.UserDto;
 import ru.skypro.homework.exception.InvalidCurrentPasswordException;
+import ru.skypro.homework.exception.UserNotFoundException;
 import ru.skypro.homework.mapper.UserMapper;
 import ru.skypro.homework.model.UsersDao;
 import ru.skypro.homework.repository.UserRepository;
@@ -18,10 +22,13 @@ import ru.skypro.homework.service.CurrentUserService;
 import ru.skypro.homework.service.ImageService;
 import ru.skypro.homework.service.UserService;
 
+import java.io.InputStream;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
@@ -29,6 +36,7 @@ public class UserServiceImpl implements UserService {
     private final PasswordEncoder passwordEncoder;
     private final CurrentUserService currentUserService;
     private final ImageService imageService;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${app.image.avatar-dir}")
     private String avatarDir;
@@ -59,14 +67,28 @@ public class UserServiceImpl implements UserService {
         log.info("Password changed for user: {}", email);
     }
 
+    /**
+     * Аватар сохраняется на диск без соединения с БД, затем ссылка меняется в короткой транзакции.
+     * Старый файл удаляется после фиксации, новый — если замена не удалась.
+     */
     @Override
-    public void updateUserImage(String email, MultipartFile image) {
-        UsersDao user = currentUserService.getUserByEmail(email);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void updateUserImage(String email, InputStream image) {
         String newImagePath = imageService.saveImage(image, avatarDir, "/avatars/");
-        if (user.getImage() != null) {
-            imageService.deleteImage(user.getImage(), avatarDir);
+        String oldImagePath;
+        try {
+            oldImagePath = transactionTemplate.execute(status -> {
+                UsersDao user = userRepository.findByEmailForUpdate(email)
+                                              .orElseThrow(() -> new UserNotFoundException("User not found with email: " + email));
+                String previous = user.getImage();
+                user.setImage(newImagePath);
+                userRepository.save(user);
+                return previous;
+            });
+        } catch (RuntimeException e) {
+            imageService.deleteImage(newImagePath, avatarDir);
+            throw e;
         }
-        user.setImage(newImagePath);
-        userRepository.save(user);
+        imageService.deleteImage(oldImagePath, avatarDir);
     }
 }
\ No newline at end of file
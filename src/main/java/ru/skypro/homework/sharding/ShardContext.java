@@ -0,0 +1,37 @@
+package ru.skypro.homework.sharding;
+
+/**
+ * Шард, на который {@link ShardRoutingDataSource} направляет соединения текущего потока.
+ * Без значения используется основной узел.
+ * <p>
+ * Выставляется {@link ShardRouter#on(String, java.util.function.Supplier)} и {@link ShardRoutingInterceptor}
+ * до начала транзакции (или до её первого SQL-выражения): соединение транзакции выбирается один раз.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return предыдущее значение, которое нужно вернуть через {@link #restore(String)}
+     */
+    static String set(String shard) {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    static void restore(String previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
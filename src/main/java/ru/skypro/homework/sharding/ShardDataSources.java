@@ -0,0 +1,98 @@
+package ru.skypro.homework.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Пулы соединений всех шардов по имени, основной узел первым.
+ * <p>
+ * Служебный код (миграции, копирование пользователей, перенос корзин) работает с пулами напрямую, своими
+ * {@link JdbcTemplate} и транзакциями: они не участвуют в транзакциях JPA и не зависят от {@link ShardContext}.
+ * Пулы дополнительных шардов создаются здесь и закрываются вместе с контекстом.
+ */
+public class ShardDataSources implements DisposableBean {
+
+    private final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+    private final Map<String, Integer> indexes = new LinkedHashMap<>();
+    private final Map<String, JdbcTemplate> jdbcTemplates = new LinkedHashMap<>();
+    private final Map<String, TransactionTemplate> transactionTemplates = new LinkedHashMap<>();
+    private final List<HikariDataSource> ownedPools = new ArrayList<>();
+
+    public ShardDataSources(DataSource main) {
+        add(ShardingProperties.MAIN, 0, main);
+    }
+
+    public void addShard(String name, int index, HikariDataSource dataSource) {
+        ownedPools.add(dataSource);
+        add(name, index, dataSource);
+    }
+
+    private void add(String name, int index, DataSource dataSource) {
+        if (dataSources.containsKey(name) || indexes.containsValue(index)) {
+            throw new IllegalStateException("Duplicate shard name or index: " + name + " (" + index + ")");
+        }
+        dataSources.put(name, dataSource);
+        indexes.put(name, index);
+        jdbcTemplates.put(name, new JdbcTemplate(dataSource));
+        transactionTemplates.put(name, new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+    }
+
+    public List<String> names() {
+        return List.copyOf(dataSources.keySet());
+    }
+
+    public Map<String, DataSource> asMap() {
+        return Collections.unmodifiableMap(dataSources);
+    }
+
+    public DataSource dataSource(String shard) {
+        return require(dataSources, shard);
+    }
+
+    public JdbcTemplate jdbc(String shard) {
+        return require(jdbcTemplates, shard);
+    }
+
+    public TransactionTemplate transactions(String shard) {
+        return require(transactionTemplates, shard);
+    }
+
+    public int index(String shard) {
+        return require(indexes, shard);
+    }
+
+    public Optional<String> byIndex(int index) {
+        return indexes.entrySet().stream()
+                      .filter(entry -> entry.getValue() == index)
+                      .map(Map.Entry::getKey)
+                      .findFirst();
+    }
+
+    public boolean contains(String shard) {
+        return dataSources.containsKey(shard);
+    }
+
+    @Override
+    public void destroy() {
+        ownedPools.forEach(HikariDataSource::close);
+    }
+
+    private static <T> T require(Map<String, T> values, String shard) {
+        T value = values.get(shard);
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown shard: " + shard);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.skypro.homework.sharding;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Каталог корзин: на каком шарде лежат объявления и комментарии авторов корзины {@code user_id % buckets}.
+ * <p>
+ * Хранится в таблице {@code shard_buckets} основного узла (миграция V8); корзины без строки — на основном узле.
+ * Каждый экземпляр держит копию в памяти и перечитывает её раз в {@code app.sharding.directory-refresh-interval-ms},
+ * поэтому {@link ShardRebalancer} после каждого изменения ждёт {@code app.sharding.settle-time}.
+ * Пока корзина переносится ({@code moving}), запись в её объявления отклоняется.
+ */
+@Slf4j
+public class ShardDirectory {
+
+    private final JdbcTemplate main;
+
+    private final int buckets;
+
+    private volatile Map<Integer, Placement> placements = Map.of();
+
+    public ShardDirectory(JdbcTemplate main, int buckets) {
+        this.main = main;
+        this.buckets = buckets;
+    }
+
+    public int bucketOf(int userId) {
+        return Math.floorMod(userId, buckets);
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    public String shardOf(int userId) {
+        return placement(bucketOf(userId)).shard;
+    }
+
+    public boolean isMoving(int userId) {
+        return placement(bucketOf(userId)).moving;
+    }
+
+    public String shardOfBucket(int bucket) {
+        return placement(bucket).shard;
+    }
+
+    /**
+     * Корзины, которые переносились или переносятся, по номеру; остальные лежат на основном узле.
+     */
+    public Map<Integer, Placement> placements() {
+        return new TreeMap<>(placements);
+    }
+
+    /**
+     * Сохраняет размещение корзины на основном узле и сразу обновляет копию этого экземпляра.
+     */
+    void save(int bucket, String shard, boolean moving) {
+        main.update("INSERT INTO shard_buckets (bucket, shard, moving) VALUES (?, ?, ?) "
+                + "ON CONFLICT (bucket) DO UPDATE SET shard = EXCLUDED.shard, moving = EXCLUDED.moving",
+                bucket, shard, moving);
+        refresh();
+    }
+
+    /**
+     * Отмечает корзину переносимой. Условное обновление строки не даёт двум экземплярам переносить корзину одновременно.
+     *
+     * @return шард, на котором корзина лежит сейчас
+     * @throws IllegalStateException если корзина уже переносится
+     */
+    String beginMove(int bucket) {
+        main.update("INSERT INTO shard_buckets (bucket, shard) VALUES (?, ?) ON CONFLICT (bucket) DO NOTHING",
+                bucket, ShardingProperties.MAIN);
+        List<String> source = main.queryForList(
+                "UPDATE shard_buckets SET moving = true WHERE bucket = ? AND NOT moving RETURNING shard",
+                String.class, bucket);
+        refresh();
+        if (source.isEmpty()) {
+            throw new IllegalStateException("Bucket " + bucket + " is already being moved");
+        }
+        return source.get(0);
+    }
+
+    @Scheduled(fixedDelayString = "${app.sharding.directory-refresh-interval-ms:5000}")
+    public void refresh() {
+        try {
+            Map<Integer, Placement> loaded = new TreeMap<>();
+            main.query("SELECT bucket, shard, moving FROM shard_buckets",
+                    rs -> {
+                        loaded.put(rs.getInt("bucket"), new Placement(rs.getString("shard"), rs.getBoolean("moving")));
+                    });
+            placements = Map.copyOf(loaded);
+        } catch (DataAccessException e) {
+            log.warn("Failed to refresh shard directory, keeping {} known placements", placements.size(), e);
+        }
+    }
+
+    private Placement placement(int bucket) {
+        return placements.getOrDefault(bucket, Placement.MAIN);
+    }
+
+    @Value
+    public static class Placement {
+
+        static final Placement MAIN = new Placement(ShardingProperties.MAIN, false);
+
+        String shard;
+
+        boolean moving;
+    }
+}
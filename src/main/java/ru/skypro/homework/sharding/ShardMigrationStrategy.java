@@ -0,0 +1,98 @@
+package ru.skypro.homework.sharding;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Миграции при шардировании: сначала основной узел, затем каждый шард с той же конфигурацией Flyway.
+ * <p>
+ * После миграций последовательности id объявлений и комментариев каждого узла переводятся на шаг
+ * {@code app.sharding.max-shards} с остатком, равным индексу узла, — начиная выше всех id, уже выданных
+ * любым узлом. Так id уникальны во всём кластере и переносятся между шардами без перенумерации, а по остатку
+ * id видно, на каком узле объявление создано. Затем сверяются копии пользователей ({@link ShardUserReplicator})
+ * и загружается каталог корзин.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ShardMigrationStrategy implements FlywayMigrationStrategy {
+
+    private static final List<String> SEQUENCE_TABLES = List.of("ads", "comments");
+
+    private final ShardDataSources dataSources;
+    private final ShardUserReplicator userReplicator;
+    private final ShardDirectory directory;
+    private final int maxShards;
+
+    @Override
+    public void migrate(Flyway flyway) {
+        flyway.migrate();
+        for (String shard : dataSources.names()) {
+            if (!ShardingProperties.MAIN.equals(shard)) {
+                Flyway.configure(flyway.getConfiguration().getClassLoader())
+                      .configuration(flyway.getConfiguration())
+                      .dataSource(dataSources.dataSource(shard))
+                      .load()
+                      .migrate();
+            }
+        }
+        alignSequences();
+        userReplicator.reconcile();
+        directory.refresh();
+    }
+
+    /**
+     * Выравнивает последовательности под advisory-блокировкой основного узла: экземпляры, стартующие одновременно,
+     * делают это по очереди, и второй застаёт уже выровненные последовательности.
+     *
+     * @throws IllegalStateException если последовательность уже выровнена под другой индекс узла
+     */
+    private void alignSequences() {
+        dataSources.transactions(ShardingProperties.MAIN).executeWithoutResult(status -> {
+            dataSources.jdbc(ShardingProperties.MAIN).execute("SELECT pg_advisory_xact_lock(hashtext('shard_sequences'))");
+            for (String table : SEQUENCE_TABLES) {
+                alignSequence(table);
+            }
+        });
+    }
+
+    private void alignSequence(String table) {
+        long floor = 0;
+        for (String shard : dataSources.names()) {
+            floor = Math.max(floor, sequenceState(shard, table).get("last_value"));
+        }
+        for (String shard : dataSources.names()) {
+            int index = dataSources.index(shard);
+            Map<String, Long> state = sequenceState(shard, table);
+            if (state.get("increment_by") == maxShards) {
+                if (Math.floorMod(state.get("last_value") - index, maxShards) != 0) {
+                    throw new IllegalStateException("Sequence of " + table + " on shard " + shard
+                            + " issues ids for another shard index, expected remainder " + index);
+                }
+                continue;
+            }
+            long start = floor + Math.floorMod(index - floor, maxShards);
+            JdbcTemplate jdbc = dataSources.jdbc(shard);
+            jdbc.execute("ALTER SEQUENCE " + sequence(jdbc, table) + " INCREMENT BY " + maxShards);
+            jdbc.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'pk'), ?, true)", Long.class, table, start);
+            log.info("Sequence of {} on shard {} now issues ids {} + {}k", table, shard, start + maxShards, maxShards);
+        }
+    }
+
+    private Map<String, Long> sequenceState(String shard, String table) {
+        JdbcTemplate jdbc = dataSources.jdbc(shard);
+        String sequence = sequence(jdbc, table);
+        return jdbc.queryForObject("SELECT s.last_value, q.seqincrement FROM " + sequence + " s, pg_sequence q "
+                        + "WHERE q.seqrelid = CAST(? AS regclass)",
+                (rs, rowNum) -> Map.of("last_value", rs.getLong(1), "increment_by", rs.getLong(2)), sequence);
+    }
+
+    private static String sequence(JdbcTemplate jdbc, String table) {
+        return jdbc.queryForObject("SELECT pg_get_serial_sequence(?, 'pk')", String.class, table);
+    }
+}
@@ -0,0 +1,251 @@
+package ru.skypro.homework.sharding;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Перенос корзины (объявлений авторов {@code user_id % buckets = bucket} вместе с комментариями и архивом)
+ * на другой шард без остановки приложения.
+ * <ol>
+ *   <li>Корзина отмечается переносимой: запись в её объявления отклоняется с 503, чтение идёт с исходного шарда.</li>
+ *   <li>На исходном шарде фиксируется запрет записи в корзину ({@code shard_bucket_fences}, миграция V10).
+ *       Каталог в памяти экземпляров мог устареть, а запрос выбирает шард до транзакции, поэтому решает запрет:
+ *       каждая транзакция записи проверяет его под разделяемой блокировкой корзины
+ *       ({@link ShardRouter#lockBucketForWrite(int)}), а запрет добавляется под эксклюзивной — после всех
+ *       транзакций, уже прошедших проверку.</li>
+ *   <li>Строки корзины блокируются на исходном шарде и копируются на целевой одной транзакцией; запрет на целевом
+ *       шарде (от прошлого переноса корзины с него) снимается.</li>
+ *   <li>Каталог переключается на целевой шард; пока все экземпляры этого не увидят, строки есть на обоих шардах,
+ *       а запросы ко всем шардам берут их только с владельца по каталогу.</li>
+ *   <li>Строки удаляются с исходного шарда, запись снова разрешается.</li>
+ * </ol>
+ * После каждого изменения каталога выдерживается {@code app.sharding.settle-time}. Запрет на исходном шарде остаётся
+ * после переноса: экземпляр, ещё не перечитавший каталог, получит 503, а не запишет строку, которую никто не увидит.
+ * Ошибка до переключения возвращает корзину на исходный шард и снимает запрет; ошибка удаления после него оставляет
+ * на исходном шарде копии, которые не видны запросам и удаляются при следующем переносе корзины обратно.
+ * Перенос корзины на её же шард снимает запрет, оставшийся там после сбоя.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ShardRebalancer {
+
+    private static final String AD_COLUMNS = "pk, title, description, price, image, user_id, last_activity_at";
+    private static final String ARCHIVED_AD_COLUMNS = AD_COLUMNS + ", archived_at";
+    private static final String COMMENT_COLUMNS = "pk, text, created_at, user_id, ad_id";
+
+    private final ShardDataSources dataSources;
+    private final ShardDirectory directory;
+    private final Duration settleTime;
+
+    /**
+     * Переносит корзину на шард {@code target}.
+     *
+     * @throws IllegalArgumentException если корзины или шарда нет
+     * @throws IllegalStateException    если корзина уже переносится
+     */
+    public MoveResult moveBucket(int bucket, String target) {
+        if (bucket < 0 || bucket >= directory.getBuckets()) {
+            throw new IllegalArgumentException("Bucket must be between 0 and " + (directory.getBuckets() - 1));
+        }
+        if (!dataSources.contains(target)) {
+            throw new IllegalArgumentException("Unknown shard: " + target);
+        }
+        String source = directory.beginMove(bucket);
+        if (source.equals(target)) {
+            unfence(dataSources.jdbc(source), bucket);
+            directory.save(bucket, source, false);
+            return new MoveResult(bucket, source, target, 0, 0, 0, 0);
+        }
+        log.info("Moving bucket {} from shard {} to shard {}", bucket, source, target);
+        Copy copy;
+        try {
+            settle();
+            fence(source, bucket);
+            copy = copy(bucket, source, target);
+        } catch (RuntimeException e) {
+            log.warn("Moving bucket {} to shard {} failed, it stays on shard {}", bucket, target, source, e);
+            try {
+                deleteBucket(dataSources.jdbc(target), bucket);
+            } catch (DataAccessException cleanup) {
+                log.warn("Failed to clean up partial copy of bucket {} on shard {}", bucket, target, cleanup);
+            }
+            try {
+                unfence(dataSources.jdbc(source), bucket);
+            } catch (DataAccessException cleanup) {
+                log.warn("Failed to lift write fence of bucket {} on shard {}, writes stay rejected until the bucket "
+                        + "is moved again", bucket, source, cleanup);
+            }
+            directory.save(bucket, source, false);
+            throw e;
+        }
+        directory.save(bucket, target, true);
+        try {
+            settle();
+            dataSources.transactions(source).executeWithoutResult(status -> copy.deleteFrom(dataSources.jdbc(source)));
+        } catch (RuntimeException e) {
+            log.warn("Bucket {} moved to shard {}, but its rows were not deleted from shard {}", bucket, target, source, e);
+        } finally {
+            directory.save(bucket, target, false);
+        }
+        sealPartitions(target);
+        MoveResult result = new MoveResult(bucket, source, target, copy.ads.size(), copy.comments.size(),
+                copy.archivedAds.size(), copy.archivedComments.size());
+        log.info("Moved bucket {}: {}", bucket, result);
+        return result;
+    }
+
+    /**
+     * Запрещает запись в корзину на шарде ({@code shard_bucket_fence}) отдельной транзакцией: транзакции записи,
+     * начатые после её фиксации, отклоняются с 503 сразу, а не ждут конца копирования.
+     */
+    private void fence(String shard, int bucket) {
+        dataSources.transactions(shard).executeWithoutResult(status ->
+                dataSources.jdbc(shard).queryForObject("SELECT shard_bucket_fence(?)", Boolean.class, bucket));
+    }
+
+    private static void unfence(JdbcTemplate jdbc, int bucket) {
+        jdbc.update("DELETE FROM shard_bucket_fences WHERE bucket = ?", bucket);
+    }
+
+    /**
+     * Копирует строки корзины на целевой шард и снимает там запрет записи. Запрет на исходном шарде уже зафиксирован,
+     * поэтому снимок содержит все записи в корзину, а новых не будет. Объявления дополнительно блокируются
+     * ({@code FOR UPDATE}): архивирование, начатое до запрета, успевает либо попасть в копию, либо дождаться её.
+     */
+    private Copy copy(int bucket, String source, String target) {
+        JdbcTemplate from = dataSources.jdbc(source);
+        JdbcTemplate to = dataSources.jdbc(target);
+        int buckets = directory.getBuckets();
+        return dataSources.transactions(source).execute(sourceStatus -> {
+            Copy copy = new Copy(
+                    from.query("SELECT " + AD_COLUMNS + " FROM ads WHERE user_id % ? = ? ORDER BY pk FOR UPDATE",
+                            row(7), buckets, bucket),
+                    from.query("SELECT " + prefixed("c", COMMENT_COLUMNS) + " FROM comments c "
+                            + "JOIN ads a ON a.pk = c.ad_id WHERE a.user_id % ? = ?", row(5), buckets, bucket),
+                    from.query("SELECT " + ARCHIVED_AD_COLUMNS + " FROM ads_archive WHERE user_id % ? = ? "
+                            + "ORDER BY pk FOR UPDATE", row(8), buckets, bucket),
+                    from.query("SELECT " + prefixed("c", COMMENT_COLUMNS) + " FROM comments_archive c "
+                            + "JOIN ads_archive a ON a.pk = c.ad_id WHERE a.user_id % ? = ?", row(5), buckets, bucket));
+            unsealPartitions(to, copy);
+            dataSources.transactions(target).executeWithoutResult(targetStatus -> {
+                // копии и запрет записи, оставшиеся от прошлого переноса корзины с этого шарда
+                deleteBucket(to, bucket);
+                unfence(to, bucket);
+                insert(to, "ads", AD_COLUMNS, copy.ads);
+                insert(to, "comments", COMMENT_COLUMNS, copy.comments);
+                insert(to, "ads_archive", ARCHIVED_AD_COLUMNS, copy.archivedAds);
+                insert(to, "comments_archive", COMMENT_COLUMNS, copy.archivedComments);
+            });
+            return copy;
+        });
+    }
+
+    /**
+     * Снимает ограничения на диапазон {@code pk} с закрытых секций {@code comments} целевого шарда, в месяцы которых
+     * попадают переносимые комментарии: их id выданы другим узлом и в эти диапазоны не входят.
+     * Ограничения вернёт {@code comments_seal_partitions} после переноса.
+     */
+    private void unsealPartitions(JdbcTemplate to, Copy copy) {
+        List<Timestamp> createdAt = copy.comments.stream()
+                                                 .map(comment -> (Timestamp) comment[2])
+                                                 .collect(Collectors.toList());
+        if (createdAt.isEmpty()) {
+            return;
+        }
+        to.queryForObject("SELECT comments_unseal_partitions(?, ?)", Integer.class,
+                createdAt.stream().min(Timestamp::compareTo).orElseThrow(),
+                createdAt.stream().max(Timestamp::compareTo).orElseThrow());
+    }
+
+    private void sealPartitions(String shard) {
+        try {
+            JdbcTemplate jdbc = dataSources.jdbc(shard);
+            jdbc.queryForObject("SELECT comments_seal_partitions()", Integer.class);
+            jdbc.queryForObject("SELECT comments_validate_pk_ranges()", Integer.class);
+        } catch (DataAccessException e) {
+            log.warn("Failed to seal comment partitions on shard {}, partition maintenance will retry", shard, e);
+        }
+    }
+
+    /**
+     * Комментарии и архивные комментарии удаляет каскад внешних ключей.
+     */
+    private void deleteBucket(JdbcTemplate jdbc, int bucket) {
+        jdbc.update("DELETE FROM ads WHERE user_id % ? = ?", directory.getBuckets(), bucket);
+        jdbc.update("DELETE FROM ads_archive WHERE user_id % ? = ?", directory.getBuckets(), bucket);
+    }
+
+    private static void insert(JdbcTemplate jdbc, String table, String columns, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String placeholders = columns.replaceAll("[^,]+", "?");
+        jdbc.batchUpdate("INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders + ")", rows);
+    }
+
+    private static String prefixed(String alias, String columns) {
+        return alias + "." + columns.replace(", ", ", " + alias + ".");
+    }
+
+    private static RowMapper<Object[]> row(int columns) {
+        return (rs, rowNum) -> {
+            Object[] row = new Object[columns];
+            for (int i = 0; i < columns; i++) {
+                row[i] = rs.getObject(i + 1);
+            }
+            return row;
+        };
+    }
+
+    private void settle() {
+        try {
+            Thread.sleep(settleTime.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shard directory to settle", e);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Copy {
+
+        private final List<Object[]> ads;
+        private final List<Object[]> comments;
+        private final List<Object[]> archivedAds;
+        private final List<Object[]> archivedComments;
+
+        /**
+         * Удаляет скопированные строки по id: запись в корзину на исходном шарде запрещена до копирования,
+         * поэтому новых строк там нет.
+         */
+        void deleteFrom(JdbcTemplate jdbc) {
+            jdbc.update("DELETE FROM ads WHERE pk = ANY(?)", (Object) ids(ads));
+            jdbc.update("DELETE FROM ads_archive WHERE pk = ANY(?)", (Object) ids(archivedAds));
+        }
+
+        private static Integer[] ids(List<Object[]> rows) {
+            return rows.stream().map(row -> (Integer) row[0]).toArray(Integer[]::new);
+        }
+    }
+
+    @Value
+    public static class MoveResult {
+
+        int bucket;
+        String source;
+        String target;
+        int ads;
+        int comments;
+        int archivedAds;
+        int archivedComments;
+    }
+}
@@ -0,0 +1,254 @@
+package ru.skypro.homework.sharding;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import ru.skypro.homework.exception.ShardMovingException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Выбор шарда для объявлений и комментариев и запросы ко всем шардам сразу.
+ * <p>
+ * Без {@code app.sharding.enabled} шард один — основной узел: {@link #on(String, Supplier)} просто выполняет работу,
+ * а {@link #gather(Supplier)} выполняет запрос в текущем потоке и текущей транзакции.
+ * С шардированием объявление лежит на шарде корзины своего автора ({@link ShardDirectory}); шард объявления
+ * по id находится запросом автора — сначала на узле, который выдал id, затем на остальных.
+ */
+@Component
+public class ShardRouter implements DisposableBean {
+
+    static final String AD_LOCATION = "SELECT user_id, false AS archived FROM ads WHERE pk = ? "
+            + "UNION ALL SELECT user_id, true FROM ads_archive WHERE pk = ? LIMIT 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ShardDataSources dataSources;
+
+    private final ShardDirectory directory;
+
+    private final int maxShards;
+
+    private final long retryAfterSeconds;
+
+    private final ExecutorService executor;
+
+    public ShardRouter(JdbcTemplate jdbcTemplate, ShardingProperties properties,
+                       ObjectProvider<ShardDataSources> dataSources, ObjectProvider<ShardDirectory> directory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSources = dataSources.getIfAvailable();
+        this.directory = directory.getIfAvailable();
+        this.maxShards = properties.getMaxShards();
+        this.retryAfterSeconds = Math.max(1, properties.getSettleTime().toSeconds());
+        this.executor = this.dataSources == null ? null
+                : Executors.newFixedThreadPool(properties.getGatherThreads(), new CustomizableThreadFactory("shard-gather-"));
+    }
+
+    public boolean isSharded() {
+        return dataSources != null;
+    }
+
+    public List<String> shards() {
+        return isSharded() ? dataSources.names() : List.of(ShardingProperties.MAIN);
+    }
+
+    /**
+     * Выполняет работу с соединениями шарда {@code shard}. Транзакция должна начинаться внутри
+     * (или не выполнить ни одного SQL-выражения до вызова): соединение уже начатой транзакции не переключается.
+     */
+    public <T> T on(String shard, Supplier<T> work) {
+        String previous = ShardContext.set(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    public void run(String shard, Runnable work) {
+        on(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Шард объявлений автора.
+     *
+     * @param write для записи: пока корзина автора переносится, бросает {@link ShardMovingException}
+     */
+    public String shardOfUser(int userId, boolean write) {
+        if (!isSharded()) {
+            return ShardingProperties.MAIN;
+        }
+        if (write && directory.isMoving(userId)) {
+            throw new ShardMovingException("Ads of this user are being moved to another shard, retry later",
+                    retryAfterSeconds);
+        }
+        return directory.shardOf(userId);
+    }
+
+    /**
+     * Проверяет внутри транзакции записи, что шард текущего соединения владеет корзиной автора, и до конца транзакции
+     * не даёт перенести её с этого шарда ({@code shard_bucket_lock_for_write}, миграция V10). Вызывается до изменения
+     * строк корзины: шард запроса выбран до транзакции по каталогу, который мог устареть, а перенос, начатый позже,
+     * копирует строки только после фиксации этой транзакции. Без шардирования ничего не делает.
+     *
+     * @throws ShardMovingException  если корзина переносится с этого шарда или уже перенесена
+     * @throws IllegalStateException если транзакции нет: блокировка снялась бы сразу
+     */
+    public void lockBucketForWrite(int userId) {
+        if (!isSharded()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Bucket lock must be taken inside a write transaction");
+        }
+        Boolean writable = jdbcTemplate.queryForObject("SELECT shard_bucket_lock_for_write(?)", Boolean.class,
+                directory.bucketOf(userId));
+        if (!Boolean.TRUE.equals(writable)) {
+            throw new ShardMovingException("Ads of this user are being moved to another shard, retry later",
+                    retryAfterSeconds);
+        }
+    }
+
+    /**
+     * Число корзин; без шардирования — одна.
+     */
+    public int buckets() {
+        return isSharded() ? directory.getBuckets() : 1;
+    }
+
+    /**
+     * Шард объявления (рабочего или архивного). Вызывается вне транзакции.
+     * Если объявления нет ни на одном шарде, возвращает узел, выдавший id, — там его и не найдут.
+     *
+     * @param write для записи: пока корзина автора переносится, бросает {@link ShardMovingException};
+     *              обращение к архивному объявлению — тоже запись, оно возвращается из архива
+     */
+    public String shardOfAd(int adId, boolean write) {
+        if (!isSharded()) {
+            return ShardingProperties.MAIN;
+        }
+        String issuer = dataSources.byIndex(Math.floorMod(adId, maxShards)).orElse(ShardingProperties.MAIN);
+        List<String> probes = new ArrayList<>();
+        probes.add(issuer);
+        shards().stream().filter(shard -> !shard.equals(issuer)).forEach(probes::add);
+        for (String shard : probes) {
+            List<Map<String, Object>> found = on(shard, () -> jdbcTemplate.queryForList(AD_LOCATION, adId, adId));
+            if (!found.isEmpty()) {
+                // копия на другом шарде могла остаться от переноса корзины: решает каталог, а не место находки
+                Map<String, Object> ad = found.get(0);
+                return shardOfUser((Integer) ad.get("user_id"), write || (Boolean) ad.get("archived"));
+            }
+        }
+        return issuer;
+    }
+
+    /**
+     * Принадлежит ли корзина автора шарду {@code shard}. Во время переноса корзина есть на двух шардах,
+     * а запросы ко всем шардам берут строки только с её владельца.
+     */
+    public boolean owns(String shard, int userId) {
+        return !isSharded() || directory.shardOf(userId).equals(shard);
+    }
+
+    /**
+     * Выполняет запрос на каждом шарде и объединяет результаты.
+     * С несколькими шардами запросы идут параллельно, каждый в своём потоке (и своей транзакции, если она нужна запросу);
+     * недоступность любого шарда — ошибка всего запроса.
+     */
+    public <T> List<T> gather(Supplier<List<T>> query) {
+        return gatherByShard(shard -> query.get()).stream()
+                                                  .flatMap(List::stream)
+                                                  .collect(Collectors.toList());
+    }
+
+    /**
+     * Как {@link #gather(Supplier)} для запросов, отсортированных по {@code order}: строки берутся только с шарда,
+     * владеющего их автором, и сливаются в общий порядок без пересортировки.
+     */
+    public <T> List<T> gatherSorted(Supplier<List<T>> query, Function<T, Integer> author, Comparator<? super T> order) {
+        if (!isSharded()) {
+            return query.get();
+        }
+        List<List<T>> results = gatherByShard(shard -> query.get().stream()
+                                                           .filter(row -> owns(shard, author.apply(row)))
+                                                           .collect(Collectors.toList()));
+        return merge(results, order);
+    }
+
+    private <T> List<List<T>> gatherByShard(Function<String, List<T>> query) {
+        if (!isSharded()) {
+            return List.of(query.apply(ShardingProperties.MAIN));
+        }
+        // отсек пула (ConnectionBulkheads) и метрики удержания соединения выбираются по запросу, а не по потоку
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        List<CompletableFuture<List<T>>> futures = shards().stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> onBehalfOf(request, () -> on(shard, () -> query.apply(shard))),
+                        executor))
+                .collect(Collectors.toList());
+        try {
+            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static <T> T onBehalfOf(RequestAttributes request, Supplier<T> work) {
+        RequestContextHolder.setRequestAttributes(request);
+        try {
+            return work.get();
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order) {
+        int[] positions = new int[sorted.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+                (a, b) -> order.compare(sorted.get(a).get(positions[a]), sorted.get(b).get(positions[b])));
+        int total = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            total += sorted.get(i).size();
+            if (!sorted.get(i).isEmpty()) {
+                heads.add(i);
+            }
+        }
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int i = heads.poll();
+            merged.add(sorted.get(i).get(positions[i]++));
+            if (positions[i] < sorted.get(i).size()) {
+                heads.add(i);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
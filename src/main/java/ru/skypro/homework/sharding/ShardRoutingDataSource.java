@@ -0,0 +1,29 @@
+package ru.skypro.homework.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Выдаёт соединение пула шарда из {@link ShardContext}, без него — основного узла.
+ * <p>
+ * Как и маршрутизация на реплику, оборачивается в {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * пул выбирается при первом SQL-выражении транзакции, а не при её начале. Неизвестное имя шарда — ошибка,
+ * а не тихий откат на основной узел.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public ShardRoutingDataSource(Map<String, DataSource> shards) {
+        setTargetDataSources(new HashMap<>(shards));
+        setDefaultTargetDataSource(shards.get(ShardingProperties.MAIN));
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String shard = ShardContext.current();
+        return shard == null ? ShardingProperties.MAIN : shard;
+    }
+}
@@ -0,0 +1,83 @@
+package ru.skypro.homework.sharding;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.skypro.homework.exception.UserNotFoundException;
+import ru.skypro.homework.repository.UserRepository;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Направляет запрос к объявлению (и его комментариям) на шард объявления, а запросы к своим объявлениям
+ * ({@code GET /ads/me}, {@code POST /ads}) — на шард текущего пользователя.
+ * <p>
+ * Шард выбирается до вызова контроллера и транзакции сервиса: соединение, взятое транзакцией, уже не переключается.
+ * Выбор идёт по каталогу в памяти, который мог устареть (или корзину начали переносить, пока запрос загружал файл),
+ * поэтому запись ещё раз проверяет владение корзиной внутри своей транзакции ({@link ShardRouter#lockBucketForWrite(int)}).
+ * Остальные запросы работают с основным узлом, а общая лента сама обходит все шарды ({@link ShardRouter#gatherSorted}).
+ */
+@RequiredArgsConstructor
+public class ShardRoutingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String AD_PATH_PREFIX = "/ads/{";
+
+    private final ShardRouter shardRouter;
+    private final UserRepository userRepository;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String shard = resolve(request);
+        if (shard != null) {
+            ShardContext.set(shard);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ShardContext.restore(null);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ShardContext.restore(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private String resolve(HttpServletRequest request) {
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null) {
+            return null;
+        }
+        boolean write = !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod());
+        if (pattern.startsWith(AD_PATH_PREFIX)) {
+            Map<String, String> variables =
+                    (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+            String adId = variables.containsKey("adId") ? variables.get("adId") : variables.get("id");
+            try {
+                return shardRouter.shardOfAd(Integer.parseInt(adId), write);
+            } catch (NumberFormatException e) {
+                // ответ 400 даст преобразование параметра в контроллере
+                return null;
+            }
+        }
+        if (pattern.equals("/ads/me") || (pattern.equals("/ads") && write)) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication == null) {
+                return null;
+            }
+            Integer userId = userRepository.findByEmail(authentication.getName())
+                                           .orElseThrow(() -> new UserNotFoundException("User not found: "
+                                                   + authentication.getName()))
+                                           .getId();
+            return shardRouter.shardOfUser(userId, write);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,261 @@
+package ru.skypro.homework.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.skypro.homework.service.UserChangedEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Копирует пользователей с основного узла на остальные шарды.
+ * <p>
+ * Внешние ключи {@code ads.user_id} и {@code comments.user_id} не пересекают узлы, поэтому каждый шард держит
+ * полную копию {@code users}: объявление любого автора может лежать на нём, а комментировать его может кто угодно.
+ * Копируется строка целиком — JPA читает пользователя на том шарде, куда направлен запрос, а кэш второго уровня общий.
+ * Удаление пользователя на шарде каскадно удаляет его объявления и комментарии там.
+ * <p>
+ * Изменение копируется после фиксации на основном узле, на каждый шард в его собственном потоке: недоступный шард
+ * не задерживает другие. Запрос ждёт копирования не дольше {@code app.sharding.user-replication-timeout} и только
+ * на шардах без очереди повторов — так новый пользователь обычно уже есть на шарде, когда создаёт там объявление,
+ * а упавший шард не держит запросы. Не скопированные id остаются в очереди шарда и повторяются каждые
+ * {@code app.sharding.user-retry-interval-ms}; очередь живёт в памяти и ограничена {@value #MAX_PENDING} id.
+ * Изменения, потерянные при переполнении очереди или остановке экземпляра, находит сверка таблиц целиком
+ * ({@link #reconcile()}) — при старте и каждые {@code app.sharding.user-reconcile-interval-ms}.
+ */
+@Slf4j
+public class ShardUserReplicator implements DisposableBean {
+
+    private static final String USER_COLUMNS = "id, email, password, first_name, last_name, phone, role, image";
+
+    private static final String UPSERT = "INSERT INTO users (" + USER_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (id) DO UPDATE SET email = EXCLUDED.email, password = EXCLUDED.password, "
+            + "first_name = EXCLUDED.first_name, last_name = EXCLUDED.last_name, phone = EXCLUDED.phone, "
+            + "role = EXCLUDED.role, image = EXCLUDED.image";
+
+    private static final String CHECKSUM = "SELECT count(*) || ':' || COALESCE(sum(hashtext(u::text)::BIGINT), 0) "
+            + "FROM (SELECT " + USER_COLUMNS + " FROM users) u";
+
+    private static final int BATCH_SIZE = 500;
+
+    static final int MAX_PENDING = 10_000;
+
+    private static final RowMapper<Object[]> ROW = (rs, rowNum) -> {
+        Object[] row = new Object[8];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = rs.getObject(i + 1);
+        }
+        return row;
+    };
+
+    private final ShardDataSources dataSources;
+
+    private final Duration timeout;
+
+    private final Map<String, ExecutorService> executors = new LinkedHashMap<>();
+
+    private final Map<String, Set<Integer>> pending = new LinkedHashMap<>();
+
+    public ShardUserReplicator(ShardDataSources dataSources, Duration timeout) {
+        this.dataSources = dataSources;
+        this.timeout = timeout;
+        for (String shard : extraShards()) {
+            executors.put(shard, Executors.newSingleThreadExecutor(
+                    new CustomizableThreadFactory("shard-user-replication-" + shard + "-")));
+            pending.put(shard, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        replicate(event.getUserId());
+    }
+
+    /**
+     * Ставит пользователя в очередь каждого шарда и ждёт копирования на шардах, очередь которых была пуста.
+     */
+    public void replicate(Integer userId) {
+        List<CompletableFuture<Void>> awaited = new ArrayList<>();
+        for (String shard : extraShards()) {
+            Set<Integer> queue = pending.get(shard);
+            boolean healthy = queue.isEmpty();
+            if (queue.size() >= MAX_PENDING) {
+                queue.clear();
+                log.warn("User replication queue of shard {} overflowed, shard will be reconciled", shard);
+            }
+            queue.add(userId);
+            CompletableFuture<Void> drained = CompletableFuture.runAsync(() -> drain(shard), executors.get(shard));
+            if (healthy) {
+                awaited.add(drained);
+            }
+        }
+        try {
+            CompletableFuture.allOf(awaited.toArray(new CompletableFuture[0])).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("User {} is still being replicated after {}", userId, timeout);
+        } catch (ExecutionException e) {
+            log.warn("User replication task failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Число пользователей, ожидающих копирования на шард.
+     */
+    public int pending(String shard) {
+        return pending.getOrDefault(shard, Set.of()).size();
+    }
+
+    /**
+     * Повторяет копирование пользователей, не скопированных из-за ошибки.
+     */
+    @Scheduled(fixedDelayString = "${app.sharding.user-retry-interval-ms:10000}")
+    public void retryPending() {
+        pending.forEach((shard, queue) -> {
+            if (!queue.isEmpty()) {
+                executors.get(shard).execute(() -> drain(shard));
+            }
+        });
+    }
+
+    /**
+     * Сверяет {@code users} шардов с основным узлом в потоках шардов: недоступный шард не держит планировщик.
+     */
+    @Scheduled(initialDelayString = "${app.sharding.user-reconcile-interval-ms:600000}",
+            fixedDelayString = "${app.sharding.user-reconcile-interval-ms:600000}")
+    public void reconcileInBackground() {
+        for (String shard : extraShards()) {
+            executors.get(shard).execute(() -> {
+                try {
+                    reconcile(shard, main().queryForObject(CHECKSUM, String.class));
+                } catch (DataAccessException e) {
+                    log.warn("Failed to reconcile users on shard {}, will retry", shard, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Приводит {@code users} каждого шарда к основному узлу, если они различаются (по числу строк и хешу содержимого):
+     * удаляет отсутствующих на основном узле и перезаписывает остальных пачками по id.
+     */
+    public void reconcile() {
+        String expected = main().queryForObject(CHECKSUM, String.class);
+        for (String shard : extraShards()) {
+            reconcile(shard, expected);
+        }
+    }
+
+    /**
+     * Копирует пользователей из очереди шарда по одному. Id убирается из очереди до чтения строки: изменение,
+     * зафиксированное во время копирования, вернёт его в очередь и будет скопировано следующим проходом.
+     * После первой ошибки проход прекращается до следующего повтора.
+     */
+    private void drain(String shard) {
+        Set<Integer> queue = pending.get(shard);
+        for (Integer userId : new ArrayList<>(queue)) {
+            if (!queue.remove(userId)) {
+                continue;
+            }
+            try {
+                copyUser(shard, userId);
+            } catch (DataAccessException e) {
+                queue.add(userId);
+                log.warn("Failed to replicate user {} to shard {}, {} users will be retried", userId, shard,
+                        queue.size(), e);
+                return;
+            }
+        }
+    }
+
+    private void copyUser(String shard, Integer userId) {
+        List<Object[]> rows = main().query("SELECT " + USER_COLUMNS + " FROM users WHERE id = ?", ROW, userId);
+        if (rows.isEmpty()) {
+            dataSources.jdbc(shard).update("DELETE FROM users WHERE id = ?", userId);
+        } else {
+            dataSources.jdbc(shard).update(UPSERT, rows.get(0));
+        }
+    }
+
+    private void reconcile(String shard, String expected) {
+        JdbcTemplate target = dataSources.jdbc(shard);
+        if (Objects.equals(expected, target.queryForObject(CHECKSUM, String.class))) {
+            return;
+        }
+        int deleted = deleteMissing(target);
+        int copied = copyAll(target);
+        log.info("Reconciled users on shard {}: {} deleted, {} copied", shard, deleted, copied);
+    }
+
+    private int deleteMissing(JdbcTemplate target) {
+        int deleted = 0;
+        int lastId = 0;
+        List<Integer> ids;
+        do {
+            ids = target.queryForList("SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?", Integer.class,
+                    lastId, BATCH_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            lastId = ids.get(ids.size() - 1);
+            Object idArray = ids.toArray(new Integer[0]);
+            List<Integer> present = main().queryForList("SELECT id FROM users WHERE id = ANY(?)", Integer.class, idArray);
+            Object missing = ids.stream().filter(id -> !present.contains(id)).toArray(Integer[]::new);
+            deleted += target.update("DELETE FROM users WHERE id = ANY(?)", missing);
+        } while (ids.size() == BATCH_SIZE);
+        return deleted;
+    }
+
+    private int copyAll(JdbcTemplate target) {
+        int copied = 0;
+        int lastId = 0;
+        List<Object[]> rows;
+        do {
+            rows = main().query("SELECT " + USER_COLUMNS + " FROM users WHERE id > ? ORDER BY id LIMIT ?", ROW,
+                    lastId, BATCH_SIZE);
+            if (rows.isEmpty()) {
+                break;
+            }
+            lastId = (Integer) rows.get(rows.size() - 1)[0];
+            target.batchUpdate(UPSERT, rows);
+            copied += rows.size();
+        } while (rows.size() == BATCH_SIZE);
+        return copied;
+    }
+
+    private JdbcTemplate main() {
+        return dataSources.jdbc(ShardingProperties.MAIN);
+    }
+
+    private List<String> extraShards() {
+        return dataSources.names().stream()
+                          .filter(shard -> !ShardingProperties.MAIN.equals(shard))
+                          .collect(Collectors.toList());
+    }
+
+    @Override
+    public void destroy() {
+        executors.values().forEach(ExecutorService::shutdown);
+    }
+}
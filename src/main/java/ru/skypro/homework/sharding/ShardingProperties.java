@@ -0,0 +1,71 @@
+package ru.skypro.homework.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки шардирования объявлений и комментариев по автору ({@code app.sharding.*}).
+ * <p>
+ * Основной узел — {@code spring.datasource} (шард {@value #MAIN} с индексом 0): на нём пользователи,
+ * каталог корзин и все корзины, ещё не перенесённые на другие шарды. Дополнительные узлы перечисляются в {@code shards};
+ * пустые {@code username} и {@code password} берутся из {@code spring.datasource}, параметры пула — как у основного.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+    public static final String MAIN = "main";
+
+    private boolean enabled;
+
+    /**
+     * Число корзин: корзина автора — {@code user_id % buckets}, на шарды переносятся корзины целиком.
+     * Менять после первого запуска нельзя.
+     */
+    private int buckets = 256;
+
+    /**
+     * Шаг последовательностей id объявлений и комментариев: узел с индексом i выдаёт id, равные i по модулю
+     * {@code max-shards}, поэтому id не пересекаются между узлами. Менять после первого запуска нельзя.
+     */
+    private int maxShards = 16;
+
+    /**
+     * Сколько ждать, пока все экземпляры приложения увидят изменение каталога корзин
+     * (не меньше двух {@code directory-refresh-interval-ms}).
+     */
+    private Duration settleTime = Duration.ofSeconds(10);
+
+    /**
+     * Потоки для параллельных запросов ко всем шардам (общая лента, изображения удаляемого пользователя).
+     */
+    private int gatherThreads = 16;
+
+    /**
+     * Сколько запрос, изменивший пользователя, ждёт копирования на шарды; дальше копирование идёт в фоне.
+     */
+    private Duration userReplicationTimeout = Duration.ofSeconds(1);
+
+    private List<Shard> shards = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+
+        private String name;
+
+        /**
+         * Остаток id по модулю {@code max-shards} на этом узле, от 1 до {@code max-shards - 1}, у каждого узла свой.
+         */
+        private int index;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.skypro.homework.sharding;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/shards}: шарды и размещение корзин; {@code POST /actuator/shards/{bucket}} с телом
+ * {@code {"target": "shard-1"}} переносит корзину ({@link ShardRebalancer}). Доступно администраторам.
+ */
+@Endpoint(id = "shards")
+@RequiredArgsConstructor
+public class ShardsEndpoint {
+
+    private final ShardDataSources dataSources;
+    private final ShardDirectory directory;
+    private final ShardRebalancer rebalancer;
+
+    @ReadOperation
+    public Map<String, Object> shards() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("shards", dataSources.names());
+        result.put("buckets", directory.getBuckets());
+        result.put("placements", directory.placements());
+        return result;
+    }
+
+    @WriteOperation
+    public ShardRebalancer.MoveResult moveBucket(@Selector int bucket, String target) {
+        return rebalancer.moveBucket(bucket, target);
+    }
+}
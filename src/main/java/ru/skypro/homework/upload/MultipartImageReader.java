@@ -0,0 +1,201 @@
+package ru.skypro.homework.upload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.servlet.ServletRequestContext;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.exception.InvalidUploadException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Потоковый разбор multipart-запроса с изображением.
+ * <p>
+ * Части читаются по порядку прямо из тела запроса, без буфера в памяти или временного файла.
+ * Небольшие части (например, JSON {@code properties}) накапливаются в памяти с ограничением
+ * {@value #MAX_FIELD_BYTES} байт, а поток части-изображения передаётся обработчику,
+ * который пишет его сразу в итоговый файл.
+ */
+@Component
+@RequiredArgsConstructor
+public class MultipartImageReader {
+
+    static final int MAX_FIELD_BYTES = 64 * 1024;
+    static final int MAX_PARTS = 8;
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    /**
+     * Обработчик части-изображения.
+     *
+     * @param <T> результат обработки
+     */
+    @FunctionalInterface
+    public interface ImagePartHandler<T> {
+
+        /**
+         * @param fields части, пришедшие до изображения (имя → содержимое)
+         * @param image  поток содержимого изображения; читается не дальше конца части
+         */
+        T handle(Map<String, byte[]> fields, InputStream image);
+    }
+
+    /**
+     * Загрузка, которой кроме изображения нужны другие части запроса. Части приходят в любом порядке,
+     * поэтому изображение сохраняется сразу, а загрузка завершается после чтения всего запроса.
+     *
+     * @param <I> сохранённое изображение (например, путь к файлу)
+     * @param <T> результат загрузки
+     */
+    public interface StoredImageUpload<I, T> {
+
+        /**
+         * Сохраняет изображение в итоговое место, как только пришла его часть.
+         */
+        I store(InputStream image);
+
+        /**
+         * @param fields остальные части запроса (имя → содержимое)
+         * @param image  сохранённое изображение
+         */
+        T complete(Map<String, byte[]> fields, I image);
+
+        /**
+         * Удаляет сохранённое изображение, если загрузка не завершилась.
+         */
+        void discard(I image);
+    }
+
+    /**
+     * Читает части запроса до части {@code imagePart} и передаёт её поток обработчику. Части после изображения
+     * не читаются: метод для загрузок, которым нужно только изображение.
+     *
+     * @throws InvalidUploadException если запрос не multipart, повреждён или в нём нет части {@code imagePart}
+     */
+    public <T> T read(HttpServletRequest request, String imagePart, ImagePartHandler<T> handler) {
+        checkMultipart(request);
+        Map<String, byte[]> fields = new HashMap<>();
+        try {
+            FileItemIterator parts = new ServletFileUpload().getItemIterator(request);
+            int count = 0;
+            while (parts.hasNext()) {
+                FileItemStream part = parts.next();
+                if (++count > MAX_PARTS) {
+                    throw new InvalidUploadException("Too many parts in multipart request");
+                }
+                try (InputStream content = part.openStream()) {
+                    if (imagePart.equals(part.getFieldName())) {
+                        return handler.handle(fields, content);
+                    }
+                    fields.put(part.getFieldName(), readField(part.getFieldName(), content));
+                }
+            }
+        } catch (FileUploadException e) {
+            throw new InvalidUploadException("Malformed multipart request: " + e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read multipart request", e);
+        }
+        throw new InvalidUploadException("Part '" + imagePart + "' is missing");
+    }
+
+    /**
+     * Читает все части запроса в любом порядке: поток части {@code imagePart} сохраняется сразу, остальные части
+     * накапливаются в памяти, и после конца запроса загрузка завершается. Если запрос повреждён или завершить
+     * загрузку не удалось, сохранённое изображение удаляется.
+     *
+     * @throws InvalidUploadException если запрос не multipart, повреждён, в нём нет части {@code imagePart}
+     *                                или она пришла дважды
+     */
+    public <I, T> T readAll(HttpServletRequest request, String imagePart, StoredImageUpload<I, T> upload) {
+        checkMultipart(request);
+        Map<String, byte[]> fields = new HashMap<>();
+        I image = null;
+        boolean completed = false;
+        try {
+            FileItemIterator parts = new ServletFileUpload().getItemIterator(request);
+            int count = 0;
+            while (parts.hasNext()) {
+                FileItemStream part = parts.next();
+                if (++count > MAX_PARTS) {
+                    throw new InvalidUploadException("Too many parts in multipart request");
+                }
+                try (InputStream content = part.openStream()) {
+                    if (!imagePart.equals(part.getFieldName())) {
+                        fields.put(part.getFieldName(), readField(part.getFieldName(), content));
+                    } else if (image == null) {
+                        image = upload.store(content);
+                    } else {
+                        throw new InvalidUploadException("Part '" + imagePart + "' is sent more than once");
+                    }
+                }
+            }
+            if (image == null) {
+                throw new InvalidUploadException("Part '" + imagePart + "' is missing");
+            }
+            T result = upload.complete(fields, image);
+            completed = true;
+            return result;
+        } catch (FileUploadException e) {
+            throw new InvalidUploadException("Malformed multipart request: " + e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read multipart request", e);
+        } finally {
+            if (!completed && image != null) {
+                upload.discard(image);
+            }
+        }
+    }
+
+    /**
+     * Разбирает JSON-часть и проверяет её аннотациями Bean Validation, как это делал бы {@code @RequestPart @Valid}.
+     *
+     * @throws InvalidUploadException       если части нет или это не JSON
+     * @throws ConstraintViolationException если значение не проходит валидацию
+     */
+    public <V> V readJsonPart(Map<String, byte[]> fields, String name, Class<V> type) {
+        byte[] json = fields.get(name);
+        if (json == null) {
+            throw new InvalidUploadException("Part '" + name + "' is missing");
+        }
+        V value;
+        try {
+            value = objectMapper.readValue(json, type);
+        } catch (IOException e) {
+            throw new InvalidUploadException("Part '" + name + "' is not valid JSON");
+        }
+        Set<ConstraintViolation<V>> violations = validator.validate(value);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        return value;
+    }
+
+    private static void checkMultipart(HttpServletRequest request) {
+        if (!FileUploadBase.isMultipartContent(new ServletRequestContext(request))) {
+            throw new InvalidUploadException("Request is not multipart/form-data");
+        }
+    }
+
+    private static byte[] readField(String name, InputStream content) throws IOException {
+        byte[] value = content.readNBytes(MAX_FIELD_BYTES + 1);
+        if (value.length > MAX_FIELD_BYTES) {
+            throw new InvalidUploadException("Part '" + name + "' exceeds " + MAX_FIELD_BYTES + " bytes");
+        }
+        return value;
+    }
+}
@@ -1,15 +1,96 @@
 package ru.skypro.homework.util;
 
 import lombok.experimental.UtilityClass;
-import org.springframework.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 
 @UtilityClass
 public class ImageHelper {
 
-    public static String getExtension(String filename) {
-        if (!StringUtils.hasText(filename) || !filename.contains(".")) {
-            return "";
+    /**
+     * Сколько первых байт файла нужно для {@link #detectFormat(byte[])}.
+     */
+    public static final int SIGNATURE_LENGTH = 8;
+
+    /**
+     * Ориентация EXIF по умолчанию: изображение не повёрнуто.
+     */
+    public static final int ORIENTATION_NORMAL = 1;
+
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+    private static final int TAG_ORIENTATION = 0x0112;
+
+    /**
+     * Определяет формат изображения по сигнатуре (magic bytes), а не по имени файла от клиента.
+     *
+     * @param header первые байты файла (до {@link #SIGNATURE_LENGTH})
+     * @return имя формата ImageIO ("jpeg", "png", "gif") или пусто, если формат не поддерживается
+     */
+    public static Optional<String> detectFormat(byte[] header) {
+        if (startsWith(header, 0xFF, 0xD8, 0xFF)) {
+            return Optional.of("jpeg");
+        }
+        if (startsWith(header, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return Optional.of("png");
+        }
+        if (startsWith(header, 'G', 'I', 'F', '8')) {
+            return Optional.of("gif");
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Читает тег Orientation (0x0112) из IFD0 сегмента APP1 (EXIF) JPEG.
+     *
+     * @param app1 содержимое сегмента APP1 без маркера и длины (начинается с "Exif\0\0")
+     * @return значение 1–8 или {@link #ORIENTATION_NORMAL}, если тега нет или сегмент не EXIF
+     */
+    public static int readExifOrientation(byte[] app1) {
+        if (!startsWith(app1, EXIF_HEADER)) {
+            return ORIENTATION_NORMAL;
+        }
+        try {
+            ByteBuffer tiff = ByteBuffer.wrap(app1, EXIF_HEADER.length, app1.length - EXIF_HEADER.length).slice();
+            tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int ifd = tiff.getInt(4);
+            int entries = Short.toUnsignedInt(tiff.getShort(ifd));
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if (Short.toUnsignedInt(tiff.getShort(entry)) == TAG_ORIENTATION) {
+                    int orientation = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                    return orientation >= 1 && orientation <= 8 ? orientation : ORIENTATION_NORMAL;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Повреждённый EXIF не мешает сохранить само изображение
+        }
+        return ORIENTATION_NORMAL;
+    }
+
+    private static boolean startsWith(byte[] data, int... signature) {
+        if (data.length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((data[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
         }
-        return filename.substring(filename.lastIndexOf("."));
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package ru.skypro.homework.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.regex.Pattern;
+
+/**
+ * Нормализация SQL для логов: литералы и числа заменяются на {@code ?}, пробелы схлопываются.
+ * Одинаковые по структуре запросы дают одинаковый отпечаток независимо от параметров.
+ */
+@UtilityClass
+public class SqlFingerprint {
+
+    private static final int MAX_LENGTH = 300;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public static String of(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String result = STRING_LITERAL.matcher(sql).replaceAll("?");
+        result = NUMBER.matcher(result).replaceAll("?");
+        result = IN_LIST.matcher(result).replaceAll("(?...)");
+        result = WHITESPACE.matcher(result).replaceAll(" ").trim();
+        return result.length() > MAX_LENGTH ? result.substring(0, MAX_LENGTH) + "..." : result;
+    }
+}
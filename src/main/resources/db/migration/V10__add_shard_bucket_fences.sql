@@ -0,0 +1,37 @@
+-- Запись в корзину на шарде, который ею не владеет (app.sharding.*). Миграция выполняется на каждом узле.
+
+-- 1. Корзины, запись в которые на этом узле запрещена: корзина переносится с него или уже перенесена.
+--    Строку добавляет перенос корзины до копирования строк и удаляет, когда корзину переносят на этот узел.
+CREATE TABLE shard_bucket_fences (
+    bucket INTEGER PRIMARY KEY,
+    fenced_at TIMESTAMP NOT NULL DEFAULT localtimestamp
+);
+
+-- 2. Вызывается транзакцией записи до изменения строк корзины. Разделяемая advisory-блокировка корзины держится
+--    до конца транзакции, а перенос берёт эксклюзивную, прежде чем добавить запрет: транзакции записи, начатые
+--    до запрета, успевают зафиксироваться до копирования строк, а начатые после него видят запрет.
+--    Функция VOLATILE: проверка берёт новый снимок после блокировки и видит запрет, зафиксированный во время ожидания.
+CREATE OR REPLACE FUNCTION shard_bucket_lock_for_write(target_bucket INTEGER)
+    RETURNS BOOLEAN
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM pg_advisory_xact_lock_shared(hashtext('shard_bucket'), target_bucket);
+    RETURN NOT EXISTS(SELECT 1 FROM shard_bucket_fences WHERE bucket = target_bucket);
+END
+$$;
+
+-- 3. Запрещает запись в корзину на этом узле. Эксклюзивная блокировка ждёт транзакции записи, уже прошедшие
+--    проверку (shard_bucket_lock_for_write); запрет нужно зафиксировать до копирования строк корзины.
+CREATE OR REPLACE FUNCTION shard_bucket_fence(target_bucket INTEGER)
+    RETURNS BOOLEAN
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('shard_bucket'), target_bucket);
+    INSERT INTO shard_bucket_fences (bucket) VALUES (target_bucket) ON CONFLICT (bucket) DO NOTHING;
+    RETURN FOUND;
+END
+$$;
@@ -0,0 +1,12 @@
+-- Подготовка к секционированию comments по created_at (V5, V6), без блокировки записи.
+-- Индексы строятся CONCURRENTLY, поэтому Flyway выполняет этот скрипт вне транзакции.
+-- При подключении таблицы секцией (V6) PostgreSQL использует их вместо построения новых.
+
+-- 1. Уникальный индекс под будущий первичный ключ (pk, created_at):
+--    первичный ключ секционированной таблицы обязан включать ключ секционирования
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS comments_legacy_pk_created_at ON comments (pk, created_at);
+
+-- 2. Комментарии объявления читаются по дате: (ad_id, created_at) заменяет idx_comments_ad_id
+CREATE INDEX CONCURRENTLY IF NOT EXISTS comments_legacy_ad_id_created_at ON comments (ad_id, created_at);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_comments_ad_id;
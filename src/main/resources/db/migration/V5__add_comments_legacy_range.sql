@@ -0,0 +1,10 @@
+-- Верхняя граница created_at для существующих строк — будущей секции comments_legacy (V6).
+-- NOT VALID добавляется мгновенно; существующие строки проверяются в V6 без блокировки записи,
+-- после чего подключение секции не сканирует таблицу.
+-- Граница — начало следующего месяца: новые комментарии текущего месяца тоже попадают в comments_legacy.
+DO $$
+BEGIN
+    EXECUTE format('ALTER TABLE comments ADD CONSTRAINT comments_legacy_range CHECK (created_at < %L) NOT VALID',
+                   date_trunc('month', localtimestamp) + INTERVAL '1 month');
+END
+$$;
@@ -0,0 +1,183 @@
+-- Секционирование comments по месяцам created_at.
+-- Существующая таблица становится секцией comments_legacy с диапазоном (MINVALUE, граница из V5),
+-- следующие месяцы — отдельными секциями comments_YYYY_MM (comments_create_partitions).
+-- Данные не копируются: тяжёлые шаги (индексы — V4, проверка диапазона — ниже) не блокируют запись,
+-- эксклюзивная блокировка нужна только на изменение каталога в конце транзакции.
+
+-- 1. Проверка существующих строк (SHARE UPDATE EXCLUSIVE: чтение и запись продолжаются)
+ALTER TABLE comments VALIDATE CONSTRAINT comments_legacy_range;
+
+-- 2. Старая таблица — будущая секция; имена индексов и ограничений освобождаются для новой
+ALTER TABLE comments RENAME TO comments_legacy;
+ALTER TABLE comments_legacy DROP CONSTRAINT comments_pkey;
+ALTER TABLE comments_legacy ADD CONSTRAINT comments_legacy_pkey PRIMARY KEY USING INDEX comments_legacy_pk_created_at;
+ALTER TABLE comments_legacy RENAME CONSTRAINT fk_comments_user TO fk_comments_legacy_user;
+ALTER TABLE comments_legacy RENAME CONSTRAINT fk_comments_ad TO fk_comments_legacy_ad;
+ALTER INDEX idx_comments_user_id RENAME TO comments_legacy_user_id;
+
+-- 3. Секционированная таблица; первичный ключ включает ключ секционирования
+CREATE TABLE comments (
+    pk INTEGER NOT NULL DEFAULT nextval('comments_pk_seq'),
+    text TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    user_id INTEGER NOT NULL,
+    ad_id INTEGER NOT NULL,
+    CONSTRAINT comments_pkey PRIMARY KEY (pk, created_at),
+    CONSTRAINT fk_comments_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_comments_ad FOREIGN KEY (ad_id) REFERENCES ads (pk) ON DELETE CASCADE
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE comments_pk_seq OWNED BY comments.pk;
+
+CREATE INDEX idx_comments_ad_id_created_at ON comments (ad_id, created_at);
+CREATE INDEX idx_comments_user_id ON comments (user_id);
+
+-- 4. Подключение старой таблицы: диапазон доказан comments_legacy_range, индексы из V4 подходят
+DO $$
+DECLARE
+    legacy_bound TIMESTAMP;
+BEGIN
+    SELECT (regexp_match(pg_get_constraintdef(oid), '''([^'']+)'''))[1]::TIMESTAMP
+      INTO legacy_bound
+      FROM pg_constraint
+     WHERE conrelid = 'comments_legacy'::regclass
+       AND conname = 'comments_legacy_range';
+    EXECUTE format('ALTER TABLE comments ATTACH PARTITION comments_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+                   legacy_bound);
+END
+$$;
+
+-- 5. Обслуживание секций; вызывается приложением по расписанию (CommentPartitionMaintenance)
+
+-- Создаёт недостающие месячные секции с текущего месяца на months_ahead месяцев вперёд.
+-- Секция создаётся отдельной таблицей и подключается ATTACH PARTITION:
+-- это берёт на comments только SHARE UPDATE EXCLUSIVE и не мешает запросам.
+-- Месяцы, уже покрытые другой секцией (comments_legacy), пропускаются.
+CREATE OR REPLACE FUNCTION comments_create_partitions(months_ahead INTEGER)
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    month_start    TIMESTAMP;
+    partition_name TEXT;
+    created        INTEGER := 0;
+BEGIN
+    -- несколько экземпляров приложения обслуживают секции по очереди
+    PERFORM pg_advisory_xact_lock(hashtext('comments_partitions'));
+    FOR i IN 0..months_ahead LOOP
+        month_start := date_trunc('month', localtimestamp) + make_interval(months => i);
+        partition_name := 'comments_' || to_char(month_start, 'YYYY_MM');
+        CONTINUE WHEN to_regclass(partition_name) IS NOT NULL;
+        BEGIN
+            EXECUTE format('CREATE TABLE %I (LIKE comments INCLUDING DEFAULTS)', partition_name);
+            EXECUTE format('ALTER TABLE comments ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, month_start, month_start + INTERVAL '1 month');
+            created := created + 1;
+        EXCEPTION
+            WHEN invalid_object_definition THEN
+                -- диапазон пересекается с существующей секцией; таблица откатывается вместе с подтранзакцией
+                NULL;
+        END;
+    END LOOP;
+    RETURN created;
+END
+$$;
+
+-- Добавляет закрытым секциям (верхняя граница не позже суток назад) ограничение на диапазон pk.
+-- Секции делятся по created_at, а комментарий ищется по pk (CommentRepository): pk выдаёт последовательность,
+-- поэтому у каждого закрытого месяца свой непересекающийся диапазон, и по этим ограничениям планировщик
+-- (constraint_exclusion = partition) оставляет в поиске по pk только подходящие секции.
+-- Ограничение добавляется NOT VALID, без сканирования; проверяет строки comments_validate_pk_ranges
+-- в отдельной транзакции, не блокируя чтение и запись. Планировщик учитывает только проверенные ограничения.
+CREATE OR REPLACE FUNCTION comments_seal_partitions()
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    part   RECORD;
+    min_pk INTEGER;
+    max_pk INTEGER;
+    sealed INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('comments_partitions'));
+    -- ADD CONSTRAINT ненадолго берёт эксклюзивную блокировку секции; не ждём долгие запросы, повторим позже
+    PERFORM set_config('lock_timeout', '5s', true);
+    FOR part IN
+        SELECT c.oid,
+               c.relname AS name,
+               (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \(''([^'']+)''\)'))[1]::TIMESTAMP AS upper_bound
+          FROM pg_inherits i
+          JOIN pg_class c ON c.oid = i.inhrelid
+         WHERE i.inhparent = 'comments'::regclass
+    LOOP
+        CONTINUE WHEN part.upper_bound IS NULL OR part.upper_bound > localtimestamp - INTERVAL '1 day';
+        CONTINUE WHEN EXISTS(SELECT 1 FROM pg_constraint WHERE conrelid = part.oid AND conname = part.name || '_pk_range');
+        EXECUTE format('SELECT min(pk), max(pk) FROM %I', part.name) INTO min_pk, max_pk;
+        CONTINUE WHEN min_pk IS NULL;
+        EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (pk BETWEEN %s AND %s) NOT VALID',
+                       part.name, part.name || '_pk_range', min_pk, max_pk);
+        sealed := sealed + 1;
+    END LOOP;
+    RETURN sealed;
+END
+$$;
+
+-- Проверяет ограничения comments_seal_partitions (SHARE UPDATE EXCLUSIVE: чтение и запись продолжаются).
+CREATE OR REPLACE FUNCTION comments_validate_pk_ranges()
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    con       RECORD;
+    validated INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('comments_partitions'));
+    FOR con IN
+        SELECT k.conrelid::regclass AS part, k.conname
+          FROM pg_constraint k
+          JOIN pg_inherits i ON i.inhrelid = k.conrelid
+         WHERE i.inhparent = 'comments'::regclass
+           AND k.conname LIKE '%\_pk\_range'
+           AND NOT k.convalidated
+    LOOP
+        EXECUTE format('ALTER TABLE %s VALIDATE CONSTRAINT %I', con.part, con.conname);
+        validated := validated + 1;
+    END LOOP;
+    RETURN validated;
+END
+$$;
+
+-- Отключает и удаляет секции, все строки которых старше retention (верхняя граница не позже now() - retention).
+-- comments_legacy удаляется целиком, когда устареет её последний месяц.
+CREATE OR REPLACE FUNCTION comments_drop_expired_partitions(retention INTERVAL)
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    part    RECORD;
+    dropped INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('comments_partitions'));
+    -- DETACH ненадолго берёт эксклюзивную блокировку comments; не ждём долгие запросы, повторим позже
+    PERFORM set_config('lock_timeout', '5s', true);
+    FOR part IN
+        SELECT c.relname AS name,
+               (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \(''([^'']+)''\)'))[1]::TIMESTAMP AS upper_bound
+          FROM pg_inherits i
+          JOIN pg_class c ON c.oid = i.inhrelid
+         WHERE i.inhparent = 'comments'::regclass
+    LOOP
+        CONTINUE WHEN part.upper_bound IS NULL OR part.upper_bound > localtimestamp - retention;
+        EXECUTE format('ALTER TABLE comments DETACH PARTITION %I', part.name);
+        EXECUTE format('DROP TABLE %I', part.name);
+        dropped := dropped + 1;
+    END LOOP;
+    RETURN dropped;
+END
+$$;
+
+SELECT comments_create_partitions(3);
@@ -0,0 +1,74 @@
+-- Архив давно не активных объявлений (AdArchiveJob) и их комментариев.
+-- Объявление переносится вместе с id и возвращается в ads при обращении (AdArchiveService.restore).
+
+-- 1. Время последней активности: изменение, просмотр, новый комментарий.
+--    Значение по умолчанию не волатильное, поэтому столбец добавляется без перезаписи таблицы.
+--    Индекса нет намеренно: частые обновления столбца остаются HOT, а отбор для архива — редкое полное сканирование.
+ALTER TABLE ads ADD COLUMN last_activity_at TIMESTAMP NOT NULL DEFAULT localtimestamp;
+
+-- 2. Архивные таблицы повторяют ads и comments; удаление пользователя каскадно удаляет и архив
+CREATE TABLE ads_archive (
+    pk INTEGER PRIMARY KEY,
+    title VARCHAR(100) NOT NULL,
+    description TEXT NOT NULL,
+    price INTEGER NOT NULL,
+    image VARCHAR(512),
+    user_id INTEGER NOT NULL,
+    last_activity_at TIMESTAMP NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT localtimestamp,
+    CONSTRAINT fk_ads_archive_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE TABLE comments_archive (
+    pk INTEGER PRIMARY KEY,
+    text TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    user_id INTEGER NOT NULL,
+    ad_id INTEGER NOT NULL,
+    CONSTRAINT fk_comments_archive_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_comments_archive_ad FOREIGN KEY (ad_id) REFERENCES ads_archive (pk) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_ads_archive_user_id ON ads_archive (user_id);
+CREATE INDEX idx_comments_archive_user_id ON comments_archive (user_id);
+CREATE INDEX idx_comments_archive_ad_id ON comments_archive (ad_id);
+
+-- 3. Диапазон pk закрытой секции comments учитывает и архивные комментарии её месяца:
+--    иначе восстановленный из архива комментарий нарушил бы ограничение *_pk_range (V6)
+CREATE OR REPLACE FUNCTION comments_seal_partitions()
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    part   RECORD;
+    min_pk INTEGER;
+    max_pk INTEGER;
+    sealed INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('comments_partitions'));
+    PERFORM set_config('lock_timeout', '5s', true);
+    FOR part IN
+        SELECT c.oid,
+               c.relname AS name,
+               COALESCE((regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \(''([^'']+)''\)'))[1]::TIMESTAMP,
+                        '-infinity'::TIMESTAMP) AS lower_bound,
+               (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \(''([^'']+)''\)'))[1]::TIMESTAMP AS upper_bound
+          FROM pg_inherits i
+          JOIN pg_class c ON c.oid = i.inhrelid
+         WHERE i.inhparent = 'comments'::regclass
+    LOOP
+        CONTINUE WHEN part.upper_bound IS NULL OR part.upper_bound > localtimestamp - INTERVAL '1 day';
+        CONTINUE WHEN EXISTS(SELECT 1 FROM pg_constraint WHERE conrelid = part.oid AND conname = part.name || '_pk_range');
+        EXECUTE format('SELECT min(pk), max(pk) FROM (SELECT pk FROM %I '
+                       'UNION ALL SELECT pk FROM comments_archive WHERE created_at >= %L AND created_at < %L) p',
+                       part.name, part.lower_bound, part.upper_bound)
+           INTO min_pk, max_pk;
+        CONTINUE WHEN min_pk IS NULL;
+        EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (pk BETWEEN %s AND %s) NOT VALID',
+                       part.name, part.name || '_pk_range', min_pk, max_pk);
+        sealed := sealed + 1;
+    END LOOP;
+    RETURN sealed;
+END
+$$;
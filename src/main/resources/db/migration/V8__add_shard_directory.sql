@@ -0,0 +1,44 @@
+-- Шардирование объявлений и комментариев по автору (app.sharding.*).
+-- Миграции выполняются на каждом узле; каталог корзин используется только на основном узле.
+
+-- 1. Каталог корзин: на каком шарде лежат объявления авторов корзины user_id % buckets.
+--    Корзины без строки лежат на основном узле; moving — корзина переносится, запись в неё отклоняется.
+CREATE TABLE shard_buckets (
+    bucket INTEGER PRIMARY KEY,
+    shard VARCHAR(50) NOT NULL,
+    moving BOOLEAN NOT NULL DEFAULT false
+);
+
+-- 2. Снимает ограничения на диапазон pk (comments_seal_partitions) с секций comments, пересекающих
+--    [from_ts, to_ts]: перенесённые с другого шарда комментарии закрытого месяца имеют id вне этого диапазона.
+--    Ограничения снова добавит comments_seal_partitions.
+CREATE OR REPLACE FUNCTION comments_unseal_partitions(from_ts TIMESTAMP, to_ts TIMESTAMP)
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    part     RECORD;
+    unsealed INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('comments_partitions'));
+    -- DROP CONSTRAINT ненадолго берёт эксклюзивную блокировку секции; перенос корзины повторяется вручную
+    PERFORM set_config('lock_timeout', '5s', true);
+    FOR part IN
+        SELECT c.relname AS name,
+               COALESCE((regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \(''([^'']+)''\)'))[1]::TIMESTAMP,
+                        '-infinity'::TIMESTAMP) AS lower_bound,
+               (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \(''([^'']+)''\)'))[1]::TIMESTAMP AS upper_bound
+          FROM pg_inherits i
+          JOIN pg_class c ON c.oid = i.inhrelid
+         WHERE i.inhparent = 'comments'::regclass
+           AND EXISTS(SELECT 1 FROM pg_constraint WHERE conrelid = c.oid AND conname = c.relname || '_pk_range')
+    LOOP
+        CONTINUE WHEN part.upper_bound IS NOT NULL AND part.upper_bound <= from_ts;
+        CONTINUE WHEN part.lower_bound > to_ts;
+        EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', part.name, part.name || '_pk_range');
+        unsealed := unsealed + 1;
+    END LOOP;
+    RETURN unsealed;
+END
+$$;
@@ -0,0 +1,193 @@
+-- Денормализованная лента объявлений (модель чтения): GET /ads и GET /ads/{id} читают одну таблицу
+-- по первичному ключу без соединений ads, users и comments.
+-- Таблица поддерживается триггерами в транзакции каждого изменения — и из сервисов, и из архивации,
+-- каскадов внешних ключей, переноса корзин между шардами и репликации пользователей. При шардировании
+-- у каждого узла своя лента по своим объявлениям. Полная перестройка — ad_feed_rebuild() (/actuator/adfeed).
+
+-- 1. Строка ленты на каждое объявление рабочей таблицы ads; архивные объявления в ленту не входят,
+--    удаление объявления (в том числе перенос в архив) удаляет строку каскадом
+CREATE TABLE ad_feed (
+    pk INTEGER PRIMARY KEY,
+    title VARCHAR(100) NOT NULL,
+    description TEXT NOT NULL,
+    price INTEGER NOT NULL,
+    image VARCHAR(512),
+    user_id INTEGER NOT NULL,
+    author_email VARCHAR(254) NOT NULL,
+    author_first_name VARCHAR(50) NOT NULL,
+    author_last_name VARCHAR(50) NOT NULL,
+    author_phone VARCHAR(20) NOT NULL,
+    author_image VARCHAR(512),
+    comment_count INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT localtimestamp,
+    CONSTRAINT fk_ad_feed_ad FOREIGN KEY (pk) REFERENCES ads (pk) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_ad_feed_user_id ON ad_feed (user_id);
+
+-- 2. Новое или изменённое объявление. Триггер только на столбцы ленты: отметки активности
+--    (ads.last_activity_at) остаются дешёвыми HOT-обновлениями. Счётчик комментариев новой строки — 0:
+--    комментарии вставляются после объявления (внешний ключ), их учтёт триггер comments
+CREATE OR REPLACE FUNCTION ad_feed_upsert_ad()
+    RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    INSERT INTO ad_feed (pk, title, description, price, image, user_id,
+                         author_email, author_first_name, author_last_name, author_phone, author_image)
+    SELECT NEW.pk, NEW.title, NEW.description, NEW.price, NEW.image, NEW.user_id,
+           u.email, u.first_name, u.last_name, u.phone, u.image
+      FROM users u
+     WHERE u.id = NEW.user_id
+    ON CONFLICT (pk) DO UPDATE
+        SET title             = EXCLUDED.title,
+            description       = EXCLUDED.description,
+            price             = EXCLUDED.price,
+            image             = EXCLUDED.image,
+            user_id           = EXCLUDED.user_id,
+            author_email      = EXCLUDED.author_email,
+            author_first_name = EXCLUDED.author_first_name,
+            author_last_name  = EXCLUDED.author_last_name,
+            author_phone      = EXCLUDED.author_phone,
+            author_image      = EXCLUDED.author_image,
+            updated_at        = localtimestamp;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER ads_ad_feed
+    AFTER INSERT OR UPDATE OF title, description, price, image, user_id ON ads
+    FOR EACH ROW
+EXECUTE FUNCTION ad_feed_upsert_ad();
+
+-- 3. Изменение имени, контактов или аватара автора — во всех его строках ленты.
+--    Смена пароля и повторная запись тех же значений (Hibernate пишет все столбцы, репликация пользователей
+--    на шарды — upsert) ленту не трогают
+CREATE OR REPLACE FUNCTION ad_feed_update_author()
+    RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    UPDATE ad_feed
+       SET author_email      = NEW.email,
+           author_first_name = NEW.first_name,
+           author_last_name  = NEW.last_name,
+           author_phone      = NEW.phone,
+           author_image      = NEW.image,
+           updated_at        = localtimestamp
+     WHERE user_id = NEW.id;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER users_ad_feed
+    AFTER UPDATE OF email, first_name, last_name, phone, image ON users
+    FOR EACH ROW
+    WHEN ((OLD.email, OLD.first_name, OLD.last_name, OLD.phone, OLD.image)
+        IS DISTINCT FROM (NEW.email, NEW.first_name, NEW.last_name, NEW.phone, NEW.image))
+EXECUTE FUNCTION ad_feed_update_author();
+
+-- 4. Счётчик комментариев. Триггер уровня выражения с таблицей переходов: пачка комментариев
+--    (восстановление из архива, перенос корзины, каскадное удаление) меняет строку ленты один раз
+CREATE OR REPLACE FUNCTION ad_feed_count_comments()
+    RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE ad_feed f
+           SET comment_count = f.comment_count + d.n,
+               updated_at    = localtimestamp
+          FROM (SELECT ad_id, count(*) AS n FROM new_comments GROUP BY ad_id) d
+         WHERE f.pk = d.ad_id;
+    ELSE
+        UPDATE ad_feed f
+           SET comment_count = f.comment_count - d.n,
+               updated_at    = localtimestamp
+          FROM (SELECT ad_id, count(*) AS n FROM old_comments GROUP BY ad_id) d
+         WHERE f.pk = d.ad_id;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER comments_ad_feed_insert
+    AFTER INSERT ON comments
+    REFERENCING NEW TABLE AS new_comments
+    FOR EACH STATEMENT
+EXECUTE FUNCTION ad_feed_count_comments();
+
+CREATE TRIGGER comments_ad_feed_delete
+    AFTER DELETE ON comments
+    REFERENCING OLD TABLE AS old_comments
+    FOR EACH STATEMENT
+EXECUTE FUNCTION ad_feed_count_comments();
+
+-- 5. Удаление устаревших секций comments не вызывает триггеры DELETE: комментарии секции
+--    вычитаются из счётчиков ленты перед её отключением (в остальном как в V6)
+CREATE OR REPLACE FUNCTION comments_drop_expired_partitions(retention INTERVAL)
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    part    RECORD;
+    dropped INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('comments_partitions'));
+    -- DETACH ненадолго берёт эксклюзивную блокировку comments; не ждём долгие запросы, повторим позже
+    PERFORM set_config('lock_timeout', '5s', true);
+    FOR part IN
+        SELECT c.relname AS name,
+               (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \(''([^'']+)''\)'))[1]::TIMESTAMP AS upper_bound
+          FROM pg_inherits i
+          JOIN pg_class c ON c.oid = i.inhrelid
+         WHERE i.inhparent = 'comments'::regclass
+    LOOP
+        CONTINUE WHEN part.upper_bound IS NULL OR part.upper_bound > localtimestamp - retention;
+        -- блокировка секции до подсчёта: новые комментарии в неё не попадут между подсчётом и отключением
+        EXECUTE format('LOCK TABLE %I IN SHARE MODE', part.name);
+        EXECUTE format('UPDATE ad_feed f SET comment_count = f.comment_count - d.n '
+                       'FROM (SELECT ad_id, count(*) AS n FROM %I GROUP BY ad_id) d WHERE f.pk = d.ad_id',
+                       part.name);
+        EXECUTE format('ALTER TABLE comments DETACH PARTITION %I', part.name);
+        EXECUTE format('DROP TABLE %I', part.name);
+        dropped := dropped + 1;
+    END LOOP;
+    RETURN dropped;
+END
+$$;
+
+-- 6. Полная перестройка ленты узла из ads, users и comments; возвращает число строк.
+--    Запись в эти таблицы ждёт окончания перестройки (блокировка SHARE), чтение ленты продолжается по старой версии
+--    строк до фиксации. Если блокировку не удалось взять за lock_timeout, перестройку нужно повторить
+CREATE OR REPLACE FUNCTION ad_feed_rebuild()
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    rebuilt INTEGER;
+BEGIN
+    PERFORM set_config('lock_timeout', '5s', true);
+    LOCK TABLE ads, users, comments IN SHARE MODE;
+    DELETE FROM ad_feed;
+    INSERT INTO ad_feed (pk, title, description, price, image, user_id,
+                         author_email, author_first_name, author_last_name, author_phone, author_image,
+                         comment_count)
+    SELECT a.pk, a.title, a.description, a.price, a.image, a.user_id,
+           u.email, u.first_name, u.last_name, u.phone, u.image,
+           COALESCE(c.n, 0)
+      FROM ads a
+      JOIN users u ON u.id = a.user_id
+      LEFT JOIN (SELECT ad_id, count(*) AS n FROM comments GROUP BY ad_id) c ON c.ad_id = a.pk;
+    GET DIAGNOSTICS rebuilt = ROW_COUNT;
+    RETURN rebuilt;
+END
+$$;
+
+-- 7. Начальное заполнение
+SELECT ad_feed_rebuild();
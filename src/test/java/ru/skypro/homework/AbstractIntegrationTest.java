@@ -10,6 +10,7 @@ import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.util.MultiValueMap;
 import org.testcontainers.containers.PostgreSQLContainer;
+import ru.skypro.homework.filter.SqlStatementBudgetFilter;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -45,6 +46,8 @@ public abstract class AbstractIntegrationTest {
         registry.add("app.image.ad-dir", () -> "./target/test-ads-images");
         registry.add("spring.datasource.hikari.connection-timeout", () -> "60000");
         registry.add("spring.datasource.hikari.validation-timeout", () -> "60000");
+        // лимиты частоты проверяются модульными тестами RateLimitingFilterTest; здесь все запросы идут с одного адреса
+        registry.add("app.rate-limit.enabled", () -> "false");
     }
 
     @LocalServerPort
@@ -84,6 +87,15 @@ public abstract class AbstractIntegrationTest {
         return restTemplate.exchange(url, HttpMethod.PATCH, entity, responseType, uriVariables);
     }
 
+    // Количество SQL-выражений, выполненных при обработке запроса (заголовок SqlStatementBudgetFilter)
+    protected int sqlStatements(ResponseEntity<?> response) {
+        String header = response.getHeaders().getFirst(SqlStatementBudgetFilter.STATEMENTS_HEADER);
+        if (header == null) {
+            throw new AssertionError("Response has no " + SqlStatementBudgetFilter.STATEMENTS_HEADER + " header");
+        }
+        return Integer.parseInt(header);
+    }
+
     // Создание директорий для изображений (вызывать в setUp() наследников)
     protected void createImageDirectories() {
         try {
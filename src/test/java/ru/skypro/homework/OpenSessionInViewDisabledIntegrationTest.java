@@ -0,0 +1,120 @@
+package ru.skypro.homework;
+
+import org.hibernate.LazyInitializationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import ru.skypro.homework.dto.ad.AdsDto;
+import ru.skypro.homework.dto.ad.ExtendedAdDto;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.dto.comment.CommentsDto;
+import ru.skypro.homework.dto.user.UserDto;
+import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.model.CommentsDao;
+import ru.skypro.homework.model.UsersDao;
+import ru.skypro.homework.repository.AdRepository;
+import ru.skypro.homework.repository.CommentRepository;
+import ru.skypro.homework.repository.UserRepository;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Без open-session-in-view ленивые связи вне транзакции не подгружаются, поэтому все данные
+ * для ответа должны быть получены в сервисе: эндпоинты с полями автора должны отвечать 200.
+ */
+class OpenSessionInViewDisabledIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String EMAIL = "osiv@test.com";
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdRepository adRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    private AdsDao ad;
+
+    @BeforeEach
+    void setUp() {
+        UsersDao author = new UsersDao();
+        author.setEmail(EMAIL);
+        author.setPassword(passwordEncoder.encode(PASSWORD));
+        author.setFirstName("Иван");
+        author.setLastName("Иванов");
+        author.setPhone("+7 (999) 123-45-67");
+        author.setRole(Role.USER);
+        userRepository.save(author);
+
+        ad = new AdsDao();
+        ad.setTitle("Lazy Ad");
+        ad.setDescription("Lazy Description");
+        ad.setPrice(100);
+        ad.setAuthor(author);
+        adRepository.save(ad);
+
+        CommentsDao comment = new CommentsDao();
+        comment.setText("Lazy comment");
+        comment.setCreatedAt(LocalDateTime.now());
+        comment.setAuthor(author);
+        comment.setAd(ad);
+        commentRepository.save(comment);
+    }
+
+    @AfterEach
+    void tearDown() {
+        commentRepository.deleteAll();
+        adRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void openEntityManagerInViewInterceptor_ShouldNotBeRegistered() {
+        assertThat(applicationContext.getBeansOfType(OpenEntityManagerInViewInterceptor.class)).isEmpty();
+    }
+
+    @Test
+    void lazyAssociation_OutsideTransaction_ShouldFail() {
+        AdsDao detached = adRepository.findById(ad.getPk()).orElseThrow();
+
+        assertThatThrownBy(() -> detached.getAuthor().getFirstName())
+                .isInstanceOf(LazyInitializationException.class);
+    }
+
+    @Test
+    void readEndpoints_ShouldReturnFullyMappedDtos() {
+        ResponseEntity<ExtendedAdDto> extendedAd = withAuth(EMAIL, PASSWORD)
+                .getForEntity(baseUrl() + "/ads/{id}", ExtendedAdDto.class, ad.getPk());
+        assertThat(extendedAd.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(extendedAd.getBody().getAuthorFirstName()).isEqualTo("Иван");
+        assertThat(extendedAd.getBody().getEmail()).isEqualTo(EMAIL);
+
+        ResponseEntity<CommentsDto> comments = withAuth(EMAIL, PASSWORD)
+                .getForEntity(baseUrl() + "/ads/{id}/comments", CommentsDto.class, ad.getPk());
+        assertThat(comments.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(comments.getBody().getResults()).singleElement()
+                                                   .extracting("authorFirstName").isEqualTo("Иван");
+
+        ResponseEntity<AdsDto> myAds = withAuth(EMAIL, PASSWORD).getForEntity(baseUrl() + "/ads/me", AdsDto.class);
+        assertThat(myAds.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(myAds.getBody().getResults()).singleElement().extracting("author").isNotNull();
+
+        ResponseEntity<UserDto> me = withAuth(EMAIL, PASSWORD).getForEntity(baseUrl() + "/users/me", UserDto.class);
+        assertThat(me.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(me.getBody().getEmail()).isEqualTo(EMAIL);
+    }
+}
@@ -0,0 +1,185 @@
+package ru.skypro.homework;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import ru.skypro.homework.datasource.ReplicaLagMonitor;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Маршрутизация на реплику на настоящей потоковой репликации: реплика создаётся {@code pg_basebackup}
+ * с primary и работает в режиме hot standby. Пул, обслуживший транзакцию, определяется по {@code pg_is_in_recovery()}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class ReadReplicaRoutingIntegrationTest {
+
+    private static final String IN_RECOVERY = "select pg_is_in_recovery()";
+
+    private static final Network network = Network.newNetwork();
+
+    private static final PostgreSQLContainer<?> primary;
+
+    private static final GenericContainer<?> replica;
+
+    static {
+        System.setProperty("docker.client.version", "1.44");
+        System.setProperty("testcontainers.ryuk.disabled", "true");
+        Duration timeout = "true".equals(System.getenv("CI")) ? Duration.ofMinutes(3) : Duration.ofMinutes(1);
+        primary = new PostgreSQLContainer<>("postgres:15")
+                .withNetwork(network)
+                .withNetworkAliases("pg-primary")
+                .withDatabaseName("testdb")
+                .withUsername("test")
+                .withPassword("test")
+                .withStartupTimeout(timeout);
+        primary.start();
+        allowReplicationConnections();
+        replica = new GenericContainer<>("postgres:15")
+                .withNetwork(network)
+                .withEnv("PGPASSWORD", "test")
+                .withExposedPorts(5432)
+                .withCommand("bash", "-c",
+                        "gosu postgres pg_basebackup -h pg-primary -U test -D /var/lib/postgresql/data/replica"
+                                + " -R -X stream -c fast"
+                                + " && exec gosu postgres postgres -D /var/lib/postgresql/data/replica")
+                .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1))
+                .withStartupTimeout(timeout);
+        replica.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            replica.stop();
+            primary.stop();
+            network.close();
+        }));
+    }
+
+    private static void allowReplicationConnections() {
+        try {
+            primary.execInContainer("bash", "-c",
+                    "echo 'host replication all all scram-sha-256' >> /var/lib/postgresql/data/pg_hba.conf");
+            primary.execInContainer("psql", "-U", "test", "-d", "testdb", "-c", "select pg_reload_conf()");
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to enable replication on primary", e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", primary::getJdbcUrl);
+        registry.add("spring.datasource.username", primary::getUsername);
+        registry.add("spring.datasource.password", primary::getPassword);
+        registry.add("app.datasource.replica.url", () -> "jdbc:postgresql://" + replica.getHost() + ":"
+                + replica.getMappedPort(5432) + "/testdb?socketTimeout=2");
+        registry.add("app.datasource.replica.hikari.connection-timeout", () -> "2000");
+        registry.add("app.datasource.replica.sticky-window", () -> "1m");
+        // Проверку отставания тест вызывает сам
+        registry.add("app.datasource.replica.lag-check-interval-ms", () -> "3600000");
+        registry.add("app.image.avatar-dir", () -> "./target/test-avatars");
+        registry.add("app.image.ad-dir", () -> "./target/test-ads-images");
+        registry.add("app.rate-limit.enabled", () -> "false");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @BeforeEach
+    void setUp() {
+        replicaLagMonitor.check();
+        assertThat(replicaLagMonitor.isAvailable()).isTrue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldRunOnReplica() {
+        assertThat(inRecovery(true)).isTrue();
+    }
+
+    @Test
+    void readWriteTransaction_ShouldRunOnPrimary() {
+        assertThat(inRecovery(false)).isFalse();
+    }
+
+    @Test
+    void replica_ShouldReceiveWritesFromPrimary() throws InterruptedException {
+        jdbcTemplate.execute("create table if not exists replication_probe (id int)");
+        jdbcTemplate.update("insert into replication_probe values (42)");
+
+        Integer replicated = null;
+        for (int attempt = 0; attempt < 50 && replicated == null; attempt++) {
+            replicated = readOnly().execute(status -> jdbcTemplate.query(
+                    "select id from replication_probe where id = 42", rs -> rs.next() ? rs.getInt(1) : null));
+            if (replicated == null) {
+                Thread.sleep(100);
+            }
+        }
+        assertThat(replicated).isEqualTo(42);
+    }
+
+    @Test
+    void readAfterOwnWrite_ShouldStayOnPrimaryForThatUserOnly() {
+        authenticate("writer@example.com");
+        assertThat(inRecovery(false)).isFalse();
+
+        assertThat(inRecovery(true)).isFalse();
+
+        authenticate("reader@example.com");
+        assertThat(inRecovery(true)).isTrue();
+    }
+
+    @Test
+    void unreachableReplica_ShouldFallBackToPrimary() {
+        String containerId = replica.getContainerId();
+        replica.getDockerClient().pauseContainerCmd(containerId).exec();
+        try {
+            replicaLagMonitor.check();
+            assertThat(replicaLagMonitor.isAvailable()).isFalse();
+            assertThat(inRecovery(true)).isFalse();
+        } finally {
+            replica.getDockerClient().unpauseContainerCmd(containerId).exec();
+        }
+        replicaLagMonitor.check();
+        assertThat(inRecovery(true)).isTrue();
+    }
+
+    private Boolean inRecovery(boolean readOnly) {
+        TransactionTemplate template = readOnly ? readOnly() : new TransactionTemplate(transactionManager);
+        return template.execute(status -> jdbcTemplate.queryForObject(IN_RECOVERY, Boolean.class));
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                username, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+}
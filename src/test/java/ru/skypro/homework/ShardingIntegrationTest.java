@@ -0,0 +1,478 @@
+package ru.skypro.homework;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.skypro.homework.dto.ad.AdDto;
+import ru.skypro.homework.dto.ad.AdsDto;
+import ru.skypro.homework.dto.ad.CreateOrUpdateAdDto;
+import ru.skypro.homework.dto.ad.ExtendedAdDto;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.dto.comment.CommentsDto;
+import ru.skypro.homework.dto.comment.CreateOrUpdateCommentDto;
+import ru.skypro.homework.model.UsersDao;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.DatabaseUserDetailsManager;
+import ru.skypro.homework.service.ImageService;
+import ru.skypro.homework.sharding.ShardDataSources;
+import ru.skypro.homework.sharding.ShardDirectory;
+import ru.skypro.homework.sharding.ShardRebalancer;
+import ru.skypro.homework.sharding.ShardUserReplicator;
+import ru.skypro.homework.sharding.ShardingProperties;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Шардирование на двух узлах PostgreSQL: основной ({@code main}) и {@code shard-1} с индексом 1.
+ * Корзины переносятся без паузы ({@code app.sharding.settle-time=0s}): экземпляр приложения один.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ShardingIntegrationTest {
+
+    private static final String SHARD = "shard-1";
+    private static final String PASSWORD = "password";
+
+    private static final PostgreSQLContainer<?> main;
+
+    private static final PostgreSQLContainer<?> shard;
+
+    static {
+        System.setProperty("docker.client.version", "1.44");
+        System.setProperty("testcontainers.ryuk.disabled", "true");
+        Duration timeout = "true".equals(System.getenv("CI")) ? Duration.ofMinutes(3) : Duration.ofMinutes(1);
+        main = new PostgreSQLContainer<>("postgres:15")
+                .withDatabaseName("testdb")
+                .withUsername("test")
+                .withPassword("test")
+                .withStartupTimeout(timeout);
+        shard = new PostgreSQLContainer<>("postgres:15")
+                .withDatabaseName("testdb")
+                .withUsername("test")
+                .withPassword("test")
+                .withStartupTimeout(timeout);
+        main.start();
+        shard.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            shard.stop();
+            main.stop();
+        }));
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", main::getJdbcUrl);
+        registry.add("spring.datasource.username", main::getUsername);
+        registry.add("spring.datasource.password", main::getPassword);
+        registry.add("app.sharding.enabled", () -> "true");
+        registry.add("app.sharding.settle-time", () -> "0s");
+        registry.add("app.sharding.shards[0].name", () -> SHARD);
+        registry.add("app.sharding.shards[0].index", () -> "1");
+        registry.add("app.sharding.shards[0].url", shard::getJdbcUrl);
+        // исправный шард успевает получить пользователя до ответа, тесты не ждут фонового копирования
+        registry.add("app.sharding.user-replication-timeout", () -> "10s");
+        registry.add("app.image.avatar-dir", () -> "./target/test-avatars");
+        registry.add("app.image.ad-dir", () -> "./target/test-ads-images");
+        registry.add("app.rate-limit.enabled", () -> "false");
+        // по разрешению на шард: запрос ленты не должен брать лишнее разрешение на время параллельного сбора
+        registry.add("app.db-bulkhead.routes[0].name", () -> "public-read");
+        registry.add("app.db-bulkhead.routes[0].methods", () -> "GET");
+        registry.add("app.db-bulkhead.routes[0].patterns", () -> "/ads,/ads/{id:\\d+},/ads/{id:\\d+}/comments");
+        registry.add("app.db-bulkhead.routes[0].max-concurrent", () -> "2");
+        registry.add("app.db-bulkhead.routes[0].max-wait", () -> "200ms");
+        registry.add("app.db-bulkhead.routes[1].name", () -> "write");
+        registry.add("app.db-bulkhead.routes[1].methods", () -> "POST,PUT,PATCH,DELETE");
+        registry.add("app.db-bulkhead.routes[1].patterns", () -> "/**");
+        registry.add("app.db-bulkhead.routes[1].max-concurrent", () -> "4");
+        registry.add("app.db-bulkhead.routes[1].max-wait", () -> "2s");
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DatabaseUserDetailsManager userDetailsManager;
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private ShardUserReplicator shardUserReplicator;
+
+    @MockBean
+    private ImageService imageService;
+
+    private UsersDao author;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(imageService.saveImage(any(InputStream.class), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    invocation.<InputStream>getArgument(0).readAllBytes();
+                    return "/ads-images/" + UUID.randomUUID() + ".jpg";
+                });
+        author = createUser("author-" + UUID.randomUUID() + "@test.com");
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (String name : shardDataSources.names()) {
+            shardDataSources.jdbc(name).update("DELETE FROM ads");
+            shardDataSources.jdbc(name).update("DELETE FROM ads_archive");
+            shardDataSources.jdbc(name).update("DELETE FROM shard_bucket_fences");
+        }
+        shardDataSources.jdbc(ShardingProperties.MAIN).update("DELETE FROM shard_buckets");
+        shardDirectory.refresh();
+    }
+
+    @Test
+    void userChanges_ShouldBeCopiedToShards() {
+        assertThat(shardUser(author.getId())).isEqualTo(author.getEmail());
+
+        author.setFirstName("Пётр");
+        userRepository.save(author);
+        assertThat(shardJdbc().queryForObject("SELECT first_name FROM users WHERE id = ?", String.class,
+                author.getId())).isEqualTo("Пётр");
+
+        userDetailsManager.deleteUser(author.getEmail());
+        assertThat(shardJdbc().queryForObject("SELECT count(*) FROM users WHERE id = ?", Integer.class,
+                author.getId())).isZero();
+    }
+
+    @Test
+    void failedReplication_ShouldBeRetriedWithoutBlockingRequests() throws Exception {
+        shardJdbc().execute("ALTER TABLE users ADD CONSTRAINT users_blocked CHECK (first_name <> 'Пётр') NOT VALID");
+        try {
+            author.setFirstName("Пётр");
+            userRepository.save(author);
+            assertThat(shardUserReplicator.pending(SHARD)).isEqualTo(1);
+            assertThat(shardFirstName(author.getId())).isEqualTo("Иван");
+
+            author.setFirstName("Пётр");
+            author.setLastName("Петров");
+            long started = System.nanoTime();
+            userRepository.save(author);
+            assertThat(Duration.ofNanos(System.nanoTime() - started))
+                    .as("request does not wait for shard with pending retries")
+                    .isLessThan(Duration.ofSeconds(5));
+        } finally {
+            shardJdbc().execute("ALTER TABLE users DROP CONSTRAINT users_blocked");
+        }
+
+        shardUserReplicator.retryPending();
+
+        awaitUntil("retried replication", () -> shardUserReplicator.pending(SHARD) == 0
+                && "Петров".equals(shardJdbc().queryForObject("SELECT last_name FROM users WHERE id = ?",
+                String.class, author.getId())));
+        assertThat(shardFirstName(author.getId())).isEqualTo("Пётр");
+    }
+
+    @Test
+    void reconcileInBackground_ShouldRepairDivergedShard() throws Exception {
+        UsersDao stray = createUser("stray-" + UUID.randomUUID() + "@test.com");
+        mainJdbc().update("DELETE FROM users WHERE id = ?", stray.getId());
+        shardJdbc().update("UPDATE users SET first_name = 'Расхождение' WHERE id = ?", author.getId());
+
+        shardUserReplicator.reconcileInBackground();
+
+        awaitUntil("reconciled users", () -> "Иван".equals(shardFirstName(author.getId()))
+                && shardUser(stray.getId()) == null);
+    }
+
+    @Test
+    void moveBucket_ShouldMoveAdsWithCommentsToTargetShard() {
+        int adId = insertAd(mainJdbc(), "Moved Ad");
+        mainJdbc().update("INSERT INTO comments (text, created_at, user_id, ad_id) VALUES ('Nice', localtimestamp, ?, ?)",
+                author.getId(), adId);
+
+        ShardRebalancer.MoveResult result = shardRebalancer.moveBucket(bucket(), SHARD);
+
+        assertThat(result.getAds()).isEqualTo(1);
+        assertThat(result.getComments()).isEqualTo(1);
+        assertThat(shardDirectory.shardOf(author.getId())).isEqualTo(SHARD);
+        assertThat(shardDirectory.isMoving(author.getId())).isFalse();
+        assertThat(count(mainJdbc(), adId)).isZero();
+        assertThat(count(shardJdbc(), adId)).isEqualTo(1);
+        assertThat(fenced(mainJdbc())).as("source shard keeps rejecting writes from stale directories").isTrue();
+        assertThat(fenced(shardJdbc())).isFalse();
+
+        ResponseEntity<ExtendedAdDto> ad = authorRequest().getForEntity(url("/ads/{id}"), ExtendedAdDto.class, adId);
+        assertThat(ad.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(ad.getBody().getTitle()).isEqualTo("Moved Ad");
+        assertThat(ad.getBody().getEmail()).isEqualTo(author.getEmail());
+
+        ResponseEntity<CommentsDto> comments = authorRequest()
+                .getForEntity(url("/ads/{id}/comments"), CommentsDto.class, adId);
+        assertThat(comments.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(comments.getBody().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getAllAds_ShouldMergeShardsById() {
+        UsersDao other = createUser("other-" + UUID.randomUUID() + "@test.com");
+        int mainAd = insertAd(mainJdbc(), "Main Ad", other.getId());
+        shardRebalancer.moveBucket(bucket(), SHARD);
+        int shardAd = insertAd(shardJdbc(), "Shard Ad");
+
+        ResponseEntity<AdsDto> response = restTemplate.getForEntity(url("/ads"), AdsDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getResults()).extracting(AdDto::getPk).containsExactlyInAnyOrder(mainAd, shardAd);
+        assertThat(response.getBody().getResults()).extracting(AdDto::getPk).isSorted();
+        assertThat(response.getBody().getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void addAd_ShouldBeCreatedOnAuthorsShardWithItsIdRemainder() throws Exception {
+        shardRebalancer.moveBucket(bucket(), SHARD);
+
+        ResponseEntity<AdDto> response = authorRequest().postForEntity(url("/ads"), newAd("Shard Ad"), AdDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        int adId = response.getBody().getPk();
+        assertThat(adId % 16).isEqualTo(1);
+        assertThat(count(shardJdbc(), adId)).isEqualTo(1);
+        assertThat(count(mainJdbc(), adId)).isZero();
+
+        ResponseEntity<AdsDto> mine = authorRequest().getForEntity(url("/ads/me"), AdsDto.class);
+        assertThat(mine.getBody().getResults()).extracting(AdDto::getPk).containsExactly(adId);
+    }
+
+    @Test
+    void writeToMovingBucket_ShouldReturnServiceUnavailable() {
+        int adId = insertAd(mainJdbc(), "Moving Ad");
+        mainJdbc().update("INSERT INTO shard_buckets (bucket, shard, moving) VALUES (?, ?, true)",
+                bucket(), ShardingProperties.MAIN);
+        shardDirectory.refresh();
+
+        CreateOrUpdateAdDto update = new CreateOrUpdateAdDto();
+        update.setTitle("Changed Title");
+        update.setDescription("Changed Description");
+        update.setPrice(500);
+        ResponseEntity<String> write = authorRequest().exchange(url("/ads/{id}"), HttpMethod.PATCH,
+                new HttpEntity<>(update), String.class, adId);
+        ResponseEntity<ExtendedAdDto> read = authorRequest().getForEntity(url("/ads/{id}"), ExtendedAdDto.class, adId);
+
+        assertThat(write.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(write.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNotNull();
+        assertThat(read.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(read.getBody().getTitle()).isEqualTo("Moving Ad");
+    }
+
+    @Test
+    void moveBucketBack_ShouldLiftFenceOnReturningShard() {
+        shardRebalancer.moveBucket(bucket(), SHARD);
+
+        shardRebalancer.moveBucket(bucket(), ShardingProperties.MAIN);
+
+        assertThat(fenced(mainJdbc())).isFalse();
+        assertThat(fenced(shardJdbc())).isTrue();
+    }
+
+    @Test
+    void moveBucket_ShouldWaitForWriteThatPassedBucketCheckAndCopyItsRow() throws Exception {
+        CountDownLatch checked = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        // запись, прошедшая проверку до начала переноса (например, POST /ads, загружавший файл дольше settle-time)
+        CompletableFuture<Integer> write = CompletableFuture.supplyAsync(() ->
+                shardDataSources.transactions(ShardingProperties.MAIN).execute(status -> {
+                    assertThat(mainJdbc().queryForObject("SELECT shard_bucket_lock_for_write(?)", Boolean.class,
+                            bucket())).isTrue();
+                    checked.countDown();
+                    await(proceed);
+                    return insertAd(mainJdbc(), "Slow Ad");
+                }));
+        await(checked);
+
+        CompletableFuture<ShardRebalancer.MoveResult> move =
+                CompletableFuture.supplyAsync(() -> shardRebalancer.moveBucket(bucket(), SHARD));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (mainJdbc().queryForObject("SELECT count(*) FROM pg_locks WHERE locktype = 'advisory' AND NOT granted "
+                + "AND database = (SELECT oid FROM pg_database WHERE datname = current_database())",
+                Integer.class) == 0) {
+            assertThat(System.nanoTime()).as("move waits for the write").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        proceed.countDown();
+        int adId = write.get(10, TimeUnit.SECONDS);
+
+        assertThat(move.get(10, TimeUnit.SECONDS).getAds()).isEqualTo(1);
+        assertThat(count(shardJdbc(), adId)).isEqualTo(1);
+        assertThat(count(mainJdbc(), adId)).isZero();
+    }
+
+    @Test
+    void writeToFencedBucket_ShouldBeRejectedInsideTransaction() throws Exception {
+        int adId = insertAd(mainJdbc(), "Fenced Ad");
+        // каталог этого экземпляра устарел: корзина уже переносится, но запрос выбрал шард по старым данным
+        mainJdbc().update("INSERT INTO shard_bucket_fences (bucket) VALUES (?)", bucket());
+
+        ResponseEntity<String> created = authorRequest().postForEntity(url("/ads"), newAd("Late Ad"), String.class);
+        CreateOrUpdateCommentDto comment = new CreateOrUpdateCommentDto();
+        comment.setText("Late comment");
+        ResponseEntity<String> commented = authorRequest()
+                .postForEntity(url("/ads/{id}/comments"), comment, String.class, adId);
+
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(created.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNotNull();
+        assertThat(commented.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(mainJdbc().queryForObject("SELECT count(*) FROM ads WHERE user_id = ?", Integer.class,
+                author.getId())).isEqualTo(1);
+        assertThat(mainJdbc().queryForObject("SELECT count(*) FROM comments WHERE ad_id = ?", Integer.class, adId))
+                .isZero();
+    }
+
+    @Test
+    void deleteUser_ShouldDeleteTheirAdsOnShard() {
+        shardRebalancer.moveBucket(bucket(), SHARD);
+        int adId = insertAd(shardJdbc(), "Shard Ad");
+
+        userDetailsManager.deleteUser(author.getEmail());
+
+        assertThat(count(shardJdbc(), adId)).isZero();
+        assertThat(shardUser(author.getId())).isNull();
+    }
+
+    private UsersDao createUser(String email) {
+        UsersDao user = new UsersDao();
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode(PASSWORD));
+        user.setFirstName("Иван");
+        user.setLastName("Иванов");
+        user.setPhone("+7 (999) 123-45-67");
+        user.setRole(Role.USER);
+        return userRepository.save(user);
+    }
+
+    private HttpEntity<MultiValueMap<String, Object>> newAd(String title) throws Exception {
+        CreateOrUpdateAdDto properties = new CreateOrUpdateAdDto();
+        properties.setTitle(title);
+        properties.setDescription("Description of " + title);
+        properties.setPrice(100);
+        HttpHeaders jsonHeaders = new HttpHeaders();
+        jsonHeaders.setContentType(MediaType.APPLICATION_JSON);
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("properties", new HttpEntity<>(objectMapper.writeValueAsString(properties), jsonHeaders));
+        body.add("image", new ByteArrayResource("image content".getBytes()) {
+            @Override
+            public String getFilename() {
+                return "image.jpg";
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return new HttpEntity<>(body, headers);
+    }
+
+    private int insertAd(JdbcTemplate jdbc, String title) {
+        return insertAd(jdbc, title, author.getId());
+    }
+
+    private int insertAd(JdbcTemplate jdbc, String title, int userId) {
+        return jdbc.queryForObject("INSERT INTO ads (title, description, price, user_id) "
+                + "VALUES (?, 'Description', 100, ?) RETURNING pk", Integer.class, title, userId);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitUntil(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as(description).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private boolean fenced(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT count(*) FROM shard_bucket_fences WHERE bucket = ?", Integer.class,
+                bucket()) > 0;
+    }
+
+    private int count(JdbcTemplate jdbc, int adId) {
+        return jdbc.queryForObject("SELECT count(*) FROM ads WHERE pk = ?", Integer.class, adId);
+    }
+
+    private String shardFirstName(int userId) {
+        return shardJdbc().queryForObject("SELECT first_name FROM users WHERE id = ?", String.class, userId);
+    }
+
+    private String shardUser(int userId) {
+        return shardJdbc().query("SELECT email FROM users WHERE id = ?",
+                rs -> rs.next() ? rs.getString(1) : null, userId);
+    }
+
+    private int bucket() {
+        return shardDirectory.bucketOf(author.getId());
+    }
+
+    private JdbcTemplate mainJdbc() {
+        return shardDataSources.jdbc(ShardingProperties.MAIN);
+    }
+
+    private JdbcTemplate shardJdbc() {
+        return shardDataSources.jdbc(SHARD);
+    }
+
+    private TestRestTemplate authorRequest() {
+        return restTemplate.withBasicAuth(author.getEmail(), PASSWORD);
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
@@ -0,0 +1,147 @@
+package ru.skypro.homework.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkheadDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DataSource pool;
+
+    private BulkheadDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+
+        DbBulkheadProperties.Route publicRead = new DbBulkheadProperties.Route();
+        publicRead.setName("public-read");
+        publicRead.setMethods(List.of("GET"));
+        publicRead.setPatterns(List.of("/ads", "/ads/{id:\\d+}", "/ads/{id:\\d+}/comments"));
+        publicRead.setMaxConcurrent(2);
+        publicRead.setMaxWait(Duration.ofMillis(50));
+
+        DbBulkheadProperties properties = new DbBulkheadProperties();
+        properties.setAuthentication(new DbBulkheadProperties.Limit(1, Duration.ofMillis(50)));
+        properties.setRoutes(List.of(publicRead));
+
+        ConnectionBulkheads bulkheads = new ConnectionBulkheads(properties);
+        bulkheads.bindTo(meterRegistry);
+        dataSource = new BulkheadDataSource(pool, bulkheads);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void getConnection_ShouldTimeOutWhenBulkheadIsFull() throws SQLException {
+        handlerRequest("GET", "/ads");
+        dataSource.getConnection();
+        dataSource.getConnection();
+
+        assertThatThrownBy(dataSource::getConnection)
+                .isInstanceOf(SQLTransientConnectionException.class)
+                .hasMessageContaining("public-read");
+        assertThat(meterRegistry.get("app.db.bulkhead.acquire")
+                                .tag("bulkhead", "public-read").tag("outcome", "timeout")
+                                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void close_ShouldReleasePlaceOnlyOnce() throws SQLException {
+        handlerRequest("GET", "/ads/1");
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+
+        first.close();
+        first.close();
+
+        assertThat(active("public-read")).isEqualTo(1);
+        Connection third = dataSource.getConnection();
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        verify(DataSourceUtils.getTargetConnection(first)).close();
+        second.close();
+        third.close();
+        assertThat(active("public-read")).isZero();
+    }
+
+    @Test
+    void filterChainLookups_ShouldNotWaitBehindFullPublicReads() throws SQLException {
+        handlerRequest("GET", "/ads");
+        dataSource.getConnection();
+        dataSource.getConnection();
+
+        MockHttpServletRequest authentication = new MockHttpServletRequest("GET", "/ads");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(authentication));
+
+        assertThat(dataSource.getConnection()).isNotNull();
+        assertThat(active("authentication")).isEqualTo(1);
+    }
+
+    @Test
+    void unmatchedRequest_ShouldNotBeLimited() throws SQLException {
+        handlerRequest("GET", "/users/me");
+        for (int i = 0; i < 5; i++) {
+            dataSource.getConnection();
+        }
+
+        assertThat(active("public-read")).isZero();
+    }
+
+    @Test
+    void ownAdsAndExport_ShouldNotTakePublicReadBulkhead() throws SQLException {
+        handlerRequest("GET", "/ads/1/comments");
+        dataSource.getConnection();
+        assertThat(active("public-read")).isEqualTo(1);
+
+        handlerRequest("GET", "/ads/me");
+        dataSource.getConnection();
+        handlerRequest("GET", "/ads/export");
+        dataSource.getConnection();
+
+        assertThat(active("public-read")).isEqualTo(1);
+    }
+
+    @Test
+    void failedPoolCheckout_ShouldReleasePlace() throws SQLException {
+        handlerRequest("GET", "/ads");
+        when(pool.getConnection()).thenThrow(new SQLTransientConnectionException("pool exhausted"));
+
+        assertThatThrownBy(dataSource::getConnection).hasMessage("pool exhausted");
+        assertThat(active("public-read")).isZero();
+    }
+
+    private void handlerRequest(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, path);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private double active(String bulkhead) {
+        return meterRegistry.get("app.db.bulkhead.active").tag("bulkhead", bulkhead).gauge().value();
+    }
+}
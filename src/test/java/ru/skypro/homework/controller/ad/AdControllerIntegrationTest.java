@@ -1,6 +1,8 @@
 package ru.skypro.homework.controller.ad;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,15 +16,16 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.multipart.MultipartFile;
 import ru.skypro.homework.dto.ad.AdDto;
 import ru.skypro.homework.dto.ad.AdsDto;
 import ru.skypro.homework.dto.ad.CreateOrUpdateAdDto;
 import ru.skypro.homework.dto.ad.ExtendedAdDto;
 import ru.skypro.homework.dto.auth.Role;
 import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.model.CommentsDao;
 import ru.skypro.homework.model.UsersDao;
 import ru.skypro.homework.AbstractIntegrationTest;
 import ru.skypro.homework.repository.AdRepository;
@@ -30,15 +33,25 @@ import ru.skypro.homework.repository.CommentRepository;
 import ru.skypro.homework.repository.UserRepository;
 import ru.skypro.homework.service.ImageService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class AdControllerIntegrationTest extends AbstractIntegrationTest {
 
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
     @Autowired
     private UserRepository userRepository;
 
@@ -62,7 +75,6 @@ class AdControllerIntegrationTest extends AbstractIntegrationTest {
     private final String userPassword = "password";
     private final String adminEmail = "admin@test.com";
     private final String adminPassword = "admin";
-
     @BeforeEach
     void setUp() throws Exception {
         testUser = new UsersDao();
@@ -91,15 +103,11 @@ class AdControllerIntegrationTest extends AbstractIntegrationTest {
         testAd.setImage("/ads-images/test.jpg");
         adRepository.save(testAd);
 
-        when(imageService.saveImage(any(MultipartFile.class), anyString(), anyString()))
+        when(imageService.saveImage(any(InputStream.class), anyString(), anyString()))
                 .thenAnswer(invocation -> {
-                    MultipartFile file = invocation.getArgument(0);
-                    String originalFilename = file.getOriginalFilename();
-                    String extension = "";
-                    if (originalFilename != null && originalFilename.contains(".")) {
-                        extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                    }
-                    return "/ads-images/" + UUID.randomUUID() + extension;
+                    InputStream image = invocation.getArgument(0);
+                    image.readAllBytes();
+                    return "/ads-images/" + UUID.randomUUID() + ".jpg";
                 });
 
         when(imageService.readImageAsBytes(anyString(), anyString()))
@@ -184,6 +192,82 @@ class AdControllerIntegrationTest extends AbstractIntegrationTest {
         return requestEntity;
     }
 
+    @Test
+    void addAd_ShouldStoreImageOutsideTransaction() throws Exception {
+        AtomicBoolean transactionActive = new AtomicBoolean(true);
+        when(imageService.saveImage(any(InputStream.class), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    transactionActive.set(TransactionSynchronizationManager.isActualTransactionActive());
+                    InputStream image = invocation.getArgument(0);
+                    image.readAllBytes();
+                    return "/ads-images/" + UUID.randomUUID() + ".jpg";
+                });
+
+        CreateOrUpdateAdDto properties = new CreateOrUpdateAdDto();
+        properties.setTitle("New Ad");
+        properties.setDescription("New Description");
+        properties.setPrice(999);
+        ByteArrayResource propertiesPart = new ByteArrayResource(objectMapper.writeValueAsBytes(properties));
+        HttpHeaders jsonHeaders = new HttpHeaders();
+        jsonHeaders.setContentType(MediaType.APPLICATION_JSON);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        ResponseEntity<AdDto> response = withAuth(userEmail, userPassword)
+                .postForEntity(baseUrl() + "/ads", getMultiValueMapHttpEntity(propertiesPart, jsonHeaders, headers), AdDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(transactionActive).isFalse();
+    }
+
+    @Test
+    void addAd_WithImageBeforeProperties_ShouldCreateAd() throws Exception {
+        ResponseEntity<AdDto> response = withAuth(userEmail, userPassword)
+                .postForEntity(baseUrl() + "/ads", imageFirst(999), AdDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody().getTitle()).isEqualTo("New Ad");
+        assertThat(adRepository.findByAuthorId(testUser.getId())).hasSize(2);
+    }
+
+    @Test
+    void addAd_WithImageBeforeInvalidProperties_ShouldDeleteSavedImage() throws Exception {
+        when(imageService.saveImage(any(InputStream.class), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    invocation.<InputStream>getArgument(0).readAllBytes();
+                    return "/ads-images/saved-first.jpg";
+                });
+
+        ResponseEntity<String> response = withAuth(userEmail, userPassword)
+                .postForEntity(baseUrl() + "/ads", imageFirst(-1), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(adRepository.findByAuthorId(testUser.getId())).hasSize(1);
+        verify(imageService).deleteImage(eq("/ads-images/saved-first.jpg"), anyString());
+    }
+
+    private HttpEntity<MultiValueMap<String, Object>> imageFirst(int price) throws Exception {
+        CreateOrUpdateAdDto properties = new CreateOrUpdateAdDto();
+        properties.setTitle("New Ad");
+        properties.setDescription("New Description");
+        properties.setPrice(price);
+        HttpHeaders jsonHeaders = new HttpHeaders();
+        jsonHeaders.setContentType(MediaType.APPLICATION_JSON);
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("image", new ByteArrayResource("image content".getBytes()) {
+            @Override
+            public String getFilename() {
+                return "image.jpg";
+            }
+        });
+        body.add("properties", new HttpEntity<>(objectMapper.writeValueAsString(properties), jsonHeaders));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return new HttpEntity<>(body, headers);
+    }
+
     @Test
     void getAd_ShouldReturnExtendedAd() {
         ResponseEntity<ExtendedAdDto> response = withAuth(userEmail, userPassword)
@@ -202,6 +286,52 @@ class AdControllerIntegrationTest extends AbstractIntegrationTest {
         assertThat(response.getBody().getImage()).isEqualTo(testAd.getImage());
     }
 
+    @Test
+    void exportAds_ByAdmin_ShouldStreamAllAds() {
+        for (int i = 0; i < 3; i++) {
+            AdsDao ad = new AdsDao();
+            ad.setTitle("Export Ad " + i);
+            ad.setDescription("Export Description");
+            ad.setPrice(100 + i);
+            ad.setAuthor(testUser);
+            ad.setImage("/ads-images/export.jpg");
+            adRepository.save(ad);
+        }
+
+        ResponseEntity<AdsDto> response = withAuth(adminEmail, adminPassword)
+                .getForEntity(baseUrl() + "/ads/export", AdsDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody().getCount()).isEqualTo(adRepository.count());
+        assertThat(response.getBody().getResults()).hasSize((int) adRepository.count());
+        assertThat(response.getBody().getResults()).extracting(AdDto::getPk).isSorted();
+    }
+
+    @Test
+    void exportAds_WithoutSharding_ShouldWriteCountBeforeResults() {
+        AdsDao ad = new AdsDao();
+        ad.setTitle("Export Ad");
+        ad.setDescription("Export Description");
+        ad.setPrice(100);
+        ad.setAuthor(testUser);
+        adRepository.save(ad);
+
+        ResponseEntity<String> response = withAuth(adminEmail, adminPassword)
+                .getForEntity(baseUrl() + "/ads/export", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).startsWith("{\"count\":" + adRepository.count() + ",\"results\":[");
+    }
+
+    @Test
+    void exportAds_ByUser_ShouldReturnForbidden() {
+        ResponseEntity<String> response = withAuth(userEmail, userPassword)
+                .getForEntity(baseUrl() + "/ads/export", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
     @Test
     void removeAd_ByAuthor_ShouldReturnNoContent() {
         ResponseEntity<Void> response = withAuth(userEmail, userPassword)
@@ -209,6 +339,25 @@ class AdControllerIntegrationTest extends AbstractIntegrationTest {
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
         assertThat(adRepository.findById(testAd.getPk())).isEmpty();
+        verify(imageService, timeout(5000)).deleteImage(eq("/ads-images/test.jpg"), anyString());
+    }
+
+    @Test
+    void removeAd_ShouldRemoveCommentsWithDatabaseCascade() {
+        for (int i = 0; i < 3; i++) {
+            CommentsDao comment = new CommentsDao();
+            comment.setText("Comment " + i);
+            comment.setCreatedAt(LocalDateTime.now());
+            comment.setAuthor(adminUser);
+            comment.setAd(testAd);
+            commentRepository.save(comment);
+        }
+
+        ResponseEntity<Void> response = withAuth(userEmail, userPassword)
+                .exchange(baseUrl() + "/ads/" + testAd.getPk(), HttpMethod.DELETE, null, Void.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(commentRepository.countByAdPk(testAd.getPk())).isZero();
     }
 
     @Test
@@ -262,6 +411,45 @@ class AdControllerIntegrationTest extends AbstractIntegrationTest {
         assertThat(updated.getDescription()).isEqualTo("Updated Description");
     }
 
+    @Test
+    void getAllAds_WithSmileAccept_ShouldReturnSmile() throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBasicAuth(userEmail, userPassword);
+        headers.setAccept(List.of(SMILE));
+
+        ResponseEntity<byte[]> response = restTemplate.exchange(baseUrl() + "/ads", HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isNotNull();
+        assertThat(response.getHeaders().getContentType().isCompatibleWith(SMILE)).isTrue();
+        AdsDto ads = new ObjectMapper(new SmileFactory()).readValue(response.getBody(), AdsDto.class);
+        assertThat(ads.getResults()).extracting(AdDto::getPk).contains(testAd.getPk());
+    }
+
+    @Test
+    void updateAd_WithCborBodyAndAccept_ShouldReadAndReturnCbor() throws IOException {
+        CreateOrUpdateAdDto update = new CreateOrUpdateAdDto();
+        update.setTitle("CBOR Title");
+        update.setDescription("CBOR Description");
+        update.setPrice(3000);
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBasicAuth(userEmail, userPassword);
+        headers.setContentType(MediaType.APPLICATION_CBOR);
+        headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+
+        ResponseEntity<byte[]> response = restTemplate.exchange(baseUrl() + "/ads/" + testAd.getPk(),
+                HttpMethod.PATCH, new HttpEntity<>(cborMapper.writeValueAsBytes(update), headers), byte[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isNotNull();
+        assertThat(response.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_CBOR)).isTrue();
+        AdDto updated = cborMapper.readValue(response.getBody(), AdDto.class);
+        assertThat(updated.getTitle()).isEqualTo("CBOR Title");
+        assertThat(updated.getPrice()).isEqualTo(3000);
+    }
+
     @Test
     void getAdsMe_ShouldReturnUserAds() {
         ResponseEntity<AdsDto> response = withAuth(userEmail, userPassword)
@@ -13,7 +13,6 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.multipart.MultipartFile;
 import ru.skypro.homework.dto.auth.Role;
 import ru.skypro.homework.dto.user.NewPasswordDto;
 import ru.skypro.homework.dto.user.UpdateUserDto;
@@ -25,6 +24,7 @@ import ru.skypro.homework.repository.CommentRepository;
 import ru.skypro.homework.repository.UserRepository;
 import ru.skypro.homework.service.ImageService;
 
+import java.io.InputStream;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -62,15 +62,11 @@ class UserControllerIntegrationTest extends AbstractIntegrationTest {
         testUser.setImage("/avatars/old.jpg");
         userRepository.save(testUser);
 
-        when(imageService.saveImage(any(MultipartFile.class), anyString(), anyString()))
+        when(imageService.saveImage(any(InputStream.class), anyString(), anyString()))
                 .thenAnswer(invocation -> {
-                    MultipartFile file = invocation.getArgument(0);
-                    String originalFilename = file.getOriginalFilename();
-                    String extension = "";
-                    if (originalFilename != null && originalFilename.contains(".")) {
-                        extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                    }
-                    return "/avatars/" + UUID.randomUUID() + extension;
+                    InputStream image = invocation.getArgument(0);
+                    image.readAllBytes();
+                    return "/avatars/" + UUID.randomUUID() + ".jpg";
                 });
 
         when(imageService.readImageAsBytes(anyString(), anyString()))
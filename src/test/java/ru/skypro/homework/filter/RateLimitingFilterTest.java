@@ -0,0 +1,138 @@
+package ru.skypro.homework.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.skypro.homework.ratelimit.RateLimitProperties;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitingFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void overRate_ShouldReturnTooManyRequestsWithRetryAfter() throws ServletException, IOException {
+        RateLimitingFilter filter = filter(true, route(1, 1, 0));
+
+        MockHttpServletResponse first = perform(filter, "203.0.113.1");
+        MockHttpServletResponse second = perform(filter, "203.0.113.1");
+
+        assertThat(first.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(second.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(second.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    void overRate_ShouldLimitEachClientSeparately() throws ServletException, IOException {
+        RateLimitingFilter filter = filter(true, route(1, 1, 0));
+
+        perform(filter, "203.0.113.1");
+        assertThat(perform(filter, "203.0.113.2").getStatus()).isEqualTo(HttpStatus.OK.value());
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "user@test.com", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+        assertThat(perform(filter, "203.0.113.1").getStatus())
+                .as("authenticated user is keyed by name, not by address")
+                .isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void overConcurrencyLimit_ShouldShedWithServiceUnavailable() throws ServletException, IOException {
+        RateLimitingFilter filter = filter(true, route(0, 1, 1));
+        AtomicReference<MockHttpServletResponse> nested = new AtomicReference<>();
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request("203.0.113.1"), first, new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response)
+                    throws IOException, ServletException {
+                // второй запрос приходит, пока первый ещё обрабатывается
+                nested.set(perform(filter, "203.0.113.2"));
+            }
+        });
+
+        assertThat(first.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(nested.get().getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(nested.get().getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(perform(filter, "203.0.113.2").getStatus())
+                .as("permit is released after the first request")
+                .isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void disabled_ShouldPassEveryRequest() throws ServletException, IOException {
+        RateLimitingFilter filter = filter(false, route(1, 1, 0));
+
+        perform(filter, "203.0.113.1");
+
+        assertThat(perform(filter, "203.0.113.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    void unmatchedRoute_ShouldPass() throws ServletException, IOException {
+        RateLimitingFilter filter = filter(true, route(1, 1, 0));
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = request("203.0.113.1");
+            request.setRequestURI("/users/me");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+    }
+
+    private RateLimitingFilter filter(boolean enabled, RateLimitProperties.Route route) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setEnabled(enabled);
+        properties.setRoutes(List.of(route));
+        return new RateLimitingFilter(properties, meterRegistry);
+    }
+
+    private static RateLimitProperties.Route route(double requestsPerSecond, int burst, int maxConcurrency) {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setName("ads-list");
+        route.setMethods(List.of("GET"));
+        route.setPatterns(List.of("/ads"));
+        route.setRequestsPerSecond(requestsPerSecond);
+        route.setBurst(burst);
+        route.setMinConcurrency(1);
+        route.setInitialConcurrency(1);
+        route.setMaxConcurrency(maxConcurrency);
+        route.setLatencyTargetMs(60_000);
+        return route;
+    }
+
+    private static MockHttpServletResponse perform(RateLimitingFilter filter, String remoteAddr)
+            throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(remoteAddr), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ads");
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+}
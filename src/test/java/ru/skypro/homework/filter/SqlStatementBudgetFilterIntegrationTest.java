@@ -0,0 +1,78 @@
+package ru.skypro.homework.filter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.skypro.homework.AbstractIntegrationTest;
+import ru.skypro.homework.dto.ad.AdsDto;
+import ru.skypro.homework.dto.ad.ExtendedAdDto;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.model.UsersDao;
+import ru.skypro.homework.repository.AdRepository;
+import ru.skypro.homework.repository.UserRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlStatementBudgetFilterIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdRepository adRepository;
+
+    private AdsDao firstAd;
+
+    @BeforeEach
+    void setUp() {
+        UsersDao author = new UsersDao();
+        author.setEmail("budget@test.com");
+        author.setPassword(passwordEncoder.encode("password"));
+        author.setFirstName("Иван");
+        author.setLastName("Иванов");
+        author.setPhone("+7 (999) 123-45-67");
+        author.setRole(Role.USER);
+        userRepository.save(author);
+
+        for (int i = 0; i < 5; i++) {
+            AdsDao ad = new AdsDao();
+            ad.setTitle("Ad " + i);
+            ad.setDescription("Description " + i);
+            ad.setPrice(100 * i);
+            ad.setAuthor(author);
+            AdsDao saved = adRepository.save(ad);
+            if (firstAd == null) {
+                firstAd = saved;
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        adRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void getAllAds_ShouldNotIssueQueryPerAd() {
+        ResponseEntity<AdsDto> response = restTemplate.getForEntity(baseUrl() + "/ads", AdsDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getCount()).isEqualTo(5);
+        assertThat(sqlStatements(response)).isEqualTo(1);
+        assertThat(response.getHeaders().getFirst(SqlStatementBudgetFilter.TIME_HEADER)).isNotNull();
+    }
+
+    @Test
+    void getAd_ShouldStayWithinTwoStatements() {
+        ResponseEntity<ExtendedAdDto> response =
+                restTemplate.getForEntity(baseUrl() + "/ads/{id}", ExtendedAdDto.class, firstAd.getPk());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(sqlStatements(response)).isLessThanOrEqualTo(2);
+    }
+}
@@ -0,0 +1,99 @@
+package ru.skypro.homework.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long TARGET_MS = 100;
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(TARGET_MS / 2);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(TARGET_MS * 2);
+
+    @Test
+    void tryAcquire_ShouldRejectAboveLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 2, 10, TARGET_MS);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+
+        limit.release(FAST, false, 0);
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void release_Fast_UnderLoad_ShouldIncreaseLimitAdditively() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 4, 10, TARGET_MS);
+        for (int i = 0; i < 3; i++) {
+            limit.tryAcquire();
+        }
+
+        // около limit быстрых ответов под нагрузкой поднимают лимит примерно на единицу
+        for (int i = 0; i < 5; i++) {
+            limit.tryAcquire();
+            limit.release(FAST, false, 0);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void release_Fast_WhenIdle_ShouldKeepLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 4, 10, TARGET_MS);
+
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire();
+            limit.release(FAST, false, 0);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void release_Fast_ShouldNotExceedMaxLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 3, 3, TARGET_MS);
+        limit.tryAcquire();
+        limit.tryAcquire();
+
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire();
+            limit.release(FAST, false, 0);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void release_SlowOrOverloaded_ShouldDecreaseMultiplicativelyOncePerTarget() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 10, 10, TARGET_MS);
+        long target = TimeUnit.MILLISECONDS.toNanos(TARGET_MS);
+
+        limit.tryAcquire();
+        limit.release(SLOW, false, -5 * target);
+        assertThat(limit.getLimit()).isEqualTo(9);
+
+        limit.tryAcquire();
+        limit.release(SLOW, false, -5 * target + target / 2);
+        assertThat(limit.getLimit()).as("burst of slow responses within one target").isEqualTo(9);
+
+        limit.tryAcquire();
+        limit.release(FAST, true, -3 * target);
+        assertThat(limit.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    void release_Slow_ShouldNotDropBelowMinLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(5, 5, 10, TARGET_MS);
+        long target = TimeUnit.MILLISECONDS.toNanos(TARGET_MS);
+
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.release(SLOW, false, i * 2 * target);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.skypro.homework.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tryConsume_ShouldAllowBurstThenReportWaitUntilNextToken() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isZero();
+        assertThat(bucket.tryConsume(0)).isCloseTo(SECOND, within(1L));
+        assertThat(bucket.tryConsume(SECOND / 4)).isCloseTo(SECOND * 3 / 4, within(1L));
+    }
+
+    @Test
+    void tryConsume_ShouldRefillProportionallyToElapsedTime() {
+        TokenBucket bucket = new TokenBucket(2, 4, 0);
+        bucket.tryConsume(0);
+        bucket.tryConsume(0);
+
+        assertThat(bucket.tryConsume(SECOND / 4 + 1000)).as("one token after 250 ms at 4 rps").isZero();
+        assertThat(bucket.tryConsume(SECOND / 4 + 1000)).isPositive();
+    }
+
+    @Test
+    void refill_ShouldNotExceedCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+
+        long later = 10 * SECOND;
+        assertThat(bucket.tryConsume(later)).isZero();
+        assertThat(bucket.tryConsume(later)).isZero();
+        assertThat(bucket.tryConsume(later)).isPositive();
+    }
+
+    @Test
+    void isFull_ShouldBeTrueOnceRefilledToCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+        bucket.tryConsume(0);
+
+        assertThat(bucket.isFull(SECOND / 2)).isFalse();
+        assertThat(bucket.isFull(SECOND)).isTrue();
+    }
+}
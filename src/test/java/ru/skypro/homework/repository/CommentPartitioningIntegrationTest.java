@@ -0,0 +1,128 @@
+package ru.skypro.homework.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.skypro.homework.AbstractIntegrationTest;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.maintenance.CommentPartitionMaintenance;
+import ru.skypro.homework.maintenance.CommentPartitionProperties;
+import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.model.CommentsDao;
+import ru.skypro.homework.model.UsersDao;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommentPartitioningIntegrationTest extends AbstractIntegrationTest {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CommentPartitionMaintenance maintenance;
+
+    @Autowired
+    private CommentPartitionProperties properties;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdRepository adRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    private AdsDao ad;
+    private UsersDao author;
+
+    @BeforeEach
+    void setUp() {
+        author = new UsersDao();
+        author.setEmail("partition@test.com");
+        author.setPassword("pass");
+        author.setFirstName("Иван");
+        author.setLastName("Иванов");
+        author.setPhone("+7 (999) 123-45-67");
+        author.setRole(Role.USER);
+        userRepository.save(author);
+
+        ad = new AdsDao();
+        ad.setTitle("Ad");
+        ad.setDescription("Description");
+        ad.setPrice(100);
+        ad.setAuthor(author);
+        adRepository.save(ad);
+    }
+
+    @AfterEach
+    void tearDown() {
+        commentRepository.deleteAll();
+        adRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void commentsTable_ShouldBePartitionedWithFutureMonths() {
+        String strategy = jdbcTemplate.queryForObject(
+                "SELECT partstrat FROM pg_partitioned_table WHERE partrelid = 'comments'::regclass", String.class);
+        assertThat(strategy).isEqualTo("r");
+
+        List<String> partitions = partitions();
+        LocalDateTime lastMonth = LocalDateTime.now().plusMonths(properties.getMonthsAhead());
+        assertThat(partitions).contains("comments_legacy", "comments_" + lastMonth.format(PARTITION_SUFFIX));
+    }
+
+    @Test
+    void maintain_ShouldBeIdempotent() {
+        List<String> before = partitions();
+
+        maintenance.maintain();
+        maintenance.maintain();
+
+        assertThat(partitions()).containsExactlyInAnyOrderElementsOf(before);
+    }
+
+    @Test
+    void comments_ShouldBeRoutedByCreatedAtAndFoundByRepositoryQueries() {
+        CommentsDao recent = saveComment(LocalDateTime.now());
+        CommentsDao nextMonth = saveComment(LocalDateTime.now().plusMonths(1));
+
+        assertThat(partitionOf(nextMonth)).isEqualTo("comments_" + LocalDateTime.now().plusMonths(1).format(PARTITION_SUFFIX));
+        assertThat(partitionOf(recent)).isNotEqualTo(partitionOf(nextMonth));
+
+        assertThat(commentRepository.findByPkAndAdPk(nextMonth.getPk(), ad.getPk())).isPresent();
+        assertThat(commentRepository.findByPkAndAuthorId(recent.getPk(), author.getId())).isPresent();
+        assertThat(commentRepository.findByAdPkOrderByCreatedAtDesc(ad.getPk()))
+                .extracting(CommentsDao::getPk)
+                .containsExactly(nextMonth.getPk(), recent.getPk());
+        assertThat(commentRepository.countByAdPk(ad.getPk())).isEqualTo(2);
+    }
+
+    private CommentsDao saveComment(LocalDateTime createdAt) {
+        CommentsDao comment = new CommentsDao();
+        comment.setText("Comment");
+        comment.setCreatedAt(createdAt);
+        comment.setAuthor(author);
+        comment.setAd(ad);
+        return commentRepository.save(comment);
+    }
+
+    private String partitionOf(CommentsDao comment) {
+        return jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM comments WHERE pk = ?",
+                String.class, comment.getPk());
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("SELECT inhrelid::regclass::text FROM pg_inherits "
+                + "WHERE inhparent = 'comments'::regclass", String.class);
+    }
+}
@@ -0,0 +1,170 @@
+package ru.skypro.homework.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.AbstractIntegrationTest;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.dto.user.UpdateUserDto;
+import ru.skypro.homework.model.UsersDao;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserSecondLevelCacheIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String EMAIL = "cached@test.com";
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        UsersDao user = new UsersDao();
+        user.setEmail(EMAIL);
+        user.setPassword(passwordEncoder.encode(PASSWORD));
+        user.setFirstName("Иван");
+        user.setLastName("Иванов");
+        user.setPhone("+7 (999) 123-45-67");
+        user.setRole(Role.USER);
+        userRepository.save(user);
+
+        entityManagerFactory.getCache().evictAll();
+        // JPA evictAll не трогает кэш натуральных ключей, а после удаления в обход Hibernate там остаётся старый id
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictNaturalIdData();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void findByEmail_ShouldNotQueryDatabaseOnceCached() {
+        assertThat(userRepository.findByEmail(EMAIL)).isPresent();
+        long statementsAfterFirstLoad = statistics.getPrepareStatementCount();
+        assertThat(statementsAfterFirstLoad).isPositive();
+
+        assertThat(userRepository.findByEmail(EMAIL)).isPresent();
+        assertThat(userRepository.existsByEmail(EMAIL)).isTrue();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statementsAfterFirstLoad);
+        assertThat(statistics.getNaturalIdCacheHitCount()).isGreaterThanOrEqualTo(2);
+        assertThat(statistics.getDomainDataRegionStatistics(UsersDao.CACHE_REGION).getHitCount()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void authenticatedRequests_ShouldResolveProfileFromCacheAndCredentialsFromDatabase() {
+        withAuth(EMAIL, PASSWORD).getForEntity(baseUrl() + "/users/me", String.class);
+
+        ResponseEntity<String> response = withAuth(EMAIL, PASSWORD).getForEntity(baseUrl() + "/users/me", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(sqlStatements(response)).as("only the credentials query").isEqualTo(1);
+    }
+
+    @Test
+    void passwordChangedByAnotherInstance_ShouldApplyToAuthenticationImmediately() {
+        userRepository.findByEmail(EMAIL);
+
+        // другой экземпляр меняет пароль: локальный кэш об этом не знает
+        // (JDBC в обход Hibernate, который сбросил бы регионы кэша при нативном UPDATE)
+        jdbcTemplate.update("update users set password = ? where email = ?", passwordEncoder.encode("new-password"),
+                EMAIL);
+
+        assertThat(withAuth(EMAIL, PASSWORD).getForEntity(baseUrl() + "/users/me", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(withAuth(EMAIL, "new-password").getForEntity(baseUrl() + "/users/me", String.class)
+                                                  .getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void userDeletedByAnotherInstance_ShouldNotAuthenticate() {
+        userRepository.findByEmail(EMAIL);
+
+        jdbcTemplate.update("delete from users where email = ?", EMAIL);
+
+        assertThat(withAuth(EMAIL, PASSWORD).getForEntity(baseUrl() + "/users/me", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void updateThroughService_ShouldRefreshCachedUser() {
+        userRepository.findByEmail(EMAIL);
+        UpdateUserDto update = new UpdateUserDto();
+        update.setFirstName("Пётр");
+        update.setLastName("Петров");
+        update.setPhone("+7 (999) 999-99-99");
+
+        ResponseEntity<UpdateUserDto> response =
+                patchWithAuth(baseUrl() + "/users/me", update, UpdateUserDto.class, EMAIL, PASSWORD);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        long statements = statistics.getPrepareStatementCount();
+        assertThat(userRepository.findByEmail(EMAIL).orElseThrow().getFirstName()).isEqualTo("Пётр");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+    }
+
+    @Test
+    void rolledBackUpdate_ShouldNotReachCache() {
+        userRepository.findByEmail(EMAIL);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            UsersDao user = userRepository.findByEmail(EMAIL).orElseThrow();
+            user.setFirstName("Откат");
+            userRepository.saveAndFlush(user);
+            status.setRollbackOnly();
+        });
+
+        assertThat(userRepository.findByEmail(EMAIL).orElseThrow().getFirstName()).isEqualTo("Иван");
+        assertThat(firstNameInDatabase()).isEqualTo("Иван");
+    }
+
+    @Test
+    void deletedUser_ShouldDisappearFromCache() {
+        UsersDao user = userRepository.findByEmail(EMAIL).orElseThrow();
+
+        userRepository.delete(user);
+
+        assertThat(userRepository.findByEmail(EMAIL)).isEmpty();
+        assertThat(userRepository.existsByEmail(EMAIL)).isFalse();
+        assertThat(withAuth(EMAIL, PASSWORD).getForEntity(baseUrl() + "/users/me", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    private String firstNameInDatabase() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return (String) entityManager.createNativeQuery("select first_name from users where email = :email")
+                                         .setParameter("email", EMAIL)
+                                         .getSingleResult();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
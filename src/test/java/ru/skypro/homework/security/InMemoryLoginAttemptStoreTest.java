@@ -0,0 +1,126 @@
+package ru.skypro.homework.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryLoginAttemptStoreTest {
+
+    private static final int MAX_FAILURES = 3;
+    private static final String KEY = "user:ivan@test.com";
+
+    private final MutableClock clock = new MutableClock();
+
+    private final InMemoryLoginAttemptStore store = new InMemoryLoginAttemptStore(Duration.ofSeconds(60),
+            Duration.ofSeconds(1), Duration.ofSeconds(8), 10, clock);
+
+    @Test
+    void recordFailure_ShouldBlockAtMaxFailuresAndDoubleBackoffUpToMax() {
+        fail(KEY, MAX_FAILURES - 1);
+        assertThat(store.blockedFor(KEY)).isZero();
+
+        fail(KEY, 1);
+        assertThat(store.blockedFor(KEY)).isEqualTo(Duration.ofSeconds(1));
+        fail(KEY, 1);
+        assertThat(store.blockedFor(KEY)).isEqualTo(Duration.ofSeconds(2));
+        fail(KEY, 1);
+        assertThat(store.blockedFor(KEY)).isEqualTo(Duration.ofSeconds(4));
+        fail(KEY, 2);
+        assertThat(store.blockedFor(KEY)).as("capped by max backoff").isEqualTo(Duration.ofSeconds(8));
+
+        clock.advance(Duration.ofSeconds(8));
+        assertThat(store.blockedFor(KEY)).isZero();
+    }
+
+    @Test
+    void recordFailure_ShouldWeighPreviousWindowByItsShareInSlidingWindow() {
+        fail(KEY, 2);
+
+        // 30 с следующего окна: две прошлые неудачи весят 2 * 0.5 = 1, вместе с текущей — 2 из 3
+        clock.advance(Duration.ofSeconds(90));
+        fail(KEY, 1);
+        assertThat(store.blockedFor(KEY)).isZero();
+
+        fail(KEY, 1);
+        assertThat(store.blockedFor(KEY)).isEqualTo(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void recordFailure_ShouldForgetFailuresOlderThanPreviousWindow() {
+        fail(KEY, 2);
+
+        clock.advance(Duration.ofSeconds(150));
+        fail(KEY, 2);
+
+        assertThat(store.blockedFor(KEY)).isZero();
+    }
+
+    @Test
+    void reset_ShouldClearFailures() {
+        fail(KEY, 2);
+        store.reset(KEY);
+        fail(KEY, 2);
+
+        assertThat(store.blockedFor(KEY)).isZero();
+    }
+
+    @Test
+    void evictExpired_ShouldRemoveKeysIdleForTwoWindows() {
+        fail("user:idle@test.com", 1);
+        fail(KEY, MAX_FAILURES);
+
+        clock.advance(Duration.ofSeconds(120));
+        store.evictExpired();
+
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void recordFailure_WhenFull_ShouldEvictUnblockedKeysAndKeepBlocked() {
+        fail(KEY, MAX_FAILURES);
+
+        for (int i = 0; i < 50; i++) {
+            clock.advance(Duration.ofMillis(10));
+            fail("user:random-" + i + "@test.com", 1);
+        }
+
+        assertThat(store.size()).isLessThanOrEqualTo(10);
+        assertThat(store.blockedFor(KEY)).isPositive();
+    }
+
+    private void fail(String key, int times) {
+        for (int i = 0; i < times; i++) {
+            store.recordFailure(key, MAX_FAILURES);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.ofEpochSecond(0);
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.skypro.homework.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.skypro.homework.AbstractIntegrationTest;
+import ru.skypro.homework.dto.auth.LoginDto;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.dto.user.UserDto;
+import ru.skypro.homework.model.UsersDao;
+import ru.skypro.homework.repository.UserRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginThrottlingIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.login-throttling.max-failures-per-user}")
+    private int maxFailuresPerUser;
+
+    @Value("${app.login-throttling.max-failures-per-ip}")
+    private int maxFailuresPerIp;
+
+    @BeforeEach
+    void setUp() {
+        saveUser("throttled@test.com");
+        saveUser("untouched@test.com");
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void basicAuth_AfterMaxFailures_ShouldReturnTooManyRequestsEvenWithCorrectPassword() {
+        for (int i = 0; i < maxFailuresPerUser; i++) {
+            ResponseEntity<UserDto> failed = withAuth("throttled@test.com", "wrong").getForEntity(baseUrl() + "/users/me", UserDto.class);
+            assertThat(failed.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        }
+
+        ResponseEntity<UserDto> basic = withAuth("throttled@test.com", PASSWORD).getForEntity(baseUrl() + "/users/me", UserDto.class);
+        assertThat(basic.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(basic.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNotNull();
+
+        LoginDto loginDto = new LoginDto();
+        loginDto.setUsername("throttled@test.com");
+        loginDto.setPassword(PASSWORD);
+        ResponseEntity<Void> login = restTemplate.postForEntity(baseUrl() + "/login", new HttpEntity<>(loginDto), Void.class);
+        assertThat(login.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        // Блокируется только имя пользователя, другие пользователи с того же адреса входят
+        ResponseEntity<UserDto> other = withAuth("untouched@test.com", PASSWORD).getForEntity(baseUrl() + "/users/me", UserDto.class);
+        assertThat(other.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void basicAuth_BehindProxy_ShouldThrottleForwardedClientAddressOnly() {
+        for (int i = 0; i < maxFailuresPerIp; i++) {
+            ResponseEntity<UserDto> failed = getMeFrom("203.0.113.10", "spray-" + i + "@test.com", "wrong");
+            assertThat(failed.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        }
+
+        assertThat(getMeFrom("203.0.113.10", "untouched@test.com", PASSWORD).getStatusCode())
+                .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        // Тестовый клиент подключается с loopback — доверенного прокси, поэтому другие клиенты за ним не блокируются
+        assertThat(getMeFrom("203.0.113.11", "untouched@test.com", PASSWORD).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+    }
+
+    private ResponseEntity<UserDto> getMeFrom(String clientIp, String username, String password) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBasicAuth(username, password);
+        headers.set("X-Forwarded-For", clientIp);
+        return restTemplate.exchange(baseUrl() + "/users/me", HttpMethod.GET, new HttpEntity<>(headers), UserDto.class);
+    }
+
+    private void saveUser(String email) {
+        UsersDao user = new UsersDao();
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode(PASSWORD));
+        user.setFirstName("Иван");
+        user.setLastName("Иванов");
+        user.setPhone("+7 (999) 123-45-67");
+        user.setRole(Role.USER);
+        userRepository.save(user);
+    }
+}
@@ -0,0 +1,84 @@
+package ru.skypro.homework.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.skypro.homework.AbstractIntegrationTest;
+import ru.skypro.homework.dto.auth.LoginDto;
+import ru.skypro.homework.dto.user.UserDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordHashingOverloadIntegrationTest extends AbstractIntegrationTest {
+
+    // проверка такого хеша занимает секунды — дольше, чем нужно, чтобы отправить запросы сверх очереди
+    private static final String SLOW_HASH = "{bcrypt}" + new BCryptPasswordEncoder(15).encode("password");
+
+    @DynamicPropertySource
+    static void hashingPoolProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.password-hashing.threads", () -> "1");
+        registry.add("app.password-hashing.queue-capacity", () -> "1");
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<CompletableFuture<Boolean>> saturating = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        saturating.forEach(CompletableFuture::join);
+    }
+
+    @Test
+    void authentication_WhenHashingPoolIsFull_ShouldReturnServiceUnavailableWithRetryAfter() throws Exception {
+        saturatePool();
+
+        ResponseEntity<UserDto> basic = withAuth("user@test.com", "password")
+                .getForEntity(baseUrl() + "/users/me", UserDto.class);
+        LoginDto loginDto = new LoginDto();
+        loginDto.setUsername("user@test.com");
+        loginDto.setPassword("password");
+        ResponseEntity<String> login = restTemplate.postForEntity(baseUrl() + "/login", new HttpEntity<>(loginDto),
+                String.class);
+
+        assertThat(basic.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(basic.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(login.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(login.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(meterRegistry.get("app.password.rejected").counter().count()).isGreaterThanOrEqualTo(2);
+    }
+
+    /**
+     * Занимает единственный поток пула и единственное место в очереди медленными проверками пароля.
+     */
+    private void saturatePool() throws InterruptedException {
+        saturating.add(CompletableFuture.supplyAsync(() -> passwordEncoder.matches("password", SLOW_HASH)));
+        awaitGauge("executor.active", 1);
+        saturating.add(CompletableFuture.supplyAsync(() -> passwordEncoder.matches("password", SLOW_HASH)));
+        awaitGauge("executor.queued", 1);
+    }
+
+    private void awaitGauge(String name, double value) throws InterruptedException {
+        Gauge gauge = meterRegistry.get(name).tag("name", "password-hash").gauge();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (gauge.value() < value) {
+            assertThat(System.nanoTime()).as(name + " of password hashing pool").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.skypro.homework.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import ru.skypro.homework.AbstractIntegrationTest;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.dto.user.UserDto;
+import ru.skypro.homework.model.UsersDao;
+import ru.skypro.homework.repository.UserRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordRehashIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String EMAIL = "rehash@test.com";
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void login_WithLegacyUnprefixedHash_ShouldRehashToCurrentFormat() {
+        saveUser(new BCryptPasswordEncoder().encode(PASSWORD));
+
+        ResponseEntity<UserDto> response = withAuth(EMAIL, PASSWORD).getForEntity(baseUrl() + "/users/me", UserDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        String stored = storedPassword();
+        assertThat(stored).startsWith("{bcrypt}");
+        assertThat(passwordEncoder.matches(PASSWORD, stored)).isTrue();
+        assertThat(passwordEncoder.upgradeEncoding(stored)).isFalse();
+    }
+
+    @Test
+    void login_WithLowerCostHash_ShouldRehashWithCurrentCost() {
+        saveUser("{bcrypt}" + new BCryptPasswordEncoder(4).encode(PASSWORD));
+
+        ResponseEntity<UserDto> response = withAuth(EMAIL, PASSWORD).getForEntity(baseUrl() + "/users/me", UserDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        String stored = storedPassword();
+        assertThat(stored).doesNotContain("$04$");
+        assertThat(passwordEncoder.matches(PASSWORD, stored)).isTrue();
+    }
+
+    @Test
+    void login_WithWrongPassword_ShouldNotTouchStoredHash() {
+        String legacyHash = new BCryptPasswordEncoder().encode(PASSWORD);
+        saveUser(legacyHash);
+
+        ResponseEntity<UserDto> response = withAuth(EMAIL, "wrong").getForEntity(baseUrl() + "/users/me", UserDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(storedPassword()).isEqualTo(legacyHash);
+    }
+
+    private void saveUser(String passwordHash) {
+        UsersDao user = new UsersDao();
+        user.setEmail(EMAIL);
+        user.setPassword(passwordHash);
+        user.setFirstName("Иван");
+        user.setLastName("Иванов");
+        user.setPhone("+7 (999) 123-45-67");
+        user.setRole(Role.USER);
+        userRepository.save(user);
+    }
+
+    private String storedPassword() {
+        return userRepository.findByEmail(EMAIL).orElseThrow().getPassword();
+    }
+}
@@ -0,0 +1,249 @@
+package ru.skypro.homework.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.AbstractIntegrationTest;
+import ru.skypro.homework.dto.ad.AdsDto;
+import ru.skypro.homework.dto.ad.ExtendedAdDto;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.dto.comment.CommentsDto;
+import ru.skypro.homework.maintenance.AdActivityTracker;
+import ru.skypro.homework.maintenance.AdArchiveJob;
+import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.model.CommentsDao;
+import ru.skypro.homework.model.UsersDao;
+import ru.skypro.homework.repository.AdRepository;
+import ru.skypro.homework.repository.CommentRepository;
+import ru.skypro.homework.repository.UserRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdArchiveIntegrationTest extends AbstractIntegrationTest {
+
+    private static final String ARCHIVE_DIR = "./target/test-ads-archive";
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.ads.archive.image-dir", () -> ARCHIVE_DIR);
+        registry.add("app.ads.archive.batch-size", () -> "2");
+    }
+
+    @Autowired
+    private AdArchiveJob adArchiveJob;
+
+    @Autowired
+    private AdActivityTracker adActivityTracker;
+
+    @Autowired
+    private AdArchiveService adArchiveService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdRepository adRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Value("${app.image.ad-dir}")
+    private String adImageDir;
+
+    private final String email = "archive@test.com";
+    private final String password = "password";
+
+    private UsersDao author;
+    private AdsDao idleAd;
+    private AdsDao activeAd;
+    private String imageFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        author = new UsersDao();
+        author.setEmail(email);
+        author.setPassword(passwordEncoder.encode(password));
+        author.setFirstName("Иван");
+        author.setLastName("Иванов");
+        author.setPhone("+7 (999) 123-45-67");
+        author.setRole(Role.USER);
+        userRepository.save(author);
+
+        imageFile = "archive-" + System.nanoTime() + ".jpg";
+        Files.createDirectories(Paths.get(adImageDir));
+        Files.write(Paths.get(adImageDir, imageFile), new byte[]{1, 2, 3});
+
+        idleAd = saveAd("Old bike", "/ads-images/" + imageFile);
+        activeAd = saveAd("New bike", null);
+        saveComment(idleAd, LocalDateTime.now().minusMonths(7));
+        saveComment(idleAd, LocalDateTime.now().minusMonths(6));
+        jdbcTemplate.update("UPDATE ads SET last_activity_at = ? WHERE pk = ?",
+                LocalDateTime.now().minusDays(200), idleAd.getPk());
+    }
+
+    @AfterEach
+    void tearDown() {
+        commentRepository.deleteAll();
+        adRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void archiveIdleAds_ShouldMoveIdleAdWithCommentsAndImageToArchive() {
+        adArchiveJob.archiveIdleAds();
+
+        assertThat(adRepository.findById(idleAd.getPk())).isEmpty();
+        assertThat(adRepository.findById(activeAd.getPk())).isPresent();
+        assertThat(count("SELECT count(*) FROM ads_archive WHERE pk = ?", idleAd.getPk())).isEqualTo(1);
+        assertThat(count("SELECT count(*) FROM comments_archive WHERE ad_id = ?", idleAd.getPk())).isEqualTo(2);
+        assertThat(commentRepository.countByAdPk(idleAd.getPk())).isZero();
+        assertThat(Paths.get(adImageDir, imageFile)).doesNotExist();
+        assertThat(Paths.get(ARCHIVE_DIR, imageFile)).exists();
+    }
+
+    @Test
+    void getAd_ShouldRestoreArchivedAd() {
+        adArchiveJob.archiveIdleAds();
+
+        ResponseEntity<ExtendedAdDto> response = withAuth(email, password)
+                .getForEntity(baseUrl() + "/ads/" + idleAd.getPk(), ExtendedAdDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody().getTitle()).isEqualTo("Old bike");
+        assertThat(response.getBody().getEmail()).isEqualTo(email);
+        assertThat(count("SELECT count(*) FROM ads_archive WHERE pk = ?", idleAd.getPk())).isZero();
+        assertThat(count("SELECT count(*) FROM comments_archive WHERE ad_id = ?", idleAd.getPk())).isZero();
+        assertThat(commentRepository.countByAdPk(idleAd.getPk())).isEqualTo(2);
+        assertThat(Paths.get(adImageDir, imageFile)).exists();
+
+        adArchiveJob.archiveIdleAds();
+        assertThat(adRepository.findById(idleAd.getPk())).as("restored ad is active again").isPresent();
+    }
+
+    @Test
+    void restore_RolledBack_ShouldLeaveImageInArchive() {
+        adArchiveJob.archiveIdleAds();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertThat(adArchiveService.restore(idleAd.getPk())).isPresent();
+            status.setRollbackOnly();
+        });
+
+        assertThat(count("SELECT count(*) FROM ads_archive WHERE pk = ?", idleAd.getPk())).isEqualTo(1);
+        assertThat(Paths.get(ARCHIVE_DIR, imageFile)).exists();
+        assertThat(Paths.get(adImageDir, imageFile)).doesNotExist();
+    }
+
+    @Test
+    void getComments_ShouldRestoreArchivedAd() {
+        adArchiveJob.archiveIdleAds();
+
+        ResponseEntity<CommentsDto> response = withAuth(email, password)
+                .getForEntity(baseUrl() + "/ads/" + idleAd.getPk() + "/comments", CommentsDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(adRepository.findById(idleAd.getPk())).isPresent();
+    }
+
+    @Test
+    void getAdsMe_ShouldIncludeArchivedAds() throws Exception {
+        String activeImageFile = "active-" + System.nanoTime() + ".jpg";
+        Files.write(Paths.get(adImageDir, activeImageFile), new byte[]{1, 2, 3});
+        jdbcTemplate.update("UPDATE ads SET image = ? WHERE pk = ?", "/ads-images/" + activeImageFile, activeAd.getPk());
+        adArchiveJob.archiveIdleAds();
+
+        ResponseEntity<AdsDto> response = withAuth(email, password)
+                .getForEntity(baseUrl() + "/ads/me", AdsDto.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody().getResults())
+                .extracting(ad -> ad.getPk())
+                .containsExactlyInAnyOrder(idleAd.getPk(), activeAd.getPk());
+        assertThat(response.getBody().getResults())
+                .extracting(ad -> ad.getImage())
+                .filteredOn(image -> image != null)
+                .hasSize(1)
+                .as("returned images resolve to files in the ad image directory")
+                .allSatisfy(image -> assertThat(Paths.get(adImageDir, Paths.get(image).getFileName().toString()))
+                        .exists());
+        assertThat(response.getBody().getResults())
+                .filteredOn(ad -> ad.getPk().equals(idleAd.getPk()))
+                .singleElement()
+                .satisfies(ad -> assertThat(ad.getImage()).as("archived image is not served").isNull());
+    }
+
+    @Test
+    void getAd_ShouldReturnNotFound_WhenAdIsNeitherLiveNorArchived() {
+        ResponseEntity<String> response = withAuth(email, password)
+                .getForEntity(baseUrl() + "/ads/" + Integer.MAX_VALUE, String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void viewedAd_ShouldNotBeArchived() {
+        adActivityTracker.touch(idleAd.getPk());
+        adActivityTracker.flush();
+
+        adArchiveJob.archiveIdleAds();
+
+        assertThat(adRepository.findById(idleAd.getPk())).isPresent();
+    }
+
+    @Test
+    void deleteUser_ShouldRemoveArchivedAds() throws Exception {
+        adArchiveJob.archiveIdleAds();
+        Path archivedImage = Paths.get(ARCHIVE_DIR, imageFile);
+
+        userRepository.delete(author);
+
+        assertThat(count("SELECT count(*) FROM ads_archive WHERE pk = ?", idleAd.getPk())).isZero();
+        Files.deleteIfExists(archivedImage);
+    }
+
+    private AdsDao saveAd(String title, String image) {
+        AdsDao ad = new AdsDao();
+        ad.setTitle(title);
+        ad.setDescription("Description");
+        ad.setPrice(100);
+        ad.setAuthor(author);
+        ad.setImage(image);
+        return adRepository.save(ad);
+    }
+
+    private void saveComment(AdsDao ad, LocalDateTime createdAt) {
+        CommentsDao comment = new CommentsDao();
+        comment.setText("Comment");
+        comment.setCreatedAt(createdAt);
+        comment.setAuthor(author);
+        comment.setAd(ad);
+        commentRepository.save(comment);
+    }
+
+    private int count(String sql, Object... args) {
+        Integer result = jdbcTemplate.queryForObject(sql, Integer.class, args);
+        return result == null ? 0 : result;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.skypro.homework.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.skypro.homework.AbstractIntegrationTest;
+import ru.skypro.homework.dto.ad.AdsDto;
+import ru.skypro.homework.dto.ad.ExtendedAdDto;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.dto.comment.CommentDto;
+import ru.skypro.homework.dto.comment.CreateOrUpdateCommentDto;
+import ru.skypro.homework.dto.user.UpdateUserDto;
+import ru.skypro.homework.maintenance.AdArchiveJob;
+import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.model.UsersDao;
+import ru.skypro.homework.repository.AdRepository;
+import ru.skypro.homework.repository.CommentRepository;
+import ru.skypro.homework.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdFeedIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private AdArchiveJob adArchiveJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdRepository adRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    private final String email = "feed@test.com";
+    private final String adminEmail = "feed-admin@test.com";
+    private final String password = "password";
+
+    private AdsDao ad;
+
+    @BeforeEach
+    void setUp() {
+        UsersDao author = saveUser(email, Role.USER);
+        saveUser(adminEmail, Role.ADMIN);
+
+        ad = new AdsDao();
+        ad.setTitle("Bike");
+        ad.setDescription("Description");
+        ad.setPrice(100);
+        ad.setAuthor(author);
+        ad = adRepository.save(ad);
+    }
+
+    @AfterEach
+    void tearDown() {
+        commentRepository.deleteAll();
+        adRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void feed_ShouldFollowAdCommentAndAuthorChanges() {
+        ResponseEntity<CommentDto> comment = withAuth(email, password).postForEntity(
+                baseUrl() + "/ads/{id}/comments", commentDto(), CommentDto.class, ad.getPk());
+        withAuth(email, password).postForEntity(
+                baseUrl() + "/ads/{id}/comments", commentDto(), CommentDto.class, ad.getPk());
+        assertThat(comment.getStatusCode()).isEqualTo(HttpStatus.OK);
+        withAuth(email, password).delete(baseUrl() + "/ads/{id}/comments/{commentId}",
+                ad.getPk(), comment.getBody().getPk());
+
+        ad.setTitle("Road bike");
+        adRepository.save(ad);
+
+        UpdateUserDto update = new UpdateUserDto();
+        update.setFirstName("Пётр");
+        update.setLastName("Петров");
+        update.setPhone("+7 (999) 765-43-21");
+        patchWithAuth(baseUrl() + "/users/me", update, UpdateUserDto.class, email, password);
+
+        assertThat(commentCount(ad.getPk())).isEqualTo(1);
+        ResponseEntity<ExtendedAdDto> response = withAuth(email, password)
+                .getForEntity(baseUrl() + "/ads/{id}", ExtendedAdDto.class, ad.getPk());
+        assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody().getTitle()).isEqualTo("Road bike");
+        assertThat(response.getBody().getAuthorFirstName()).isEqualTo("Пётр");
+        assertThat(response.getBody().getAuthorLastName()).isEqualTo("Петров");
+        assertThat(response.getBody().getPhone()).isEqualTo("+7 (999) 765-43-21");
+    }
+
+    @Test
+    void archivedAd_ShouldLeaveFeedAndReturnWithComments() {
+        withAuth(email, password).postForEntity(
+                baseUrl() + "/ads/{id}/comments", commentDto(), CommentDto.class, ad.getPk());
+        jdbcTemplate.update("UPDATE ads SET last_activity_at = ? WHERE pk = ?",
+                LocalDateTime.now().minusDays(200), ad.getPk());
+
+        adArchiveJob.archiveIdleAds();
+
+        ResponseEntity<AdsDto> feed = withAuth(email, password).getForEntity(baseUrl() + "/ads", AdsDto.class);
+        assertThat(feed.getBody()).isNotNull();
+        assertThat(feed.getBody().getResults()).extracting(a -> a.getPk()).doesNotContain(ad.getPk());
+
+        ResponseEntity<ExtendedAdDto> restored = withAuth(email, password)
+                .getForEntity(baseUrl() + "/ads/{id}", ExtendedAdDto.class, ad.getPk());
+        assertThat(restored.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(commentCount(ad.getPk())).isEqualTo(1);
+    }
+
+    @Test
+    void rebuild_ShouldRegenerateFeedFromTables() {
+        jdbcTemplate.update("UPDATE ad_feed SET title = 'stale', comment_count = 42 WHERE pk = ?", ad.getPk());
+
+        ResponseEntity<Map> response = withAuth(adminEmail, password)
+                .postForEntity(baseUrl() + "/actuator/adfeed", null, Map.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).containsKey("main");
+        assertThat(commentCount(ad.getPk())).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT title FROM ad_feed WHERE pk = ?", String.class, ad.getPk()))
+                .isEqualTo("Bike");
+    }
+
+    @Test
+    void rebuild_ByUser_ShouldReturnForbidden() {
+        ResponseEntity<String> response = withAuth(email, password)
+                .postForEntity(baseUrl() + "/actuator/adfeed", null, String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
+    private UsersDao saveUser(String userEmail, Role role) {
+        UsersDao user = new UsersDao();
+        user.setEmail(userEmail);
+        user.setPassword(passwordEncoder.encode(password));
+        user.setFirstName("Иван");
+        user.setLastName("Иванов");
+        user.setPhone("+7 (999) 123-45-67");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+
+    private static CreateOrUpdateCommentDto commentDto() {
+        CreateOrUpdateCommentDto dto = new CreateOrUpdateCommentDto();
+        dto.setText("Отличный велосипед");
+        return dto;
+    }
+
+    private int commentCount(Integer adId) {
+        Integer result = jdbcTemplate.queryForObject("SELECT comment_count FROM ad_feed WHERE pk = ?", Integer.class, adId);
+        return result == null ? 0 : result;
+    }
+}
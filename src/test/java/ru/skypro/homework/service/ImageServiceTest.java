@@ -0,0 +1,158 @@
+package ru.skypro.homework.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.skypro.homework.exception.ImageTooLargeException;
+import ru.skypro.homework.exception.InvalidUploadException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageServiceTest {
+
+    private static final int MAX_DIMENSION = 200;
+    private static final long MAX_SIZE = DataSize.ofKilobytes(512).toBytes();
+
+    @TempDir
+    Path directory;
+
+    private ImageService imageService;
+
+    @BeforeEach
+    void setUp() {
+        ImageTranscoder transcoder = new ImageTranscoder(MAX_DIMENSION, 10_000_000, 0.8f);
+        imageService = new ImageService(new SimpleMeterRegistry(), transcoder, DataSize.ofBytes(MAX_SIZE));
+    }
+
+    @Test
+    void saveImage_ShouldDownscaleOpaquePngToJpeg() throws IOException {
+        byte[] png = encode(image(600, 300, BufferedImage.TYPE_INT_RGB), "png");
+
+        BufferedImage stored = ImageIO.read(stored(save(png), ".jpg").toFile());
+
+        assertThat(stored.getWidth()).isEqualTo(MAX_DIMENSION);
+        assertThat(stored.getHeight()).isEqualTo(MAX_DIMENSION / 2);
+    }
+
+    @Test
+    void saveImage_ShouldKeepTransparentImageAsPng() throws IOException {
+        byte[] png = encode(image(100, 50, BufferedImage.TYPE_INT_ARGB), "png");
+
+        BufferedImage stored = ImageIO.read(stored(save(png), ".png").toFile());
+
+        assertThat(stored.getColorModel().hasAlpha()).isTrue();
+        assertThat(stored.getWidth()).isEqualTo(100);
+    }
+
+    @Test
+    void saveImage_ShouldApplyExifOrientationAndDropMetadata() throws IOException {
+        byte[] jpeg = withExifOrientation(encode(image(80, 40, BufferedImage.TYPE_INT_RGB), "jpeg"), 6);
+
+        Path stored = stored(save(jpeg), ".jpg");
+        BufferedImage image = ImageIO.read(stored.toFile());
+
+        assertThat(image.getWidth()).isEqualTo(40);
+        assertThat(image.getHeight()).isEqualTo(80);
+        assertThat(new String(Files.readAllBytes(stored), StandardCharsets.ISO_8859_1)).doesNotContain("Exif");
+    }
+
+    @Test
+    void saveImage_ShouldRejectUnknownFormatWithoutWritingFile() throws IOException {
+        assertThatThrownBy(() -> save("not an image at all".getBytes()))
+                .isInstanceOf(InvalidUploadException.class);
+        assertNoFiles();
+    }
+
+    @Test
+    void saveImage_ShouldRejectCorruptedImage() throws IOException {
+        byte[] corrupted = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00, 0x01, 0x02, 0x03, 0x04, 0x05};
+
+        assertThatThrownBy(() -> save(corrupted)).isInstanceOf(InvalidUploadException.class);
+        assertNoFiles();
+    }
+
+    @Test
+    void saveImage_ShouldAbortOversizeUpload() throws IOException {
+        BufferedImage noise = new BufferedImage(600, 600, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < noise.getHeight(); y++) {
+            for (int x = 0; x < noise.getWidth(); x++) {
+                noise.setRGB(x, y, random.nextInt());
+            }
+        }
+        byte[] png = encode(noise, "png");
+        assertThat(png.length).isGreaterThan((int) MAX_SIZE);
+
+        assertThatThrownBy(() -> save(png)).isInstanceOf(ImageTooLargeException.class);
+        assertNoFiles();
+    }
+
+    private String save(byte[] content) {
+        return imageService.saveImage(new ByteArrayInputStream(content), directory.toString(), "/ads-images/");
+    }
+
+    private Path stored(String url, String extension) {
+        assertThat(url).startsWith("/ads-images/").endsWith(extension);
+        return directory.resolve(url.substring("/ads-images/".length()));
+    }
+
+    private void assertNoFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private static BufferedImage image(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0x80000000 | (x * 3) << 16 | (y * 5) << 8);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Заменяет сегмент JFIF APP0 сегментом APP1 с EXIF, содержащим только тег Orientation,
+     * как в снимках с камер телефонов.
+     */
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        byte[] exif = {
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write((exif.length + 2) >> 8);
+        out.write((exif.length + 2) & 0xFF);
+        out.write(exif, 0, exif.length);
+        int app0Length = (jpeg[4] & 0xFF) << 8 | (jpeg[5] & 0xFF);
+        int rest = 4 + app0Length;
+        out.write(jpeg, rest, jpeg.length - rest);
+        return out.toByteArray();
+    }
+}
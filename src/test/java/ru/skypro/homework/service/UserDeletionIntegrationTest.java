@@ -0,0 +1,134 @@
+package ru.skypro.homework.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import ru.skypro.homework.AbstractIntegrationTest;
+import ru.skypro.homework.datasource.SqlStatementStatistics;
+import ru.skypro.homework.dto.auth.Role;
+import ru.skypro.homework.model.AdsDao;
+import ru.skypro.homework.model.CommentsDao;
+import ru.skypro.homework.model.UsersDao;
+import ru.skypro.homework.repository.AdRepository;
+import ru.skypro.homework.repository.CommentRepository;
+import ru.skypro.homework.repository.UserRepository;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class UserDeletionIntegrationTest extends AbstractIntegrationTest {
+
+    private static final int ADS = 5;
+    private static final int COMMENTS_PER_AD = 3;
+
+    @Autowired
+    private DatabaseUserDetailsManager userDetailsManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdRepository adRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @MockBean
+    private ImageService imageService;
+
+    private UsersDao author;
+    private UsersDao reader;
+
+    @BeforeEach
+    void setUp() {
+        author = saveUser("author@test.com", "/avatars/author.jpg");
+        reader = saveUser("reader@test.com", null);
+        for (int i = 0; i < ADS; i++) {
+            AdsDao ad = new AdsDao();
+            ad.setTitle("Ad " + i);
+            ad.setDescription("Description");
+            ad.setPrice(100 + i);
+            ad.setAuthor(author);
+            ad.setImage("/ads-images/ad-" + i + ".jpg");
+            adRepository.save(ad);
+            for (int j = 0; j < COMMENTS_PER_AD; j++) {
+                saveComment(ad, j % 2 == 0 ? author : reader);
+            }
+        }
+        AdsDao readerAd = new AdsDao();
+        readerAd.setTitle("Reader ad");
+        readerAd.setDescription("Description");
+        readerAd.setPrice(1);
+        readerAd.setAuthor(reader);
+        adRepository.save(readerAd);
+        saveComment(readerAd, author);
+        saveComment(readerAd, reader);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SqlStatementStatistics.clear();
+        commentRepository.deleteAll();
+        adRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void deleteUser_ShouldRemoveAdsAndCommentsWithDatabaseCascade() {
+        SqlStatementStatistics statistics = SqlStatementStatistics.start();
+
+        userDetailsManager.deleteUser(author.getEmail());
+
+        // поиск пользователя, пути изображений (рабочих и архивных объявлений) и один DELETE —
+        // независимо от числа объявлений и комментариев
+        assertThat(statistics.getStatements()).isLessThanOrEqualTo(4);
+        assertThat(statistics.getQueries().keySet()).noneMatch(sql -> sql.startsWith("delete from comments")
+                || sql.startsWith("delete from ads"));
+
+        assertThat(userRepository.existsByEmail(author.getEmail())).isFalse();
+        assertThat(adRepository.countByAuthorId(author.getId())).isZero();
+        assertThat(commentRepository.findAll()).hasSize(1)
+                                               .allMatch(c -> c.getAuthor().getId().equals(reader.getId()));
+        assertThat(adRepository.countByAuthorId(reader.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void deleteUser_ShouldDeleteImagesAfterCommit() {
+        userDetailsManager.deleteUser(author.getEmail());
+
+        for (int i = 0; i < ADS; i++) {
+            verify(imageService, timeout(5000)).deleteImage(eq("/ads-images/ad-" + i + ".jpg"), anyString());
+        }
+        verify(imageService, timeout(5000)).deleteImage(eq("/avatars/author.jpg"), anyString());
+        verify(imageService, times(ADS + 1)).deleteImage(anyString(), anyString());
+    }
+
+    private UsersDao saveUser(String email, String image) {
+        UsersDao user = new UsersDao();
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode("password"));
+        user.setFirstName("Иван");
+        user.setLastName("Иванов");
+        user.setPhone("+7 (999) 123-45-67");
+        user.setRole(Role.USER);
+        user.setImage(image);
+        return userRepository.save(user);
+    }
+
+    private void saveComment(AdsDao ad, UsersDao author) {
+        CommentsDao comment = new CommentsDao();
+        comment.setText("Comment");
+        comment.setCreatedAt(LocalDateTime.now());
+        comment.setAuthor(author);
+        comment.setAd(ad);
+        commentRepository.save(comment);
+    }
+}